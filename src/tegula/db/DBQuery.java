@@ -0,0 +1,181 @@
+/*
+ * DBQuery.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tegula.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * a query on the tilings table, consisting of conditions that are combined by 'and'.
+ * Values are not part of the SQL text, but are bound as parameters of a prepared statement,
+ * so that queries that only differ by their values share the same statement
+ */
+public class DBQuery {
+    private static final Set<String> operators = Set.of("=", "!=", "<>", "<", "<=", ">", ">=");
+
+    private final ArrayList<String> conditions = new ArrayList<>(); // conditions with ? for values
+    private final ArrayList<String> texts = new ArrayList<>(); // conditions with values, for display
+    private final ArrayList<Object> parameters = new ArrayList<>();
+    private String completeQuery; // a complete select statement, as typed by the user
+
+    /**
+     * creates a query from an expression typed by the user. This is either a where-expression or a complete select statement.
+     * Runs of white space outside of quoted strings are collapsed, so that expressions that only differ by spacing are equal
+     *
+     * @return query
+     */
+    public static DBQuery of(String expression) {
+        final DBQuery query = new DBQuery();
+        expression = expression.trim();
+        if (expression.endsWith(";"))
+            expression = expression.substring(0, expression.length() - 1).trim();
+        if (expression.toLowerCase().startsWith("select"))
+            query.completeQuery = normalize(expression);
+        else if (expression.length() > 0) {
+            query.conditions.add("(" + normalize(expression) + ")");
+            query.texts.add(expression);
+        }
+        return query;
+    }
+
+    /**
+     * adds the condition: column operator value
+     *
+     * @param operator one of =, !=, <>, <, <=, > and >=
+     * @return this
+     */
+    public DBQuery compare(String column, String operator, Object value) {
+        if (!operators.contains(operator))
+            throw new IllegalArgumentException("Illegal operator: " + operator);
+        add(checkColumn(column) + " " + operator + " ?", column + " " + operator + " " + toLiteral(value), value);
+        return this;
+    }
+
+    /**
+     * adds the condition that the value of the column contains, or does not contain, the given string
+     *
+     * @return this
+     */
+    public DBQuery contains(String column, String value, boolean contains) {
+        final String comparison = (contains ? " > 0" : " = 0");
+        add("instr(" + checkColumn(column) + ", ?)" + comparison, "instr(" + column + ", " + toLiteral(value) + ")" + comparison, value);
+        return this;
+    }
+
+    private void add(String condition, String text, Object value) {
+        if (completeQuery != null)
+            throw new IllegalStateException("Can't add condition to complete query");
+        conditions.add(condition);
+        texts.add(text);
+        parameters.add(value);
+    }
+
+    /**
+     * is this a complete select statement, rather than a set of conditions?
+     */
+    public boolean isCompleteQuery() {
+        return completeQuery != null;
+    }
+
+    public String getCompleteQuery() {
+        return completeQuery;
+    }
+
+    public boolean isEmpty() {
+        return completeQuery == null && conditions.size() == 0;
+    }
+
+    /**
+     * gets the where-expression, with a ? for each parameter
+     *
+     * @param defaultExpression used if there are no conditions
+     * @return where-expression
+     */
+    public String getWhereExpression(String defaultExpression) {
+        if (isCompleteQuery())
+            throw new IllegalStateException("Complete query has no where-expression");
+        return conditions.size() == 0 ? defaultExpression : String.join(" and ", conditions);
+    }
+
+    public List<Object> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * the query as an expression with values, as displayed and as accepted by of()
+     */
+    @Override
+    public String toString() {
+        return isCompleteQuery() ? completeQuery : String.join(" and ", texts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof DBQuery))
+            return false;
+        final DBQuery that = (DBQuery) o;
+        return Objects.equals(completeQuery, that.completeQuery) && conditions.equals(that.conditions) && parameters.equals(that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(completeQuery, conditions, parameters);
+    }
+
+    /**
+     * collapses runs of white space outside of quoted strings into a single space
+     */
+    private static String normalize(String expression) {
+        final StringBuilder buf = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            final char ch = expression.charAt(i);
+            if (quote != 0) {
+                if (ch == quote)
+                    quote = 0;
+            } else if (ch == '\'' || ch == '"')
+                quote = ch;
+            else if (Character.isWhitespace(ch)) {
+                if (buf.length() > 0 && buf.charAt(buf.length() - 1) != ' ')
+                    buf.append(' ');
+                continue;
+            }
+            buf.append(ch);
+        }
+        return buf.toString();
+    }
+
+    private static String checkColumn(String column) {
+        if (!column.matches("[A-Za-z_][A-Za-z_0-9]*"))
+            throw new IllegalArgumentException("Illegal column: " + column);
+        return column;
+    }
+
+    private static String toLiteral(Object value) {
+        if (value instanceof Number)
+            return value.toString();
+        else
+            return "'" + String.valueOf(value).replace("'", "''") + "'";
+    }
+}
@@ -22,39 +22,201 @@ package tegula.db;
 import jloda.util.Basic;
 import jloda.util.FileUtils;
 import jloda.util.NumberUtils;
+import jloda.util.ProgramProperties;
 import org.sqlite.SQLiteConfig;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.LongPredicate;
 
 /**
  * provides access to database of tilings
  * Daniel Huson, 10.2019
  */
 public class DatabaseAccess implements Closeable {
-    private final Connection connection;
+    private final String dbFile;
+    private final boolean readOnly;
+    private final int poolSize;
+
+    // connections are opened on demand, up to poolSize, and are used by one query at a time:
+    private final ArrayList<PooledConnection> connections = new ArrayList<>();
+    private final BlockingQueue<PooledConnection> idleConnections = new LinkedBlockingQueue<>();
+    private volatile boolean closed = false;
 
     /**
      * constructor
      *
 	 */
     public DatabaseAccess(String dbFile) throws IOException, SQLException {
+        this(dbFile, false);
+    }
+
+    /**
+     * constructor
+     *
+     * @param readOnly open read-only and tuned for queries: memory-mapped I/O, a larger page cache and query_only
+	 */
+    public DatabaseAccess(String dbFile, boolean readOnly) throws IOException, SQLException {
 		if (!FileUtils.fileExistsAndIsNonEmpty(dbFile))
 			throw new IOException("File not found or unreadable: " + dbFile);
+        this.dbFile = dbFile;
+        this.readOnly = readOnly;
+        this.poolSize = Math.max(1, ProgramProperties.get("DBConnections", 4));
+
+        System.err.printf("Opened: " + dbFile + ": %,d%n", getDBDSize());
+    }
 
+    /**
+     * opens a new connection to the database
+     */
+    private Connection openConnection() throws SQLException {
         final SQLiteConfig config = new SQLiteConfig();
+        if (readOnly) {
+            config.setReadOnly(true);
+            config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(ProgramProperties.get("DBMmapSize", 1L << 30)));
+            config.setCacheSize(-ProgramProperties.get("DBCacheSizeKB", 16384));
+            config.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        }
+        final Connection connection = config.createConnection("jdbc:sqlite:" + dbFile);
+        if (readOnly) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("pragma query_only = true;");
+            }
+        }
+        return connection;
+    }
 
-        connection = config.createConnection("jdbc:sqlite:" + dbFile);
+    /**
+     * gets a connection that is not in use, opens a new one, if the pool is not full, or else waits for one
+     */
+    private PooledConnection acquireConnection() throws SQLException {
+        PooledConnection pooled = idleConnections.poll();
+        if (pooled == null) {
+            synchronized (connections) {
+                if (closed)
+                    throw new SQLException("Database closed: " + dbFile);
+                if (connections.size() < poolSize) {
+                    pooled = new PooledConnection(openConnection());
+                    connections.add(pooled);
+                }
+            }
+            if (pooled == null) {
+                try {
+                    pooled = idleConnections.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted");
+                }
+            }
+        }
+        return pooled;
+    }
 
-        System.err.printf("Opened: " + dbFile + ": %,d%n", computeDBSize());
+    private void releaseConnection(PooledConnection pooled) {
+        if (closed)
+            pooled.close();
+        else
+            idleConnections.add(pooled);
     }
 
     public void close() {
-        if (connection != null) {
+        closed = true;
+        synchronized (connections) {
+            connections.forEach(PooledConnection::close);
+            connections.clear();
+        }
+        idleConnections.clear();
+    }
+
+    /**
+     * opens a cursor for a query. The statement is prepared once per connection and reused by later queries with the same SQL text.
+     * The cursor holds a connection of the pool and must be closed
+     *
+     * @param sql        query, with ? for each parameter
+     * @param parameters values of the parameters
+     * @return cursor
+     */
+    public QueryCursor openCursor(String sql, List<Object> parameters) throws SQLException {
+        final PooledConnection pooled = acquireConnection();
+        try {
+            final PreparedStatement statement = pooled.prepareStatement(sql);
+            try {
+                for (int i = 0; i < parameters.size(); i++) {
+                    statement.setObject(i + 1, parameters.get(i));
+                }
+                return new QueryCursor(statement.executeQuery(), () -> {
+                    pooled.releaseStatement(sql, statement);
+                    releaseConnection(pooled);
+                });
+            } catch (SQLException e) {
+                closeQuietly(statement);
+                throw e;
+            }
+        } catch (SQLException e) {
+            releaseConnection(pooled);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Basic.caught(e);
+        }
+    }
+
+    /**
+     * a connection of the pool, with the prepared statements that are not in use, by SQL text
+     */
+    private static class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statementCache;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            final int cacheSize = ProgramProperties.get("DBStatementCacheSize", 32);
+            statementCache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > cacheSize) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        PreparedStatement prepareStatement(String sql) throws SQLException {
+            final PreparedStatement statement = statementCache.remove(sql);
+            return statement != null ? statement : connection.prepareStatement(sql);
+        }
+
+        /**
+         * returns a statement to the cache, once its cursor has been closed
+         */
+        void releaseStatement(String sql, PreparedStatement statement) {
+            try {
+                if (!statement.isClosed()) {
+                    statement.clearParameters();
+                    statementCache.put(sql, statement);
+                }
+            } catch (SQLException e) {
+                closeQuietly(statement);
+            }
+        }
+
+        void close() {
+            statementCache.values().forEach(DatabaseAccess::closeQuietly);
+            statementCache.clear();
             try {
                 connection.close();
             } catch (SQLException e) {
@@ -83,6 +245,112 @@ public class DatabaseAccess implements Closeable {
 
     }
 
+    /**
+     * gets up to limit D-symbols that match the query and follow the given row id, in the order of row ids.
+     * Seeking to the row id uses the primary key, so, unlike a large offset, the preceding rows are not stepped over
+     *
+     * @param afterRowId only rows with a larger row id are considered
+     * @param offset     number of matching rows to skip after the given row id
+     * @param limit      maximal number of D-symbols
+     * @param rowIds     the row ids of the returned D-symbols are added to this list
+     * @return D-symbols
+     */
+    public ArrayList<String> getDSymbols(DBQuery query, long afterRowId, long offset, int limit, ArrayList<Long> rowIds) throws IOException, SQLException {
+        final String sql = String.format("select rowid, symbol from tilings where rowid > ? and (%s) order by rowid limit ? offset ?;", getWhereExpression(query));
+        final ArrayList<Object> parameters = new ArrayList<>();
+        parameters.add(afterRowId);
+        parameters.addAll(query.getParameters());
+        parameters.add(limit);
+        parameters.add(offset);
+
+        final ArrayList<String> result = new ArrayList<>();
+        try (QueryCursor cursor = openCursor(sql, parameters)) {
+            while (cursor.next()) {
+                rowIds.add(cursor.getLong(1));
+                result.add(cursor.getString(2));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * scans the row ids of all tilings that match the query, in increasing order
+     *
+     * @param consumer is called for each row id, the scan stops when it returns false
+     */
+    public void scanRowIds(DBQuery query, LongPredicate consumer) throws IOException, SQLException {
+        final String sql = String.format("select rowid from tilings where %s order by rowid;", getWhereExpression(query));
+        try (QueryCursor cursor = openCursor(sql, query.getParameters())) {
+            while (cursor.next()) {
+                if (!consumer.test(cursor.getLong(1)))
+                    break;
+            }
+        }
+    }
+
+    /**
+     * gets the where-expression of a query, with ? for parameters
+     *
+     * @return where-expression
+     */
+    private static String getWhereExpression(DBQuery query) throws IOException {
+        if (query.isCompleteQuery())
+            throw new IOException("Not a where-expression: " + query);
+        final String whereExpression = query.getWhereExpression("complexity>0");
+        if (whereExpression.contains(";"))
+            throw new IOException("Illegal ';' in select expression");
+        return whereExpression;
+    }
+
+    /**
+     * counts all D-symbols that match the query
+     *
+     * @return count
+     */
+    public int countDSymbols(DBQuery query) throws IOException, SQLException {
+        if (query.isCompleteQuery())
+            return countDSymbols(query.getCompleteQuery());
+        final String sql;
+        if (query.isEmpty())
+            sql = "select count(*) from tilings;";
+        else
+            sql = String.format("select count(*) from tilings where %s;", getWhereExpression(query));
+        try (QueryCursor cursor = openCursor(sql, query.getParameters())) {
+            return cursor.next() ? cursor.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * estimates the number of D-symbols that match the query by counting the matches in a number of row-id ranges
+     * that are spread evenly over the table. Each range is reached by seeking on the row id
+     *
+     * @param samples    number of ranges
+     * @param sampleSize number of row ids per range
+     * @return estimated count, or -1, if the query is a complete select statement
+     */
+    public int estimateDSymbols(DBQuery query, int samples, int sampleSize) throws IOException, SQLException {
+        if (query.isCompleteQuery())
+            return -1;
+        final long maxRowId = executeQueryLong("select max(rowid) from tilings;", 1).get(0);
+        if (maxRowId <= (long) samples * sampleSize)
+            return countDSymbols(query);
+
+        final String sql = String.format("select count(*) from tilings where rowid > ? and rowid <= ? and (%s);", query.isEmpty() ? "1" : getWhereExpression(query));
+        final long step = maxRowId / samples;
+        long matches = 0;
+        for (int i = 0; i < samples; i++) {
+            final ArrayList<Object> parameters = new ArrayList<>();
+            parameters.add(i * step);
+            parameters.add(i * step + sampleSize);
+            parameters.addAll(query.getParameters());
+            try (QueryCursor cursor = openCursor(sql, parameters)) {
+                if (cursor.next())
+                    matches += cursor.getLong(1);
+            }
+        }
+        return (int) Math.round((double) matches * maxRowId / ((long) samples * sampleSize));
+    }
+
     /**
      * gets all D-symbols that match the select expression
      *
@@ -141,10 +409,14 @@ public class DatabaseAccess implements Closeable {
      * @throws SQLException if something went wrong with the database
      */
     private ArrayList<Integer> executeQueryInt(String query, int index) throws SQLException {
-        final ResultSet rs = connection.createStatement().executeQuery(query);
         final ArrayList<Integer> resultlist = new ArrayList<>();
-        while (rs.next()) {
-            resultlist.add(rs.getInt(index));
+        final PooledConnection pooled = acquireConnection();
+        try (Statement statement = pooled.connection.createStatement(); ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                resultlist.add(rs.getInt(index));
+            }
+        } finally {
+            releaseConnection(pooled);
         }
         return resultlist;
     }
@@ -157,10 +429,14 @@ public class DatabaseAccess implements Closeable {
      * @throws SQLException if something went wrong with the database
      */
     private ArrayList<Long> executeQueryLong(String query, int index) throws SQLException {
-        final ResultSet rs = connection.createStatement().executeQuery(query);
         final ArrayList<Long> list = new ArrayList<>();
-        while (rs.next()) {
-            list.add(rs.getLong(index));
+        final PooledConnection pooled = acquireConnection();
+        try (Statement statement = pooled.connection.createStatement(); ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                list.add(rs.getLong(index));
+            }
+        } finally {
+            releaseConnection(pooled);
         }
         return list;
     }
@@ -176,11 +452,15 @@ public class DatabaseAccess implements Closeable {
      */
     private ArrayList<String> executeQueryString(String query, int... indices) throws SQLException {
         //System.err.println("Query: " + query);
-        final ResultSet rs = connection.createStatement().executeQuery(query);
         final ArrayList<String> result = new ArrayList<>();
-        while (rs.next()) {
-            for (int i : indices)
-                result.add(rs.getString(i));
+        final PooledConnection pooled = acquireConnection();
+        try (Statement statement = pooled.connection.createStatement(); ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                for (int i : indices)
+                    result.add(rs.getString(i));
+            }
+        } finally {
+            releaseConnection(pooled);
         }
         return result;
     }
@@ -0,0 +1,125 @@
+/*
+ * PageIndex.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tegula.db;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * sparse index for keyset pagination through the tilings that match a query.
+ * For every interval-th matching row, the index records the row id of the preceding matching row.
+ * A page is then fetched by seeking to the nearest recorded row id and skipping fewer than interval rows.
+ * The index is filled by a scan in a background thread and can be used while it is being built
+ */
+public class PageIndex {
+    private final DatabaseAccess databaseAccess;
+    private final DBQuery query;
+    private final int interval;
+
+    private volatile long[] rowIds = {Long.MIN_VALUE}; // rowIds[i] is the row id that precedes row i*interval
+    private volatile int size = 1;
+    private volatile long numberOfRows = -1;
+    private volatile boolean canceled = false;
+
+    /**
+     * constructor
+     *
+     * @param interval number of rows between two recorded row ids
+     */
+    public PageIndex(DatabaseAccess databaseAccess, DBQuery query, int interval) {
+        this.databaseAccess = databaseAccess;
+        this.query = query;
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * scans all matching rows and records row ids. Call this in a background thread
+     */
+    public void build() throws IOException, SQLException {
+        final long[] count = {0};
+        databaseAccess.scanRowIds(query, rowId -> {
+            if (canceled)
+                return false;
+            if (++count[0] % interval == 0)
+                add(rowId);
+            return true;
+        });
+        if (!canceled)
+            numberOfRows = count[0];
+    }
+
+    /**
+     * adds a row id. There is only one writer, readers read size before rowIds
+     */
+    private void add(long rowId) {
+        if (size == rowIds.length) {
+            final long[] array = Arrays.copyOf(rowIds, 2 * size);
+            array[size] = rowId;
+            rowIds = array;
+        } else
+            rowIds[size] = rowId;
+        size++;
+    }
+
+    /**
+     * stops building the index
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * gets the position from which to fetch the given row
+     *
+     * @param row 0-based number of a matching row
+     * @return the row id after which to start and the number of rows to skip, or null, if the index does not yet reach the row
+     */
+    public long[] getStart(long row) {
+        final int n = size;
+        final long[] array = rowIds;
+        final long i = row / interval;
+        if (i < n)
+            return new long[]{array[(int) i], row - i * interval};
+        else if (isComplete())
+            return new long[]{array[n - 1], row - (long) (n - 1) * interval};
+        else
+            return null;
+    }
+
+    /**
+     * has the scan of all matching rows been completed?
+     */
+    public boolean isComplete() {
+        return numberOfRows != -1;
+    }
+
+    /**
+     * the number of matching rows, once the index is complete
+     *
+     * @return number of rows or -1
+     */
+    public long getNumberOfRows() {
+        return numberOfRows;
+    }
+
+    public DBQuery getQuery() {
+        return query;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * QueryCursor.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tegula.db;
+
+import jloda.util.Basic;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * a cursor over the rows of a query result. Rows are read one at a time, as the cursor advances.
+ * Closing the cursor closes the result set and releases the prepared statement
+ */
+public class QueryCursor implements Closeable {
+    private final ResultSet resultSet;
+    private final Runnable onClose;
+    private boolean closed = false;
+
+    QueryCursor(ResultSet resultSet, Runnable onClose) {
+        this.resultSet = resultSet;
+        this.onClose = onClose;
+    }
+
+    /**
+     * advance to the next row
+     *
+     * @return true, if there is a next row
+     */
+    public boolean next() throws SQLException {
+        return !closed && resultSet.next();
+    }
+
+    public String getString(int column) throws SQLException {
+        return resultSet.getString(column);
+    }
+
+    public long getLong(int column) throws SQLException {
+        return resultSet.getLong(column);
+    }
+
+    public int getInt(int column) throws SQLException {
+        return resultSet.getInt(column);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+                Basic.caught(e);
+            }
+            onClose.run();
+        }
+    }
+}
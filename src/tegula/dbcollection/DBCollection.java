@@ -19,33 +19,48 @@
 
 package tegula.dbcollection;
 
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import jloda.fx.util.AService;
+import jloda.fx.util.ProgramExecutorService;
 import jloda.fx.window.NotificationManager;
 import jloda.util.Basic;
 import jloda.util.FileUtils;
 import jloda.util.ProgramProperties;
 import tegula.core.dsymbols.DSymbol;
+import tegula.db.DBQuery;
 import tegula.db.DatabaseAccess;
+import tegula.db.PageIndex;
 import tegula.util.IFileBased;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * opens a collection of tilings from a database
+ * opens a collection of tilings from a database, or from several databases (shards) that are queried as one collection.
+ * The tilings of a sharded collection are ordered by shard, and then by row id
  * Daniel Huson, 10.2019
  */
-public class DBCollection implements Closeable, IFileBased {
+public class DBCollection implements Closeable, IFileBased, IPagedCollection {
     public static final float VERSION = 0.2f;
 
-    private final DatabaseAccess databaseAccess;
+    private static final Object sync = new Object();
+    private static ExecutorService shardService = null; // queries are sent to all shards in parallel
+
+    private final ArrayList<DatabaseAccess> shards = new ArrayList<>();
     private final StringProperty fileName = new SimpleStringProperty();
 
     private final StringProperty dbSelect = new SimpleStringProperty("");
+    private volatile DBQuery query = new DBQuery(); // the query that dbSelect displays
     private final IntegerProperty count = new SimpleIntegerProperty(0);
+    private final BooleanProperty countEstimated = new SimpleBooleanProperty(false);
     private final IntegerProperty pageSize = new SimpleIntegerProperty(1);
     private final LongProperty totalCount = new SimpleLongProperty(0);
 
@@ -53,23 +68,72 @@ public class DBCollection implements Closeable, IFileBased {
 
     private final AService<ArrayList<DSymbol>> service = null;
 
+    // pages are fetched by keyset pagination on the row id, using a sparse index of row ids per shard and the end of the previous page:
+    private volatile QueryState state;
+
+    // exact counts per shard of recent queries, most recently used last:
+    private final Map<DBQuery, int[]> countCache;
+    private Future<?> countFuture;
+    private Future<?> estimateFuture;
+
     /**
      * constructor
      *
 	 */
     public DBCollection(String databaseFile) throws IOException, SQLException {
-        fileName.set(databaseFile);
-        this.databaseAccess = new DatabaseAccess(databaseFile);
-        totalCount.set(databaseAccess.getDBDSize());
-        dbVersion.set(databaseAccess.getVersion());
+        this(databaseFile, Collections.singletonList(databaseFile));
+    }
 
-        dbSelect.addListener((c, o, n) -> {
-            try {
-                count.set(databaseAccess.countDSymbols(getDbSelect()));
-            } catch (IOException | SQLException e) {
-                Basic.caught(e);
-                NotificationManager.showError("Error: " + e.getMessage());
+    /**
+     * constructs a collection from several databases
+     *
+     * @param fileName   name of the collection
+     * @param shardFiles the databases, in the order in which their tilings are listed
+     */
+    public DBCollection(String fileName, List<String> shardFiles) throws IOException, SQLException {
+        synchronized (sync) {
+            if (shardService == null)
+                shardService = Executors.newCachedThreadPool(r -> {
+                    final Thread thread = new Thread(r, "DBShard");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+        this.fileName.set(fileName);
+        try {
+            for (String shardFile : shardFiles) {
+                shards.add(new DatabaseAccess(shardFile, true));
             }
+            if (shards.size() == 0)
+                throw new IOException("No databases found: " + fileName);
+            long total = 0;
+            float version = Float.MAX_VALUE;
+            for (DatabaseAccess shard : shards) {
+                total += shard.getDBDSize();
+                version = Math.min(version, shard.getVersion());
+            }
+            totalCount.set(total);
+            dbVersion.set(version);
+        } catch (IOException | SQLException e) {
+            for (DatabaseAccess shard : shards) {
+                shard.close();
+            }
+            throw e;
+        }
+
+        final int countCacheSize = ProgramProperties.get("DBCountCacheSize", 64);
+        countCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DBQuery, int[]> eldest) {
+                return size() > countCacheSize;
+            }
+        };
+
+        dbSelect.addListener((c, o, n) -> {
+            if (!query.toString().equals(n))
+                query = DBQuery.of(n);
+            updatePageIndex(); // cancels the background work for the previous query
+            updateCount();
         });
 
         if (getDbVersion() < VERSION)
@@ -78,34 +142,374 @@ public class DBCollection implements Closeable, IFileBased {
             NotificationManager.showWarning("Opened newer database version: " + getDbVersion() + ", software supports version: " + VERSION + ", download and install new software version");
     }
 
+    /**
+     * gets the databases of a sharded collection. These are all .tdb files in a directory, in alphabetical order,
+     * or the files listed in a .tdbs file, one per line, relative to the directory of the list
+     *
+     * @param file directory or list file
+     * @return database files
+     */
+    public static ArrayList<String> getShardFiles(File file) throws IOException {
+        final ArrayList<String> result = new ArrayList<>();
+        if (file.isDirectory()) {
+            final File[] files = file.listFiles((dir, name) -> name.endsWith(".tdb"));
+            if (files != null) {
+                Arrays.sort(files);
+                for (File shardFile : files) {
+                    result.add(shardFile.getPath());
+                }
+            }
+        } else {
+            for (String line : FileUtils.getLinesFromFile(file.getPath())) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    final File shardFile = new File(line);
+                    result.add(shardFile.isAbsolute() ? shardFile.getPath() : new File(file.getParentFile(), line).getPath());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * gets the number of pages
+     *
+     * @return number of pages, or 0, while counting
+     */
     public int getNumberOfPages() {
-        return (int) Math.ceil((float) getCount() / getPageSize());
+        return isCounting() ? 0 : (int) Math.ceil((float) getCount() / getPageSize());
+    }
+
+    /**
+     * is the number of matching D-symbols being counted? While counting, the count is -1 and the number of pages is not known
+     */
+    public boolean isCounting() {
+        return getCount() == -1;
     }
 
+    /**
+     * gets the number of D-symbols on the given page
+     *
+     * @return number, or -1, while counting
+     */
     public int getNumberOfDSymbolsOnPage(int pageNumber) {
+        if (isCounting())
+            return -1;
         return pageNumber < getNumberOfPages() ? getPageSize() : getCount() - pageNumber * getPageSize();
     }
 
+    public int getNumberOfShards() {
+        return shards.size();
+    }
+
     /**
-     * get all D-symbols for the given page number
+     * get all D-symbols for the given page number. A page that spans several shards is fetched from them in parallel
      *
      * @param pageNumber 1-based
      * @return D-symbols
 	 */
     public ArrayList<DSymbol> getPageOfDSymbols(int pageNumber) throws IOException, SQLException {
-        if (pageNumber < 0 || pageNumber >= getNumberOfPages())
+        final QueryState state = this.state;
+        if (state == null || pageNumber < 0 || getCount() != -1 && pageNumber >= getNumberOfPages()) // count is -1 while counting
             return new ArrayList<>();
-        final String query;
-        if (getDbSelect().length() == 0)
-            query = String.format("select symbol from tilings where complexity>0 limit %d offset %d;", getPageSize(), pageNumber * getPageSize());
-        else
-            query = String.format("select symbol from tilings where %s limit %d offset %d;", getDbSelect(), getPageSize(), pageNumber * getPageSize());
-        final ArrayList<DSymbol> result = new ArrayList<>();
-        for (String line : databaseAccess.getDSymbols(query))
+
+        final int pageSize = getPageSize();
+        final long row = (long) pageNumber * pageSize;
+
+        // find the shard and the row within the shard at which the page starts:
+        int shard = 0;
+        long shardRow = 0;
+        long afterRowId = Long.MIN_VALUE;
+        boolean located = (row == 0);
+        synchronized (state) {
+            if (row == state.previousPageEndRow) { // next page
+                shard = state.previousPageEndShard;
+                shardRow = state.previousPageEndShardRow;
+                afterRowId = state.previousPageEndRowId;
+                located = true;
+            }
+        }
+        if (!located && shards.size() == 1) { // the sparse index of the shard locates the row, no count needed
+            shardRow = row;
+        } else if (!located) {
+            final int[] counts = computeShardCounts(state);
+            long start = 0;
+            while (shard < shards.size() - 1 && start + counts[shard] <= row) {
+                start += counts[shard];
+                shard++;
+            }
+            shardRow = row - start;
+        }
+
+        final ArrayList<String> lines = new ArrayList<>();
+        while (lines.size() < pageSize && shard < shards.size()) {
+            // split the rest of the page over the shards whose counts are known. A shard whose count is not known takes the rest
+            final ArrayList<Segment> segments = new ArrayList<>();
+            int planned = lines.size();
+            for (int s = shard; planned < pageSize && s < shards.size(); s++) {
+                final int shardCount = state.getCount(s);
+                final long first = (s == shard ? shardRow : 0);
+                final int limit = (shardCount == -1 ? pageSize - planned : (int) Math.max(0, Math.min(shardCount - first, pageSize - planned)));
+                if (limit > 0)
+                    segments.add(new Segment(s, first, (s == shard ? afterRowId : Long.MIN_VALUE), limit));
+                planned += limit;
+                if (shardCount == -1)
+                    break;
+            }
+            if (segments.size() == 0)
+                break;
+
+            if (segments.size() == 1)
+                fetch(state, segments.get(0));
+            else {
+                final ArrayList<Future<?>> futures = new ArrayList<>();
+                for (Segment segment : segments) {
+                    futures.add(shardService.submit(() -> {
+                        fetch(state, segment);
+                        return null;
+                    }));
+                }
+                waitFor(futures);
+            }
+
+            Segment last = null;
+            for (Segment segment : segments) {
+                lines.addAll(segment.lines);
+                if (segment.lines.size() < segment.limit) // reached the end of the shard, so now we know its count
+                    state.setCount(segment.shard, (int) (segment.first + segment.lines.size()));
+                last = segment;
+            }
+            // continue after the last part:
+            shard = last.shard;
+            shardRow = last.first + last.lines.size();
+            afterRowId = (last.rowIds.size() > 0 ? last.rowIds.get(last.rowIds.size() - 1) : Long.MIN_VALUE);
+            if (last.lines.size() < last.limit || state.getCount(shard) == shardRow) {
+                shard++;
+                shardRow = 0;
+                afterRowId = Long.MIN_VALUE;
+            }
+        }
+
+        if (lines.size() > 0 && shard < shards.size()) {
+            synchronized (state) {
+                state.previousPageEndRow = row + lines.size();
+                state.previousPageEndShard = shard;
+                state.previousPageEndShardRow = shardRow;
+                state.previousPageEndRowId = afterRowId;
+            }
+        }
+
+        final ArrayList<DSymbol> result = new ArrayList<>(lines.size());
+        for (String line : lines)
             result.add(new DSymbol(line));
         return result;
     }
 
+    /**
+     * fetches the D-symbols of a part of a page from its shard
+     */
+    private void fetch(QueryState state, Segment segment) throws IOException, SQLException {
+        final DatabaseAccess shard = shards.get(segment.shard);
+        if (state.query.isCompleteQuery()) { // complete query, can't add keyset
+            final String select = String.format("%s limit %d offset %d;", state.query.getCompleteQuery(), segment.limit, segment.first);
+            segment.lines.addAll(shard.getDSymbols(select));
+            return;
+        }
+        long afterRowId = segment.afterRowId;
+        long offset = (afterRowId == Long.MIN_VALUE ? segment.first : 0);
+        if (offset > 0) {
+            final long[] start = state.pageIndices[segment.shard].getStart(offset);
+            if (start != null) {
+                afterRowId = start[0];
+                offset = start[1];
+            }
+        }
+        segment.lines.addAll(shard.getDSymbols(state.query, afterRowId, offset, segment.limit, segment.rowIds));
+    }
+
+    /**
+     * gets the number of matching rows in each shard. Shards that have not been counted yet are counted in parallel
+     *
+     * @return counts
+     */
+    private int[] computeShardCounts(QueryState state) throws IOException, SQLException {
+        final ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int s = 0; s < shards.size(); s++) {
+            if (state.getCount(s) == -1) {
+                final int shard = s;
+                futures.add(shardService.submit(() -> {
+                    state.setCount(shard, shards.get(shard).countDSymbols(state.query));
+                    return null;
+                }));
+            }
+        }
+        waitFor(futures);
+        final int[] counts = new int[shards.size()];
+        for (int s = 0; s < shards.size(); s++) {
+            counts[s] = state.getCount(s);
+        }
+        if (futures.size() > 0)
+            reportIfCounted(state);
+        return counts;
+    }
+
+    /**
+     * waits for all futures and rethrows the first exception
+     */
+    private static void waitFor(Collection<Future<?>> futures) throws IOException, SQLException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            else if (e.getCause() instanceof SQLException)
+                throw (SQLException) e.getCause();
+            else
+                throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * sets the count for the current query. If the exact count is not cached, then the count is estimated in the background
+     * and the estimate is shown until the exact count has been computed in the background by updatePageIndex()
+     */
+    private void updateCount() {
+        final DBQuery query = getQuery();
+        final int[] exact;
+        synchronized (countCache) {
+            exact = countCache.get(query);
+        }
+        if (exact != null) {
+            count.set(sum(exact));
+            countEstimated.set(false);
+        } else {
+            count.set(-1); // counting
+            countEstimated.set(false);
+            final Future<?> future = shardService.submit(() -> {
+                try {
+                    final int[] estimates = new int[shards.size()];
+                    final ArrayList<Future<?>> futures = new ArrayList<>();
+                    for (int s = 0; s < shards.size(); s++) {
+                        final int shard = s;
+                        futures.add(shardService.submit(() -> {
+                            estimates[shard] = shards.get(shard).estimateDSymbols(query, ProgramProperties.get("DBCountEstimateSamples", 32), 512);
+                            return null;
+                        }));
+                    }
+                    waitFor(futures);
+                    Platform.runLater(() -> {
+                        final boolean counted;
+                        synchronized (countCache) {
+                            counted = countCache.containsKey(query);
+                        }
+                        if (query == getQuery() && !counted && estimates[0] != -1) { // the exact count may have arrived first
+                            count.set(sum(estimates));
+                            countEstimated.set(true);
+                        }
+                    });
+                } catch (IOException | SQLException e) {
+                    if (query == getQuery()) { // an estimate for a previous query is cancelled
+                        Basic.caught(e);
+                        Platform.runLater(() -> NotificationManager.showError("Error: " + e.getMessage()));
+                    }
+                }
+            });
+            synchronized (this) {
+                estimateFuture = future;
+            }
+        }
+    }
+
+    /**
+     * once all shards have been counted, caches the counts and reports the exact total, if the query is still the current query
+     */
+    private void reportIfCounted(QueryState state) {
+        final int[] counts = state.getCounts();
+        if (counts == null)
+            return;
+        synchronized (countCache) {
+            countCache.put(state.query, counts);
+        }
+        Platform.runLater(() -> {
+            if (state.query == getQuery()) {
+                count.set(sum(counts));
+                countEstimated.set(false);
+            }
+        });
+    }
+
+    /**
+     * starts building the sparse row-id index of each shard for the current query in the background, in parallel.
+     * The scans also provide the exact count. A complete select statement has no index and is counted directly
+     */
+    private void updatePageIndex() {
+        final DBQuery query = getQuery();
+        final int[] cached;
+        synchronized (countCache) {
+            cached = countCache.get(query);
+        }
+        final QueryState newState;
+        synchronized (this) {
+            if (state != null)
+                state.cancel();
+            if (countFuture != null)
+                countFuture.cancel(true);
+            countFuture = null;
+            if (estimateFuture != null)
+                estimateFuture.cancel(true);
+            estimateFuture = null;
+            state = newState = new QueryState(query, shards.size(), cached);
+            if (query.isCompleteQuery()) {
+                if (cached == null) {
+                    countFuture = ProgramExecutorService.getInstance().submit(() -> {
+                        try {
+                            computeShardCounts(newState);
+                        } catch (IOException | SQLException e) {
+                            if (!Thread.currentThread().isInterrupted()) {
+                                Basic.caught(e);
+                                Platform.runLater(() -> NotificationManager.showError("Error: " + e.getMessage()));
+                            }
+                        }
+                    });
+                }
+                return;
+            }
+            for (int s = 0; s < shards.size(); s++) {
+                newState.pageIndices[s] = new PageIndex(shards.get(s), query, ProgramProperties.get("DBPageIndexInterval", 256));
+            }
+        }
+        for (int s = 0; s < shards.size(); s++) {
+            final int shard = s;
+            final PageIndex pageIndex = newState.pageIndices[s];
+            shardService.submit(() -> {
+                try {
+                    pageIndex.build();
+                    if (pageIndex.isComplete()) {
+                        newState.setCount(shard, (int) pageIndex.getNumberOfRows());
+                        reportIfCounted(newState);
+                    }
+                } catch (IOException | SQLException e) {
+                    Basic.caught(e);
+                }
+            });
+        }
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
     public String getDbSelect() {
         return dbSelect.get();
     }
@@ -118,6 +522,18 @@ public class DBCollection implements Closeable, IFileBased {
         this.dbSelect.set(dbSelect);
     }
 
+    public DBQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * sets the query, and the select expression to its display text
+     */
+    public void setQuery(DBQuery query) {
+        this.query = query;
+        this.dbSelect.set(query.toString());
+    }
+
     public int getCount() {
         return count.get();
     }
@@ -126,6 +542,17 @@ public class DBCollection implements Closeable, IFileBased {
         return count;
     }
 
+    /**
+     * is the count an estimate, because the exact count is still being computed?
+     */
+    public boolean isCountEstimated() {
+        return countEstimated.get();
+    }
+
+    public ReadOnlyBooleanProperty countEstimatedProperty() {
+        return countEstimated;
+    }
+
     public int getPageSize() {
         return pageSize.get();
     }
@@ -140,7 +567,15 @@ public class DBCollection implements Closeable, IFileBased {
 
     @Override
     public void close() {
-        databaseAccess.close();
+        synchronized (this) {
+            if (state != null)
+                state.cancel();
+            if (countFuture != null)
+                countFuture.cancel(true);
+        }
+        for (DatabaseAccess shard : shards) {
+            shard.close();
+        }
     }
 
     public Long getTotalCount() {
@@ -180,4 +615,74 @@ public class DBCollection implements Closeable, IFileBased {
     public FloatProperty dbVersionProperty() {
         return dbVersion;
     }
+
+    /**
+     * the current query, with its per-shard page indices and counts
+     */
+    private static class QueryState {
+        private final DBQuery query;
+        private final PageIndex[] pageIndices;
+        private final int[] counts; // -1, if not yet known
+
+        private long previousPageEndRow = -1;
+        private int previousPageEndShard;
+        private long previousPageEndShardRow;
+        private long previousPageEndRowId;
+
+        QueryState(DBQuery query, int numberOfShards, int[] cachedCounts) {
+            this.query = query;
+            pageIndices = new PageIndex[numberOfShards];
+            if (cachedCounts != null)
+                counts = cachedCounts.clone();
+            else {
+                counts = new int[numberOfShards];
+                Arrays.fill(counts, -1);
+            }
+        }
+
+        synchronized int getCount(int shard) {
+            return counts[shard];
+        }
+
+        synchronized void setCount(int shard, int count) {
+            counts[shard] = count;
+        }
+
+        /**
+         * @return the counts of all shards, or null, if some shard has not been counted yet
+         */
+        synchronized int[] getCounts() {
+            for (int count : counts) {
+                if (count == -1)
+                    return null;
+            }
+            return counts.clone();
+        }
+
+        void cancel() {
+            for (PageIndex pageIndex : pageIndices) {
+                if (pageIndex != null)
+                    pageIndex.cancel();
+            }
+        }
+    }
+
+    /**
+     * the part of a page that comes from one shard
+     */
+    private static class Segment {
+        private final int shard;
+        private final long first; // row within the shard
+        private final long afterRowId; // row id that precedes first, if known, otherwise Long.MIN_VALUE
+        private final int limit;
+        private final ArrayList<String> lines = new ArrayList<>();
+        private final ArrayList<Long> rowIds = new ArrayList<>();
+
+        Segment(int shard, long first, long afterRowId, int limit) {
+            this.shard = shard;
+            this.first = first;
+            this.afterRowId = afterRowId;
+            this.limit = limit;
+        }
+    }
 }
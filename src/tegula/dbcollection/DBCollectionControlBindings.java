@@ -19,11 +19,15 @@
 
 package tegula.dbcollection;
 
+import javafx.beans.InvalidationListener;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Cursor;
+import javafx.scene.control.Tooltip;
+import jloda.fx.window.NotificationManager;
 import jloda.util.StringUtils;
 import tegula.core.dsymbols.SymmetryClass;
+import tegula.db.DBQuery;
 
 /**
  * presenter
@@ -118,7 +122,18 @@ public class DBCollectionControlBindings {
 
         controller.getSearchCBox().setOnAction((c) -> dbCollectionTab.processDBSelect(controller.getSearchCBox().getValue(), 0));
 
-        dbCollection.countProperty().addListener((c, o, n) -> controller.getCountLabel().setText(n == null ? "?" : String.format("Found: %,d", n.intValue())));
+        final InvalidationListener countListener = (e) -> {
+            if (dbCollection.getCount() == -1)
+                controller.getCountLabel().setText("Counting...");
+            else
+                controller.getCountLabel().setText(String.format(dbCollection.isCountEstimated() ? "Found: ~%,d" : "Found: %,d", dbCollection.getCount()));
+        };
+        dbCollection.countProperty().addListener(countListener);
+        dbCollection.countEstimatedProperty().addListener(countListener);
+
+        final Tooltip renderTooltip = new Tooltip();
+        renderTooltip.textProperty().bind(RenderPipeline.getInstance().statisticsProperty());
+        controller.getCountLabel().setTooltip(renderTooltip);
 
         dbCollection.dbSelectProperty().addListener((c, o, n) -> {
             if (n != null) {
@@ -134,198 +149,129 @@ public class DBCollectionControlBindings {
         dbCollectionTab.getMainWindow().getStage().heightProperty().addListener((c, o, n) -> dbCollectionTab.updatePageSize());
     }
 
-    private static String setupSearch(DBCollectionTabController controller) {
-        final StringBuilder buf = new StringBuilder();
-
-        if (addIntSelect("complexity", controller.getComplexityCBox().getValue()) != null) {
-            buf.append(addIntSelect("complexity", controller.getComplexityCBox().getValue()));
-        }
-
-        if (addIntSelect("tiles", controller.getNumberOfTilesCBox().getValue()) != null) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append(addIntSelect("tiles", controller.getNumberOfTilesCBox().getValue()));
-        }
-
-        if (addIntSelect("edges", controller.getNumberOfEdgesCBox().getValue()) != null) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append(addIntSelect("edges", controller.getNumberOfEdgesCBox().getValue()));
-        }
-
-        if (addIntSelect("vertices", controller.getNumberOfVerticesCBox().getValue()) != null) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append(addIntSelect("vertices", controller.getNumberOfVerticesCBox().getValue()));
-        }
-
-        if (!controller.getEuclideanCheckButton().isSelected()) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append("geometry != 'Euclidean'");
-        }
-
-        if (!controller.getSphericalCheckButton().isSelected()) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append("geometry != 'Spherical'");
-        }
-
-        if (!controller.getHyperbolicCheckButton().isSelected()) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append("geometry != 'Hyperbolic'");
-        }
-
-        {
-            final String input = controller.getOrbifoldCBox().getSelectionModel().getSelectedItem();
-            if (input != null && input.length() > 0) {
-                if (buf.length() > 0)
-                    buf.append(" and ");
-                final String operator = getOperator(input, true);
-                if (operator.equalsIgnoreCase("c"))
-                    buf.append(String.format(" instr(orbifold, '%s') > 0", getArgument(input, true)));
-                else if (operator.equalsIgnoreCase("!c"))
-                    buf.append(String.format(" instr(orbifold, '%s') = 0", getArgument(input, true)));
-                else
-                    buf.append(String.format(" orbifold %s '%s'", operator, getArgument(input, true)));
+    /**
+     * sets up the query from the search controls. Values are bound as parameters, rather than pasted into the SQL
+     *
+     * @return query or null, if input is not valid
+     */
+    private static DBQuery setupSearch(DBCollectionTabController controller) {
+        final DBQuery query = new DBQuery();
+        try {
+            addIntSelect(query, "complexity", controller.getComplexityCBox().getValue());
+            addIntSelect(query, "tiles", controller.getNumberOfTilesCBox().getValue());
+            addIntSelect(query, "edges", controller.getNumberOfEdgesCBox().getValue());
+            addIntSelect(query, "vertices", controller.getNumberOfVerticesCBox().getValue());
+
+            if (!controller.getEuclideanCheckButton().isSelected())
+                query.compare("geometry", "!=", "Euclidean");
+            if (!controller.getSphericalCheckButton().isSelected())
+                query.compare("geometry", "!=", "Spherical");
+            if (!controller.getHyperbolicCheckButton().isSelected())
+                query.compare("geometry", "!=", "Hyperbolic");
+
+            {
+                final String input = controller.getOrbifoldCBox().getSelectionModel().getSelectedItem();
+                if (input != null && input.length() > 0)
+                    addStringSelect(query, "orbifold", input);
             }
-        }
 
-        {
-            final String input = controller.getSymmetryClassCBox().getSelectionModel().getSelectedItem();
-            if (input != null && !input.equals("All")) {
-                if (buf.length() > 0)
-                    buf.append(" and ");
-                buf.append(String.format(" symmetry_class = '%s'", input));
+            {
+                final String input = controller.getSymmetryClassCBox().getSelectionModel().getSelectedItem();
+                if (input != null && !input.equals("All"))
+                    query.compare("symmetry_class", "=", input);
             }
-        }
 
-        {
-            String input = controller.getTileFiguresCBox().getSelectionModel().getSelectedItem();
-            if (input != null) {
-                input = input.trim();
-                if (input.length() > 0) {
-                    if (!input.contains("(") && !input.contains(")"))
-                        input = "(" + input + ")";
-                    input = input.replaceAll("[.,]", " ");
-                    input = input.replaceAll("\\s+", " ");
-
-                    if (!controller.getTileFiguresCBox().getItems().contains(input))
-                        controller.getTileFiguresCBox().getItems().add(input);
-                    if (buf.length() > 0)
-                        buf.append(" and ");
-                    final String operator = getOperator(input, true);
-                    if (operator.equalsIgnoreCase("c"))
-                        buf.append(String.format(" instr(tile_fig, '%s') > 0", getArgument(input, true)));
-                    else if (operator.equalsIgnoreCase("!c"))
-                        buf.append(String.format(" instr(tile_fig, '%s') = 0", getArgument(input, true)));
-                    else
-                        buf.append(String.format(" tile_fig %s '%s'", operator, getArgument(input, true)));
+            {
+                String input = controller.getTileFiguresCBox().getSelectionModel().getSelectedItem();
+                if (input != null) {
+                    input = input.trim();
+                    if (input.length() > 0) {
+                        if (!input.contains("(") && !input.contains(")"))
+                            input = "(" + input + ")";
+                        input = input.replaceAll("[.,]", " ");
+                        input = input.replaceAll("\\s+", " ");
+
+                        if (!controller.getTileFiguresCBox().getItems().contains(input))
+                            controller.getTileFiguresCBox().getItems().add(input);
+                        addStringSelect(query, "tile_fig", input);
+                    }
                 }
             }
-        }
 
-        {
-            String input = controller.getTileDegreesCBox().getSelectionModel().getSelectedItem();
-            if (input != null) {
-                input = input.trim();
-                if (input.length() > 0) {
-                    if (!controller.getTileDegreesCBox().getItems().contains(input))
-                        controller.getTileDegreesCBox().getItems().add(input);
-                    if (buf.length() > 0)
-                        buf.append(" and ");
-                    final String operator = getOperator(input, true);
-                    if (operator.equalsIgnoreCase("c"))
-                        buf.append(String.format(" instr(tile_deg, '%s') > 0", getArgument(input, true)));
-                    else if (operator.equalsIgnoreCase("!c"))
-                        buf.append(String.format(" instr(tile_deg, '%s') = 0", getArgument(input, true)));
-                    else
-                        buf.append(String.format(" tile_deg %s '%s'", operator, getArgument(input, true)));
+            {
+                String input = controller.getTileDegreesCBox().getSelectionModel().getSelectedItem();
+                if (input != null) {
+                    input = input.trim();
+                    if (input.length() > 0) {
+                        if (!controller.getTileDegreesCBox().getItems().contains(input))
+                            controller.getTileDegreesCBox().getItems().add(input);
+                        addStringSelect(query, "tile_deg", input);
+                    }
                 }
             }
-        }
 
-        {
-            String input = controller.getVertexFiguresCBox().getSelectionModel().getSelectedItem();
-            if (input != null) {
-                input = input.trim();
-                if (input.length() > 0) {
-                    if (!input.contains("(") && !input.contains(")"))
-                        input = "(" + input + ")";
-                    input = input.replaceAll("[.,]", " ");
-                    input = input.replaceAll("\\s+", " ");
-
-                    if (!controller.getVertexFiguresCBox().getItems().contains(input))
-                        controller.getVertexFiguresCBox().getItems().add(input);
-                    if (buf.length() > 0)
-                        buf.append(" and ");
-                    final String operator = getOperator(input, true);
-                    if (operator.equalsIgnoreCase("c"))
-                        buf.append(String.format(" instr(vertex_fig, '%s') > 0", getArgument(input, true)));
-                    else if (operator.equalsIgnoreCase("!c"))
-                        buf.append(String.format(" instr(vertex_fig, '%s') = 0", getArgument(input, true)));
-                    else
-                        buf.append(String.format(" vertex_fig %s '%s'", operator, getArgument(input, true)));
+            {
+                String input = controller.getVertexFiguresCBox().getSelectionModel().getSelectedItem();
+                if (input != null) {
+                    input = input.trim();
+                    if (input.length() > 0) {
+                        if (!input.contains("(") && !input.contains(")"))
+                            input = "(" + input + ")";
+                        input = input.replaceAll("[.,]", " ");
+                        input = input.replaceAll("\\s+", " ");
+
+                        if (!controller.getVertexFiguresCBox().getItems().contains(input))
+                            controller.getVertexFiguresCBox().getItems().add(input);
+                        addStringSelect(query, "vertex_fig", input);
+                    }
                 }
             }
-        }
 
-        {
-            String input = controller.getVertexDegreesCBox().getSelectionModel().getSelectedItem();
-            if (input != null) {
-                input = input.trim();
-                if (input.length() > 0) {
-                    if (!controller.getVertexDegreesCBox().getItems().contains(input))
-                        controller.getVertexDegreesCBox().getItems().add(input);
-                    if (buf.length() > 0)
-                        buf.append(" and ");
-                    final String operator = getOperator(input, true);
-                    if (operator.equalsIgnoreCase("c"))
-                        buf.append(String.format(" instr(vertex_deg, '%s') > 0", getArgument(input, true)));
-                    else if (operator.equalsIgnoreCase("!c"))
-                        buf.append(String.format(" instr(vertex_deg, '%s') = 0", getArgument(input, true)));
-                    else
-                        buf.append(String.format(" vertex_deg %s '%s'", operator, getArgument(input, true)));
+            {
+                String input = controller.getVertexDegreesCBox().getSelectionModel().getSelectedItem();
+                if (input != null) {
+                    input = input.trim();
+                    if (input.length() > 0) {
+                        if (!controller.getVertexDegreesCBox().getItems().contains(input))
+                            controller.getVertexDegreesCBox().getItems().add(input);
+                        addStringSelect(query, "vertex_deg", input);
+                    }
                 }
             }
-        }
-
-        if (!controller.getNormalCheckBox().isIndeterminate()) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append(" normal = '").append(controller.getNormalCheckBox().isSelected()).append("'");
-        }
-
-        if (!controller.getSelfDualCheckBox().isIndeterminate()) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append(" self_dual = '").append(controller.getSelfDualCheckBox().isSelected()).append("'");
-        }
 
-        if (!controller.getMaximalSymmetricCheckBox().isIndeterminate()) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append(" maximal = '").append(controller.getMaximalSymmetricCheckBox().isSelected()).append("'");
-        }
-
-        if (!controller.getColorableCheckBox().isIndeterminate()) {
-            if (buf.length() > 0)
-                buf.append(" and ");
-            buf.append(" colorable = '").append(controller.getColorableCheckBox().isSelected()).append("'");
+            if (!controller.getNormalCheckBox().isIndeterminate())
+                query.compare("normal", "=", String.valueOf(controller.getNormalCheckBox().isSelected()));
+            if (!controller.getSelfDualCheckBox().isIndeterminate())
+                query.compare("self_dual", "=", String.valueOf(controller.getSelfDualCheckBox().isSelected()));
+            if (!controller.getMaximalSymmetricCheckBox().isIndeterminate())
+                query.compare("maximal", "=", String.valueOf(controller.getMaximalSymmetricCheckBox().isSelected()));
+            if (!controller.getColorableCheckBox().isIndeterminate())
+                query.compare("colorable", "=", String.valueOf(controller.getColorableCheckBox().isSelected()));
+        } catch (IllegalArgumentException ex) {
+            NotificationManager.showError("Invalid search: " + ex.getMessage());
+            return null;
         }
-
-        return buf.toString().replaceAll("\\s\\s", " ");
+        return query;
     }
 
-    private static String addIntSelect(String label, String value) {
+    private static void addIntSelect(DBQuery query, String label, String value) {
         if (value == null)
-            return null;
+            return;
         value = value.trim();
         if (value.length() == 0)
-            return null;
+            return;
+
+        query.compare(label, getOperator(value, false), Integer.parseInt(getArgument(value, false)));
+    }
 
-        return String.format("%s %s %s", label, getOperator(value, false), getArgument(value, false));
+    private static void addStringSelect(DBQuery query, String label, String value) {
+        final String operator = getOperator(value, true);
+        if (operator.equalsIgnoreCase("c"))
+            query.contains(label, getArgument(value, true), true);
+        else if (operator.equalsIgnoreCase("!c"))
+            query.contains(label, getArgument(value, true), false);
+        else
+            query.compare(label, operator, getArgument(value, true));
     }
 
     private static String getOperator(String value, boolean allowC) {
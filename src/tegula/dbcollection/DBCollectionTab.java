@@ -20,33 +20,29 @@
 package tegula.dbcollection;
 
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
 import javafx.collections.ListChangeListener;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.Pagination;
 import javafx.scene.control.Tab;
-import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import jloda.fx.control.AMultipleSelectionModel;
 import jloda.fx.util.ExtendedFXMLLoader;
 import jloda.fx.util.Printable;
-import jloda.fx.util.ProgramExecutorService;
-import jloda.fx.window.NotificationManager;
 import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
 import tegula.core.dsymbols.DSymbol;
 import tegula.core.dsymbols.OrbifoldGroupName;
+import tegula.db.DBQuery;
 import tegula.main.MainWindow;
 import tegula.main.TilingStyle;
 import tegula.util.IFileBased;
 
 import java.io.Closeable;
-import java.io.IOException;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Function;
 
 /**
@@ -57,7 +53,7 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
     private final DBCollectionTabController controller;
     private final Parent root;
 
-    private final Map<Integer, Pane> pageCache = new HashMap<>();
+    private final PageCache pageCache;
 
     private final DBCollection dbCollection;
 
@@ -65,8 +61,10 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
 
     private final BooleanProperty showLabels = new SimpleBooleanProperty(true);
     private final BooleanProperty colorPreview = new SimpleBooleanProperty(false);
+    private final BooleanProperty longPages = new SimpleBooleanProperty(ProgramProperties.get("LongPages", false));
 
     private final StringProperty previousQuery = new SimpleStringProperty("");
+    private boolean gotoLastPage = false; // go to the last page once the exact count is known
 
     private final Function<DSymbol, String> labelGetter;
 
@@ -95,6 +93,8 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
 
 		setContent(root);
 
+		pageCache = new PageCache(dbCollection, this, controller.getSizeSlider());
+
 		this.tilingStyle = new TilingStyle();
 		tilingStyle.setShowEdges(true);
 		tilingStyle.setBandCapFineness(0);
@@ -113,12 +113,26 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
             processDBSelect(previousQuery.get(), controller.getPagination().getCurrentPageIndex());
         });
 
+        longPages.addListener((c, o, n) -> {
+            ProgramProperties.put("LongPages", n);
+            processDBSelect(previousQuery.get(), 0);
+        });
+
         labelGetter = (ds) -> String.format("%d. n:%d t:%d e:%d v:%d g:%s", ds.getNr1(), ds.size(),
                 ds.countOrbits(0, 1), ds.countOrbits(0, 2), ds.countOrbits(1, 2), OrbifoldGroupName.getGroupName(ds));
 
         DBCollectionControlBindings.setup(this);
 
-        controller.getPagination().pageCountProperty().bind(dbCollection.countProperty().divide(dbCollection.pageSizeProperty()).add(1));
+        // the number of pages is indeterminate while counting:
+        controller.getPagination().pageCountProperty().bind(Bindings.createIntegerBinding(() -> dbCollection.isCounting() ? Pagination.INDETERMINATE
+                : Math.max(1, dbCollection.getNumberOfPages()), dbCollection.countProperty(), dbCollection.pageSizeProperty()));
+
+        final InvalidationListener countListener = e -> {
+            if (gotoLastPage && !dbCollection.isCounting() && !dbCollection.isCountEstimated())
+                gotoPage(LastPage);
+        };
+        dbCollection.countProperty().addListener(countListener);
+        dbCollection.countEstimatedProperty().addListener(countListener);
 
         Platform.runLater(() -> {
             dbCollection.setDbSelect("complexity >0");
@@ -140,12 +154,25 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
         });
     }
 
+    /**
+     * process a DB query, as set up by the search controls
+     *
+     * @param query the query, does nothing if null
+     */
+    public void processDBSelect(DBQuery query, int currentPageIndex) {
+        if (query != null) {
+            dbCollection.setQuery(query);
+            processDBSelect(query.toString(), currentPageIndex);
+        }
+    }
+
     /**
      * process a DB select statement
      *
 	 */
     public void processDBSelect(String select, int currentPageIndex) {
         previousQuery.set(select);
+        gotoLastPage = false;
 
         pageCache.clear();
         dbCollection.setDbSelect(select);
@@ -154,22 +181,7 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
 
         final Pagination pagination = controller.getPagination();
         pagination.setPageFactory(page -> {
-            Pane pane = pageCache.get(page);
-            if (pane == null || pane.getUserData() instanceof Integer && (Integer) pane.getUserData() != dbCollection.getNumberOfDSymbolsOnPage(page)) {
-                final TilingsPane paneNew = new TilingsPane();
-                pane = paneNew;
-                ProgramExecutorService.getInstance().submit(() -> {
-                    final ArrayList<DSymbol> dSymbols;
-                    try {
-                        dSymbols = dbCollection.getPageOfDSymbols(page);
-                        Platform.runLater(() -> selectionModel.setItems(dSymbols));
-                        Platform.runLater(() -> paneNew.addTilings(dSymbols, DBCollectionTab.this, controller.getSizeSlider()));
-                    } catch (IOException | SQLException e) {
-                        NotificationManager.showError("Failed: " + e.getMessage());
-                    }
-                });
-                pageCache.put(page, pane);
-            }
+            final TilingsPane pane = pageCache.get(page, selectionModel::setItems);
             printable.set(pane);
             return pane;
         });
@@ -177,6 +189,7 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
     }
 
     public void close() {
+        pageCache.clear();
         dbCollection.close();
     }
 
@@ -237,6 +250,19 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
         this.colorPreview.set(colorPreview);
     }
 
+    public boolean isLongPages() {
+        return longPages.get();
+    }
+
+    @Override
+    public BooleanProperty longPagesProperty() {
+        return longPages;
+    }
+
+    public void setLongPages(boolean longPages) {
+        this.longPages.set(longPages);
+    }
+
     public Function<DSymbol, String> getLabelGetter() {
         return labelGetter;
     }
@@ -272,7 +298,8 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
         final int cols = Math.max(1, (int) ((width - 20) / (controller.getSizeSlider().getValue() + 20)));
         final int rows = Math.max(1, (int) ((height - 80) / (controller.getSizeSlider().getValue() + 30)));
 
-        final int pageSize = rows * cols;
+        // long pages are scrolled, only the rows in view are set up and rendered
+        final int pageSize = (isLongPages() ? Math.max(rows * cols, ProgramProperties.get("LongPageSize", 2000)) : rows * cols);
 
         if (pageSize > 0 && pageSize != dbCollection.getPageSize()) {
             dbCollection.setPageSize(pageSize);
@@ -280,11 +307,21 @@ public class DBCollectionTab extends Tab implements ICollectionTab, Closeable, P
     }
 
 
+    /**
+     * goes to the given page. While the D-symbols are being counted, or the count is only estimated, the last page is not
+     * known, so going to the last page is postponed until the exact count is known
+     */
     @Override
     public void gotoPage(int page) {
-        page = Math.max(1, Math.min(getNumberOfPages(), page));
-        controller.getPagination().setCurrentPageIndex(page - 1);
-
+        if (dbCollection.isCounting() || dbCollection.isCountEstimated()) {
+            gotoLastPage = (page == LastPage);
+            if (!gotoLastPage)
+                controller.getPagination().setCurrentPageIndex(Math.max(1, page) - 1);
+        } else {
+            gotoLastPage = false;
+            page = Math.max(1, Math.min(getNumberOfPages(), page));
+            controller.getPagination().setCurrentPageIndex(page - 1);
+        }
     }
 
     @Override
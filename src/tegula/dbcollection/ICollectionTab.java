@@ -46,6 +46,12 @@ public interface ICollectionTab extends Closeable, Printable, IFileBased {
 
     BooleanProperty colorPreviewProperty();
 
+    boolean isLongPages();
+
+    void setLongPages(boolean longPages);
+
+    BooleanProperty longPagesProperty();
+
     Function<DSymbol, String> getLabelGetter();
 
     void updatePageSize();
@@ -0,0 +1,40 @@
+/*
+ * IPagedCollection.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.dbcollection;
+
+import tegula.core.dsymbols.DSymbol;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * a collection of tilings that is displayed page by page
+ */
+public interface IPagedCollection {
+    int getNumberOfPages();
+
+    /**
+     * @return number of D-symbols on the page, or -1, if not known yet
+     */
+    int getNumberOfDSymbolsOnPage(int pageNumber);
+
+    ArrayList<DSymbol> getPageOfDSymbols(int pageNumber) throws IOException, SQLException;
+}
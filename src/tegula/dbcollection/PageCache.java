@@ -0,0 +1,189 @@
+/*
+ * PageCache.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.dbcollection;
+
+import javafx.application.Platform;
+import javafx.scene.control.Slider;
+import jloda.fx.util.ProgramExecutorService;
+import jloda.fx.window.NotificationManager;
+import jloda.util.Basic;
+import jloda.util.ProgramProperties;
+import tegula.core.dsymbols.DSymbol;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * bounded cache of the rendered pages of a collection. The least recently shown page is evicted and its snapshots are released.
+ * Once the current page has been loaded, the previous and next pages are fetched and rendered in the background.
+ * Rendering of pages that are neither current nor adjacent is suspended.
+ * All methods must be called from the FX thread
+ */
+public class PageCache {
+    private static final Object sync = new Object();
+    private static ExecutorService prefetchService = null;
+
+    private final IPagedCollection collection;
+    private final ICollectionTab collectionTab;
+    private final Slider sizeSlider;
+
+    private final Map<Integer, Page> pages;
+    private int currentPage = -1;
+
+    /**
+     * constructor
+     */
+    public PageCache(IPagedCollection collection, ICollectionTab collectionTab, Slider sizeSlider) {
+        synchronized (sync) {
+            if (prefetchService == null)
+                prefetchService = Executors.newSingleThreadExecutor(r -> {
+                    final Thread thread = new Thread(r, "PagePrefetch");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        }
+        this.collection = collection;
+        this.collectionTab = collectionTab;
+        this.sizeSlider = sizeSlider;
+
+        final int capacity = Math.max(3, ProgramProperties.get("PageCacheSize", 5));
+        pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                if (size() > capacity) {
+                    eldest.getValue().pane.dispose();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * gets the pane for the given page and makes it the current page. If the page is not cached, it is loaded
+     *
+     * @param onLoaded called with the D-symbols of the page, once they have been loaded, unless another page has become current
+     * @return pane
+     */
+    public TilingsPane get(int pageNumber, Consumer<Collection<DSymbol>> onLoaded) {
+        currentPage = pageNumber;
+        Page page = pages.get(pageNumber);
+        final int expected = collection.getNumberOfDSymbolsOnPage(pageNumber); // -1, while counting
+        if (page == null || page.dSymbols != null && expected != -1 && page.dSymbols.size() != expected) {
+            if (page != null)
+                page.pane.dispose();
+            page = load(pageNumber, ProgramExecutorService.getInstance());
+        }
+        // previews of the current page are rendered first, then those of its neighbours. All other pages are put on hold
+        for (Map.Entry<Integer, Page> entry : pages.entrySet()) {
+            final int distance = Math.abs(entry.getKey() - pageNumber);
+            if (distance <= 1)
+                entry.getValue().pane.resume(distance == 0);
+            else
+                entry.getValue().pane.suspend();
+        }
+        page.whenLoaded(dSymbols -> {
+            if (currentPage == pageNumber) {
+                onLoaded.accept(dSymbols);
+                prefetch(pageNumber - 1);
+                prefetch(pageNumber + 1);
+            }
+        });
+        return page.pane;
+    }
+
+    /**
+     * removes all pages
+     */
+    public void clear() {
+        for (Page page : pages.values()) {
+            page.pane.dispose();
+        }
+        pages.clear();
+        currentPage = -1;
+    }
+
+    private void prefetch(int pageNumber) {
+        if (pageNumber >= 0 && pageNumber < collection.getNumberOfPages() && !pages.containsKey(pageNumber))
+            load(pageNumber, prefetchService);
+    }
+
+    private Page load(int pageNumber, ExecutorService executorService) {
+        final Page page = new Page(new TilingsPane());
+        pages.put(pageNumber, page);
+        executorService.submit(() -> {
+            try {
+                final ArrayList<DSymbol> dSymbols = collection.getPageOfDSymbols(pageNumber);
+                Platform.runLater(() -> {
+                    if (!page.pane.isDisposed()) {
+                        page.pane.addTilings(dSymbols, collectionTab, sizeSlider);
+                        page.setLoaded(dSymbols);
+                    }
+                });
+            } catch (IOException | SQLException e) {
+                Basic.caught(e);
+                Platform.runLater(() -> {
+                    if (pages.get(pageNumber) == page) { // so that the page is loaded again when it is next requested
+                        pages.remove(pageNumber);
+                        page.pane.dispose();
+                    }
+                    NotificationManager.showError("Failed: " + e.getMessage());
+                });
+            }
+        });
+        return page;
+    }
+
+    /**
+     * a cached page
+     */
+    private static class Page {
+        private final TilingsPane pane;
+        private ArrayList<DSymbol> dSymbols; // null, until loaded
+        private final ArrayList<Consumer<Collection<DSymbol>>> waiting = new ArrayList<>();
+
+        Page(TilingsPane pane) {
+            this.pane = pane;
+        }
+
+        void whenLoaded(Consumer<Collection<DSymbol>> consumer) {
+            if (dSymbols != null)
+                consumer.accept(dSymbols);
+            else
+                waiting.add(consumer);
+        }
+
+        void setLoaded(ArrayList<DSymbol> dSymbols) {
+            this.dSymbols = dSymbols;
+            for (Consumer<Collection<DSymbol>> consumer : waiting) {
+                consumer.accept(dSymbols);
+            }
+            waiting.clear();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * RenderPipeline.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.dbcollection;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import jloda.fx.util.ProgramExecutorService;
+import jloda.util.Basic;
+import jloda.util.ProgramProperties;
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * shared pipeline for rendering the previews of all collection tabs.
+ * Tasks are queued by priority, tasks for the visible page first. Each task belongs to a group (a page of previews),
+ * and the queued tasks of a group can be reprioritized or cancelled. The queue is bounded: when it is full,
+ * background tasks are dropped. The number of scene snapshots waiting for the FX thread is also bounded
+ */
+public class RenderPipeline {
+    private static RenderPipeline instance;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore snapshotPermits;
+    private final int capacity;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong totalSnapshotNanos = new AtomicLong();
+
+    private final StringProperty statistics = new SimpleStringProperty("");
+    private final AtomicBoolean statisticsUpdatePending = new AtomicBoolean(false);
+
+    public static synchronized RenderPipeline getInstance() {
+        if (instance == null)
+            instance = new RenderPipeline();
+        return instance;
+    }
+
+    private RenderPipeline() {
+        final int threads = Math.max(1, ProgramProperties.get("RenderThreads", ProgramExecutorService.getNumberOfCoresToUse()));
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), r -> {
+            final Thread thread = new Thread(r, "Render");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.prestartAllCoreThreads();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "RenderSnapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotPermits = new Semaphore(Math.max(1, ProgramProperties.get("RenderMaxSnapshots", 4)));
+        capacity = Math.max(1, ProgramProperties.get("RenderQueueCapacity", 2000));
+    }
+
+    /**
+     * submits a render job
+     *
+     * @param group   group that the job belongs to
+     * @param visible true, if the job belongs to the visible page
+     * @return task, which is cancelled if the queue is full
+     */
+    public Task submit(Object group, boolean visible, Runnable job) {
+        final Task task = new Task(group, visible, job);
+        synchronized (this) {
+            final BlockingQueue<Runnable> queue = executor.getQueue();
+            if (queue.size() >= capacity) { // drop the least important background task, visible tasks are never dropped
+                Task lowest = null;
+                for (Runnable runnable : queue) {
+                    final Task other = (Task) runnable;
+                    if (!other.visible && (lowest == null || other.compareTo(lowest) > 0))
+                        lowest = other;
+                }
+                if (!task.visible && (lowest == null || task.compareTo(lowest) > 0)) {
+                    task.cancelled = true;
+                    dropped.incrementAndGet();
+                    return task;
+                }
+                if (lowest != null && queue.remove(lowest)) {
+                    lowest.cancelled = true;
+                    dropped.incrementAndGet();
+                }
+            }
+            executor.execute(task);
+        }
+        updateStatistics();
+        return task;
+    }
+
+    /**
+     * changes the priority of all queued tasks of a group
+     */
+    public synchronized void setVisible(Object group, boolean visible) {
+        final ArrayList<Task> tasks = new ArrayList<>();
+        executor.getQueue().removeIf(r -> {
+            final Task task = (Task) r;
+            if (task.group == group && task.visible != visible) {
+                tasks.add(task);
+                return true;
+            } else
+                return false;
+        });
+        for (Task task : tasks) {
+            task.visible = visible;
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * cancels all queued tasks of a group
+     */
+    public synchronized void cancel(Object group) {
+        executor.getQueue().removeIf(r -> {
+            final Task task = (Task) r;
+            if (task.group == group) {
+                task.cancelled = true;
+                cancelled.incrementAndGet();
+                return true;
+            } else
+                return false;
+        });
+    }
+
+    /**
+     * cancels a task, if it is still queued
+     */
+    public synchronized void cancel(Task task) {
+        if (executor.getQueue().remove(task)) {
+            task.cancelled = true;
+            cancelled.incrementAndGet();
+        }
+    }
+
+    /**
+     * waits until a scene snapshot may be set up. Must be followed by a call of scheduleSnapshot()
+     *
+     * @return true, if permitted, false, if interrupted
+     */
+    public boolean acquireSnapshot() {
+        try {
+            snapshotPermits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * gives up a permit obtained by acquireSnapshot(), if the snapshot could not be set up
+     */
+    public void releaseSnapshot() {
+        snapshotPermits.release();
+    }
+
+    /**
+     * runs a snapshot in the FX thread after the given delay, and then allows the next snapshot to be set up
+     */
+    public void scheduleSnapshot(long delayMilliseconds, Runnable runnable) {
+        final long start = System.nanoTime();
+        scheduler.schedule(() -> Platform.runLater(() -> {
+            try {
+                runnable.run();
+            } finally {
+                snapshotPermits.release();
+                snapshots.incrementAndGet();
+                totalSnapshotNanos.addAndGet(System.nanoTime() - start);
+            }
+        }), delayMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * number of queued tasks
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * number of tasks being rendered
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * average time that completed tasks have waited in the queue, in milliseconds
+     */
+    public double getAverageWaitMilliseconds() {
+        final long count = completed.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1000000.0 / count;
+    }
+
+    /**
+     * average time that completed tasks have taken to run, in milliseconds
+     */
+    public double getAverageRunMilliseconds() {
+        final long count = completed.get();
+        return count == 0 ? 0 : totalRunNanos.get() / 1000000.0 / count;
+    }
+
+    /**
+     * queue depth, latencies and counts, updated in the FX thread as tasks are submitted and completed
+     */
+    public ReadOnlyStringProperty statisticsProperty() {
+        return statistics;
+    }
+
+    /**
+     * schedules an update of the statistics property, at most one update is pending at any time
+     */
+    private void updateStatistics() {
+        if (statisticsUpdatePending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                statisticsUpdatePending.set(false);
+                statistics.set(getStatistics());
+            });
+        }
+    }
+
+    public String getStatistics() {
+        final long count = snapshots.get();
+        return String.format("Render queue: %,d, active: %d, completed: %,d, cancelled: %,d, dropped: %,d, wait: %.1fms (max %.1fms), run: %.1fms, snapshots: %,d (%.1fms)",
+                getQueueDepth(), getActiveCount(), completed.get(), cancelled.get(), dropped.get(), getAverageWaitMilliseconds(), maxWaitNanos.get() / 1000000.0,
+                getAverageRunMilliseconds(), count, count == 0 ? 0 : totalSnapshotNanos.get() / 1000000.0 / count);
+    }
+
+    /**
+     * a queued render job
+     */
+    public class Task implements Runnable, Comparable<Task> {
+        private final Object group;
+        private final Runnable job;
+        private final long number = sequence.incrementAndGet();
+        private final long submitted = System.nanoTime();
+        private volatile boolean visible;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private volatile boolean failed = false;
+
+        private Task(Object group, boolean visible, Runnable job) {
+            this.group = group;
+            this.visible = visible;
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled)
+                return;
+            final long start = System.nanoTime();
+            try {
+                job.run();
+            } catch (Exception ex) {
+                failed = true;
+                Basic.caught(ex);
+            } finally {
+                done = true;
+                final long end = System.nanoTime();
+                totalWaitNanos.addAndGet(start - submitted);
+                maxWaitNanos.accumulateAndGet(start - submitted, Math::max);
+                totalRunNanos.addAndGet(end - start);
+                completed.incrementAndGet();
+                updateStatistics();
+                if (executor.getQueue().size() == 0 && ProgramProperties.get("RenderStatistics", false))
+                    System.err.println(getStatistics());
+            }
+        }
+
+        /**
+         * visible tasks come first, otherwise first come, first served
+         */
+        @Override
+        public int compareTo(Task that) {
+            if (this.visible != that.visible)
+                return this.visible ? -1 : 1;
+            else
+                return Long.compare(this.number, that.number);
+        }
+
+        /**
+         * was the task removed from the queue before it could run?
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * did the job throw an exception?
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * ThumbnailCache.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.dbcollection;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import jloda.util.Basic;
+import jloda.util.ProgramProperties;
+import tegula.core.dsymbols.DSymbol;
+import tegula.main.TilingStyle;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * persistent cache of preview images, keyed by the symbol, the style and the resolution.
+ * The images are stored as PNG in one data file, and an index file records the key, offset and length of each image.
+ * Both files are only appended to. When the data file exceeds the maximal size, the cache is cleared
+ */
+public class ThumbnailCache {
+    private static final String VERSION = "1"; // change this when the rendering of previews changes
+    private static ThumbnailCache instance;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final long maxBytes;
+
+    private final Map<Long, long[]> index = new HashMap<>(); // key to offset and length
+    private RandomAccessFile data;
+    private DataOutputStream indexOutput;
+
+    public static synchronized ThumbnailCache getInstance() {
+        if (instance == null) {
+            final String directory = ProgramProperties.get("ThumbnailCacheDirectory", System.getProperty("user.home") + File.separator + ".TegulaThumbnails");
+            instance = new ThumbnailCache(new File(directory), ProgramProperties.get("ThumbnailCacheMaxMB", 256) * 1024L * 1024L);
+        }
+        return instance;
+    }
+
+    /**
+     * constructor. If the cache files can't be opened, then the cache stays empty
+     */
+    private ThumbnailCache(File directory, long maxBytes) {
+        this.dataFile = new File(directory, "thumbnails.dat");
+        this.indexFile = new File(directory, "thumbnails.idx");
+        this.maxBytes = maxBytes;
+        if (ProgramProperties.get("UseThumbnailCache", true)) {
+            try {
+                if (!directory.exists() && !directory.mkdirs())
+                    throw new IOException("Can't create directory: " + directory);
+                open();
+            } catch (IOException e) {
+                Basic.caught(e);
+                close();
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        data = new RandomAccessFile(dataFile, "rw");
+        final long dataLength = data.length();
+        if (indexFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                while (true) {
+                    final long key = in.readLong();
+                    final long offset = in.readLong();
+                    final int length = in.readInt();
+                    if (offset + length <= dataLength) // ignore images that were not completely written
+                        index.put(key, new long[]{offset, length});
+                }
+            } catch (EOFException ignored) {
+            }
+        }
+        indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+    }
+
+    private void close() {
+        try {
+            if (data != null)
+                data.close();
+            if (indexOutput != null)
+                indexOutput.close();
+        } catch (IOException e) {
+            Basic.caught(e);
+        }
+        data = null;
+        indexOutput = null;
+        index.clear();
+    }
+
+    /**
+     * gets the cached image for the given key. Can be called from any thread
+     *
+     * @return image or null
+     */
+    public Image get(long key) {
+        final byte[] bytes;
+        synchronized (this) {
+            final long[] entry = index.get(key);
+            if (data == null || entry == null)
+                return null;
+            bytes = new byte[(int) entry[1]];
+            try {
+                data.seek(entry[0]);
+                data.readFully(bytes);
+            } catch (IOException e) {
+                Basic.caught(e);
+                return null;
+            }
+        }
+        final Image image = new Image(new ByteArrayInputStream(bytes));
+        return image.isError() ? null : image;
+    }
+
+    /**
+     * adds the image to the cache. Can be called from any thread, but not the FX thread, as encoding takes time
+     */
+    public void put(long key, Image image) {
+        synchronized (this) {
+            if (data == null || index.containsKey(key))
+                return;
+        }
+        put(key, SwingFXUtils.fromFXImage(image, null));
+    }
+
+    /**
+     * adds the image to the cache. Can be called from any thread, but not the FX thread, as encoding takes time
+     */
+    public void put(long key, BufferedImage image) {
+        synchronized (this) {
+            if (data == null || index.containsKey(key))
+                return;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            Basic.caught(e);
+            return;
+        }
+        final byte[] bytes = out.toByteArray();
+
+        synchronized (this) {
+            if (data == null || index.containsKey(key))
+                return;
+            try {
+                if (data.length() + bytes.length > maxBytes)
+                    clear();
+                final long offset = data.length();
+                data.seek(offset);
+                data.write(bytes);
+                indexOutput.writeLong(key);
+                indexOutput.writeLong(offset);
+                indexOutput.writeInt(bytes.length);
+                indexOutput.flush();
+                index.put(key, new long[]{offset, bytes.length});
+            } catch (IOException e) {
+                Basic.caught(e);
+                close();
+            }
+        }
+    }
+
+    /**
+     * removes all images
+     */
+    private void clear() throws IOException {
+        close();
+        if (!dataFile.delete() || !indexFile.delete())
+            throw new IOException("Can't delete: " + dataFile);
+        open();
+    }
+
+    /**
+     * computes the key of a preview image. Symbols that only differ by their numbers get the same key.
+     * The symbol is not brought into canonical form, because the preview depends on the numbering of the chambers
+     *
+     * @param resolution width and height of the image
+     * @param rasterized  image was drawn by the TilingRasterizer, rather than taken as a snapshot of a scene
+     * @return key
+     */
+    public static long computeKey(DSymbol dSymbol, TilingStyle tilingStyle, int resolution, boolean rasterized) {
+        final StringBuilder buf = new StringBuilder(VERSION);
+        buf.append(";").append(rasterized ? "raster" : "scene");
+        buf.append(";").append(dSymbol.toString().replaceFirst("^<\\d+\\.\\d+:", "<"));
+        buf.append(";").append(resolution);
+        buf.append(";").append(tilingStyle.getBandWidth()).append(",").append(tilingStyle.getBandColorFullOpacity()).append(",").append(tilingStyle.getBandOpacity())
+                .append(",").append(tilingStyle.getBandCapFineness());
+        buf.append(";").append(tilingStyle.isShowFaces()).append(",").append(tilingStyle.isShowBackFaces()).append(",").append(tilingStyle.isShowEdges())
+                .append(",").append(tilingStyle.isShowBackEdges()).append(",").append(tilingStyle.isShowVertices()).append(",").append(tilingStyle.isShowBackVertices())
+                .append(",").append(tilingStyle.isSmoothEdges()).append(",").append(tilingStyle.isBendAnEdge());
+        buf.append(";").append(tilingStyle.getTileColors()).append(",").append(tilingStyle.getTileOpacity()).append(",").append(tilingStyle.getBackgroundColor());
+        buf.append(";").append(tilingStyle.isShowAllChambers()).append(",").append(tilingStyle.isShowHandles()).append(",").append(tilingStyle.isShowSymmetryIcons())
+                .append(",").append(tilingStyle.getShowDecorations()).append(",").append(tilingStyle.isSphericalUsePointLight());
+        buf.append(";").append(tilingStyle.getHyperbolicModel()).append(",").append(tilingStyle.getHyperbolicLimit());
+
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(buf.toString().getBytes(StandardCharsets.UTF_8));
+            long key = 0;
+            for (int i = 0; i < 8; i++) {
+                key = (key << 8) | (digest[i] & 0xff);
+            }
+            return key;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -20,15 +20,23 @@
 package tegula.dbcollection;
 
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.binding.Bindings;
+import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
-import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.control.IndexedCell;
 import javafx.scene.control.Label;
+import javafx.scene.control.Skin;
 import javafx.scene.control.Slider;
+import javafx.scene.control.skin.CellSkinBase;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
-import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
@@ -36,38 +44,57 @@ import jloda.fx.control.AMultipleSelectionModel;
 import jloda.fx.util.ProgramExecutorService;
 import jloda.fx.util.SelectionEffect;
 import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
 import tegula.core.dsymbols.DSymbol;
 import tegula.core.dsymbols.DSymbolAlgorithms;
 import tegula.core.dsymbols.Geometry;
 import tegula.main.TilingStyle;
+import tegula.tiling.TilingRasterizer;
 import tegula.tilingeditor.TilingEditorTab;
 import tegula.tilingpane.TilingPane;
 
-import java.util.Collection;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.awt.image.BufferedImage;
+import java.util.*;
 
 /**
  * pane containing all given tilings
+ * The tilings are shown in a virtualized grid: only the rows in the viewport have nodes, which are reused when scrolling,
+ * and only previews of those rows are rendered
  * Daniel Huson, 10.2019
  */
-public class TilingsPane extends FlowPane {
-    private static final Object sync = new Object();
-    private static ExecutorService executorService = null;
+public class TilingsPane extends StackPane {
+    private final Grid grid = new Grid();
+    private final ArrayList<DSymbol> dSymbols = new ArrayList<>();
+    private ICollectionTab collectionTab;
+    private Slider sizeSlider;
+    private int columns = 1;
+
+    private final Map<Integer, Image> images; // rendered previews by index, the least recently used are released
+    private final Map<Integer, RenderPipeline.Task> renderTasks = new HashMap<>(); // queued or running renders by index
+    private final Map<Integer, Tile> shown = new HashMap<>(); // tiles in the grid by index
+
+    private final InvalidationListener sizeListener = e -> updateGrid();
+
+    private boolean visible = false; // is this the current page?
+    private boolean suspended = false;
+
+    private volatile boolean disposed = false;
 
     /**
      * construct pane
      */
     public TilingsPane() {
-        synchronized (sync) {
-            if (executorService == null)
-                executorService = Executors.newFixedThreadPool(ProgramExecutorService.getNumberOfCoresToUse());
-        }
-        setHgap(20);
-        setVgap(20);
-        setPadding(new Insets(20, 20, 20, 20));
         setBackground(new Background(new BackgroundFill(Color.WHITE, null, null)));
+        final int capacity = Math.max(1, ProgramProperties.get("PreviewImagesPerPage", 200));
+        images = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Image> eldest) {
+                return size() > capacity;
+            }
+        };
+        grid.setCellFactory(f -> new Row());
+        getChildren().add(grid);
+        widthProperty().addListener(sizeListener);
     }
 
     /**
@@ -75,97 +102,310 @@ public class TilingsPane extends FlowPane {
      *
 	 */
     public void addTilings(Collection<DSymbol> dSymbols, ICollectionTab dbCollectionTab, Slider sizeSlider) {
-        for (DSymbol dSymbol : dSymbols) {
-            getChildren().add(setupTiling(dSymbol, dbCollectionTab, sizeSlider));
-        }
-        setUserData(dSymbols.size());
+        this.dSymbols.addAll(dSymbols);
+        this.collectionTab = dbCollectionTab;
+        this.sizeSlider = sizeSlider;
+        sizeSlider.valueProperty().addListener(sizeListener);
+        updateGrid();
+        if (!visible && !suspended)
+            prefetch();
     }
 
     /**
-     * sets up the tiling
+     * (re-)schedules rendering of the previews of this pane
      *
-     * @return node producer
+     * @param visible if true, previews are rendered before those of other pages
      */
-    private Node setupTiling(DSymbol dSymbol, ICollectionTab collectionTab, Slider sizeSlider) {
-        final Label label = new Label(collectionTab.getLabelGetter().apply(dSymbol));
-        label.setFont(DBCollectionTab.getFont());
-
-        final Label shortLabel = new Label("");
-        shortLabel.setFont(DBCollectionTab.getFont());
-
-        collectionTab.showLabelsProperty().addListener((c, o, n) -> {
-            if (n) {
-                label.setTextFill(Color.BLACK);
-                shortLabel.setTextFill(Color.BLACK);
-            } else {
-                label.setTextFill(Color.WHITE);
-                shortLabel.setTextFill(Color.WHITE);
+    public void resume(boolean visible) {
+        if (disposed)
+            return;
+        this.visible = visible;
+        suspended = false;
+        RenderPipeline.getInstance().setVisible(this, visible);
+        if (visible) {
+            for (Integer index : shown.keySet()) {
+                if (!images.containsKey(index))
+                    requestRender(index);
+            }
+        } else
+            prefetch();
+    }
+
+    /**
+     * stops rendering of previews that have not yet started. Rendering is resumed by resume()
+     */
+    public void suspend() {
+        if (!suspended) {
+            suspended = true;
+            RenderPipeline.getInstance().cancel(this);
+            renderTasks.clear();
+        }
+    }
+
+    /**
+     * releases the snapshots. Tilings that have not yet been rendered are skipped
+     */
+    public void dispose() {
+        disposed = true;
+        RenderPipeline.getInstance().cancel(this);
+        renderTasks.clear();
+        images.clear();
+        shown.clear();
+        if (sizeSlider != null)
+            sizeSlider.valueProperty().removeListener(sizeListener);
+        widthProperty().removeListener(sizeListener);
+        grid.setCellCount(0);
+        getChildren().clear();
+    }
+
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    public void select(Collection<? extends DSymbol> which, boolean select) {
+        for (Tile tile : shown.values()) {
+            if (which.contains(dSymbols.get(tile.index))) {
+                if (select)
+                    tile.setEffect(SelectionEffect.getInstance());
+                else
+                    tile.setEffect(null);
             }
-        });
+        }
+    }
 
+    /**
+     * lays out the rows of the grid for the current width and preview size
+     */
+    private void updateGrid() {
+        if (disposed || sizeSlider == null)
+            return;
         final double size = sizeSlider.getValue();
+        columns = Math.max(1, (int) ((getWidth() - 20) / (size + 20)));
+        grid.setFixedCellSize(Math.ceil(size) + 50);
+        grid.setCellCount((dSymbols.size() + columns - 1) / columns);
+        grid.rebuild();
+    }
+
+    /**
+     * renders the first previews of a page that is not shown yet
+     */
+    private void prefetch() {
+        final int count = Math.min(dSymbols.size(), ProgramProperties.get("PrefetchPreviews", 100));
+        for (int index = 0; index < count; index++) {
+            if (!images.containsKey(index))
+                requestRender(index);
+        }
+    }
+
+    private void requestRender(int index) {
+        if (disposed || suspended)
+            return;
+        final RenderPipeline.Task task = renderTasks.get(index);
+        if (task == null || task.isCancelled() || task.isFailed()) // a render that failed is tried again
+            renderTasks.put(index, RenderPipeline.getInstance().submit(this, visible, createRenderJob(index)));
+    }
+
+    /**
+     * cancels queued renders of previews that are not in the viewport
+     */
+    private void cancelHiddenRenders() {
+        for (Iterator<Map.Entry<Integer, RenderPipeline.Task>> it = renderTasks.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Integer, RenderPipeline.Task> entry = it.next();
+            if (!shown.containsKey(entry.getKey())) {
+                RenderPipeline.getInstance().cancel(entry.getValue());
+                if (entry.getValue().isCancelled()) // a render that has already started is allowed to complete
+                    it.remove();
+            }
+        }
+    }
+
+    /**
+     * called in the FX thread when a preview has been rendered
+     */
+    private void setImage(int index, Image image) {
+        if (disposed)
+            return;
+        renderTasks.remove(index);
+        images.put(index, image);
+        final Tile tile = shown.get(index);
+        if (tile != null)
+            tile.setImage(image);
+    }
 
-        final Rectangle rectangle = new Rectangle();
-        rectangle.setStroke(Color.LIGHTGRAY);
-        rectangle.setFill(Color.TRANSPARENT);
-        rectangle.setWidth(size);
-        rectangle.setHeight(size);
-        rectangle.widthProperty().bind(sizeSlider.valueProperty());
-        rectangle.heightProperty().bind(sizeSlider.valueProperty());
-        final VBox vBox = new VBox(rectangle, size < 150 ? shortLabel : label);
-        vBox.setUserData(dSymbol);
-
-        executorService.submit(() -> {
+    /**
+     * creates the job that renders a preview
+     */
+    private Runnable createRenderJob(int index) {
+        final DSymbol dSymbol = dSymbols.get(index);
+        final int resolution = (int) Math.round(0.5 * sizeSlider.getMax());
+
+        return () -> {
+			if (disposed)
+				return;
 			final TilingStyle tilingStyle = new TilingStyle(collectionTab.getTilingStyle());
+			final Geometry geometry = dSymbol.computeGeometry();
+			tilingStyle.setBendAnEdge(!DSymbolAlgorithms.isMaximalSymmetry(dSymbol));
+			tilingStyle.setBandWidth(geometry == Geometry.Spherical ? 4 : 8);
+
+			final boolean rasterize = ProgramProperties.get("SoftwarePreviews", true);
 
-			final TilingPane tilingPane = new TilingPane(dSymbol, tilingStyle, true, false);
-			tilingPane.getTilingStyle().setBendAnEdge(!DSymbolAlgorithms.isMaximalSymmetry(dSymbol));
-			tilingPane.getTilingStyle().setBandWidth(tilingPane.getGeometry() == Geometry.Spherical ? 4 : 8);
-			tilingPane.setPrefWidth(0.5 * sizeSlider.getMax());
-			tilingPane.setPrefHeight(0.5 * sizeSlider.getMax());
-			new Scene(tilingPane);
+			// previews that were rendered before are served from the thumbnail cache, without setting up a scene:
+			final long key = ThumbnailCache.computeKey(dSymbol, tilingStyle, resolution, rasterize);
+			final Image cached = ThumbnailCache.getInstance().get(key);
+			if (cached != null) {
+				Platform.runLater(() -> setImage(index, cached));
+				return;
+			}
+
+			if (rasterize) { // draw the preview in this thread, no scene or snapshot required
+				final BufferedImage bufferedImage = TilingRasterizer.apply(dSymbol, tilingStyle, resolution);
+				final Image image = SwingFXUtils.toFXImage(bufferedImage, null);
+				Platform.runLater(() -> setImage(index, image));
+				ThumbnailCache.getInstance().put(key, bufferedImage); // encode the original, not a copy of the FX image
+				return;
+			}
+
+			// at most a few scenes wait for their snapshot in the FX thread at any time:
+			if (!RenderPipeline.getInstance().acquireSnapshot())
+				return;
+			final TilingPane tilingPane;
+			try {
+				tilingPane = new TilingPane(dSymbol, tilingStyle, true, false);
+				tilingPane.setPrefWidth(resolution);
+				tilingPane.setPrefHeight(resolution);
+				new Scene(tilingPane);
+			} catch (RuntimeException ex) {
+				RenderPipeline.getInstance().releaseSnapshot();
+				throw ex;
+			}
 
 			// need to wait a short while before making a snapshot (otherwise some hyperbolic tilings will not appear)
-			Executors.newSingleThreadScheduledExecutor().schedule(() -> Platform.runLater(() -> {
-				final ImageView imageView = new ImageView(tilingPane.snapshot(null, null));
-				imageView.setPreserveRatio(true);
-				imageView.setFitWidth(sizeSlider.getValue());
-				imageView.fitWidthProperty().bind(sizeSlider.valueProperty());
-				imageView.fitWidthProperty().addListener((c, o, n) -> {
-					if (n.doubleValue() < 150)
-						vBox.getChildren().set(1, shortLabel);
-					else
-						vBox.getChildren().set(1, label);
-				});
-				vBox.getChildren().set(0, imageView);
-			}), tilingPane.getGeometry() == Geometry.Hyperbolic ? 600 : 100, TimeUnit.MILLISECONDS);
-		});
-
-        final AMultipleSelectionModel<DSymbol> selectionModel = collectionTab.getSelectionModel();
-        vBox.setOnMouseClicked((e) -> {
-            if (e.getClickCount() == 1) {
-                if (!e.isShiftDown())
-                    selectionModel.clearSelection();
-                selectionModel.select((DSymbol) vBox.getUserData());
-            } else if (e.getClickCount() == 2) {
-				final TilingEditorTab editorTab = new TilingEditorTab(new DSymbol(dSymbol), FileUtils.replaceFileSuffix(FileUtils.getFileNameWithoutPath(collectionTab.getFileName()), "-" + dSymbol.getNr1()));
-                collectionTab.getMainWindow().getMainTabPane().getTabs().add(editorTab);
+			RenderPipeline.getInstance().scheduleSnapshot(geometry == Geometry.Hyperbolic ? 600 : 100, () -> {
+				if (disposed)
+					return;
+				final Image image;
+				try {
+					image = tilingPane.snapshot(null, null);
+				} catch (RuntimeException ex) {
+					renderTasks.remove(index); // the task has completed, so allow the preview to be requested again
+					throw ex;
+				}
+				setImage(index, image);
+				ProgramExecutorService.getInstance().submit(() -> ThumbnailCache.getInstance().put(key, image));
+			});
+		};
+    }
+
+    /**
+     * the virtual flow of rows
+     */
+    private class Grid extends VirtualFlow<Row> {
+        void rebuild() {
+            rebuildCells();
+        }
+
+        @Override
+        protected void layoutChildren() {
+            super.layoutChildren();
+            if (!disposed)
+                cancelHiddenRenders();
+        }
+    }
+
+    /**
+     * a row of the grid, reused for different rows while scrolling
+     */
+    private class Row extends IndexedCell<Integer> {
+        private final HBox hBox = new HBox(20);
+        private final ArrayList<Tile> tiles = new ArrayList<>();
+
+        Row() {
+            hBox.setPadding(new Insets(10, 20, 10, 20));
+            setGraphic(hBox);
+            setStyle("-fx-background-color: white; -fx-padding: 0;");
+        }
+
+        @Override
+        protected Skin<?> createDefaultSkin() {
+            return new CellSkinBase<>(this);
+        }
+
+        @Override
+        public void updateIndex(int row) {
+            super.updateIndex(row);
+            for (Tile tile : tiles) {
+                if (tile.index != -1 && shown.get(tile.index) == tile)
+                    shown.remove(tile.index);
+                tile.index = -1;
+            }
+            if (disposed)
+                return;
+            final int first = row * columns;
+            final int count = (row < 0 ? 0 : Math.max(0, Math.min(columns, dSymbols.size() - first)));
+            while (tiles.size() < count)
+                tiles.add(new Tile());
+            hBox.getChildren().setAll(tiles.subList(0, count));
+            for (int i = 0; i < count; i++) {
+                final int index = first + i;
+                tiles.get(i).setIndex(index);
+                shown.put(index, tiles.get(i));
+                if (!images.containsKey(index))
+                    requestRender(index);
             }
-        });
-        return vBox;
+        }
     }
 
-    public void select(Collection<? extends DSymbol> which, boolean select) {
-        for (Node node : getChildren()) {
-            if (node.getUserData() instanceof DSymbol) {
-                final DSymbol dSymbol = (DSymbol) node.getUserData();
-                if (which.contains(dSymbol)) {
-                    if (select)
-                        node.setEffect(SelectionEffect.getInstance());
-                    else
-                        node.setEffect(null);
+    /**
+     * the preview and label of a tiling
+     */
+    private class Tile extends VBox {
+        private final Rectangle rectangle = new Rectangle();
+        private final ImageView imageView = new ImageView();
+        private final Label label = new Label();
+        private int index = -1;
+
+        Tile() {
+            rectangle.setStroke(Color.LIGHTGRAY);
+            rectangle.setFill(Color.TRANSPARENT);
+            rectangle.widthProperty().bind(sizeSlider.valueProperty());
+            rectangle.heightProperty().bind(sizeSlider.valueProperty());
+            imageView.setPreserveRatio(true);
+            imageView.fitWidthProperty().bind(sizeSlider.valueProperty());
+            label.setFont(DBCollectionTab.getFont());
+            label.maxWidthProperty().bind(sizeSlider.valueProperty());
+            label.textFillProperty().bind(Bindings.when(collectionTab.showLabelsProperty()).then(Color.BLACK).otherwise(Color.WHITE));
+            getChildren().addAll(rectangle, label);
+
+            final AMultipleSelectionModel<DSymbol> selectionModel = collectionTab.getSelectionModel();
+            setOnMouseClicked((e) -> {
+                if (index == -1)
+                    return;
+                final DSymbol dSymbol = dSymbols.get(index);
+                if (e.getClickCount() == 1) {
+                    if (!e.isShiftDown())
+                        selectionModel.clearSelection();
+                    selectionModel.select(dSymbol);
+                } else if (e.getClickCount() == 2) {
+                    final TilingEditorTab editorTab = new TilingEditorTab(new DSymbol(dSymbol), FileUtils.replaceFileSuffix(FileUtils.getFileNameWithoutPath(collectionTab.getFileName()), "-" + dSymbol.getNr1()));
+                    collectionTab.getMainWindow().getMainTabPane().getTabs().add(editorTab);
                 }
+            });
+        }
+
+        void setIndex(int index) {
+            this.index = index;
+            final DSymbol dSymbol = dSymbols.get(index);
+            label.setText(sizeSlider.getValue() < 150 ? "" : collectionTab.getLabelGetter().apply(dSymbol));
+            setEffect(collectionTab.getSelectionModel().getSelectedItems().contains(dSymbol) ? SelectionEffect.getInstance() : null);
+            setImage(images.get(index));
+        }
 
+        void setImage(Image image) {
+            if (image == null)
+                getChildren().set(0, rectangle);
+            else {
+                imageView.setImage(image);
+                getChildren().set(0, imageView);
             }
         }
     }
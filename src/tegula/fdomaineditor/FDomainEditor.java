@@ -69,6 +69,7 @@ public class FDomainEditor {
         fDomainPane.addEventFilter(MouseEvent.MOUSE_CLICKED, e -> tilingEditorTab.getTabPane().requestFocus());
 
         tilingEditorTab.getTilingPane().lastWorldUpdateProperty().addListener((e) -> fDomainPane.update());
+        tilingEditorTab.getTilingPane().lastStyleUpdateProperty().addListener((e) -> fDomainPane.update());
 
         AnchorPane.setTopAnchor(fDomainPane, 30.0);
         AnchorPane.setLeftAnchor(fDomainPane, 0.0);
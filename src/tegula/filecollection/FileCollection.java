@@ -23,6 +23,7 @@ import javafx.beans.property.*;
 import jloda.util.FileUtils;
 import jloda.util.ProgramProperties;
 import tegula.core.dsymbols.DSymbol;
+import tegula.dbcollection.IPagedCollection;
 import tegula.util.IFileBased;
 
 import java.io.Closeable;
@@ -32,7 +33,7 @@ import java.util.ArrayList;
  * opens a collection of tilings from a file
  * Daniel Huson, 10.2019
  */
-public class FileCollection implements Closeable, IFileBased {
+public class FileCollection implements Closeable, IFileBased, IPagedCollection {
     private final ArrayList<String> lines = new ArrayList<>();
     private final StringProperty fileName = new SimpleStringProperty();
 
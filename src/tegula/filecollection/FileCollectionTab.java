@@ -26,7 +26,6 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.Pagination;
 import javafx.scene.control.Tab;
-import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import jloda.fx.control.AMultipleSelectionModel;
@@ -36,10 +35,12 @@ import jloda.fx.util.ProgramExecutorService;
 import jloda.fx.window.NotificationManager;
 import jloda.util.Basic;
 import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
 import tegula.core.dsymbols.DSymbol;
 import tegula.core.dsymbols.DSymbolAlgorithms;
 import tegula.core.dsymbols.OrbifoldGroupName;
 import tegula.dbcollection.ICollectionTab;
+import tegula.dbcollection.PageCache;
 import tegula.dbcollection.TilingsPane;
 import tegula.main.MainWindow;
 import tegula.main.TilingStyle;
@@ -48,9 +49,6 @@ import tegula.util.IFileBased;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Function;
 
 /**
@@ -61,7 +59,7 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
     private final FileCollectionTabController controller;
     private final Parent root;
 
-    private final Map<Integer, Pane> pageCache = new HashMap<>();
+    private final PageCache pageCache;
 
     private final FileCollection fileCollection;
 
@@ -71,6 +69,8 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
 
     private final BooleanProperty colorPreview = new SimpleBooleanProperty(false);
 
+    private final BooleanProperty longPages = new SimpleBooleanProperty(ProgramProperties.get("LongPages", false));
+
     private final Function<DSymbol, String> labelGetter;
 
     public static final Font font = new Font("Arial", 12);
@@ -98,6 +98,8 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
 
 		setContent(root);
 
+		pageCache = new PageCache(fileCollection, this, controller.getSizeSlider());
+
 		tilingStyle = new TilingStyle();
 		tilingStyle.setShowEdges(true);
 		tilingStyle.setBandWidth(4);
@@ -115,6 +117,11 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
             processOpenFile(controller.getPagination().getCurrentPageIndex());
         });
 
+        longPages.addListener((c, o, n) -> {
+            ProgramProperties.put("LongPages", n);
+            processOpenFile(0);
+        });
+
         labelGetter = (ds) -> String.format("%d. n:%d t:%d e:%d v:%d g:%s%s", ds.getNr1(), ds.size(),
                 ds.countOrbits(0, 1), ds.countOrbits(0, 2), ds.countOrbits(1, 2), OrbifoldGroupName.getGroupName(ds),
                 (DSymbolAlgorithms.isMaximalSymmetry(ds) ? " max" : ""));
@@ -152,17 +159,7 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
                 updatePageSize();
 
                 pagination.setPageFactory((page) -> {
-                    Pane pane = pageCache.get(page);
-                    if (pane == null || pane.getUserData() instanceof Integer && (Integer) pane.getUserData() != fileCollection.getNumberOfDSymbolsOnPage(page)) {
-                        final TilingsPane paneNew = new TilingsPane();
-                        pane = paneNew;
-                        ProgramExecutorService.getInstance().submit(() -> {
-                            final Collection<DSymbol> dSymbols = fileCollection.getPageOfDSymbols(page);
-                            Platform.runLater(() -> selectionModel.setItems(dSymbols));
-                            Platform.runLater(() -> paneNew.addTilings(dSymbols, FileCollectionTab.this, controller.getSizeSlider()));
-                        });
-                        pageCache.put(page, pane);
-                    }
+                    final TilingsPane pane = pageCache.get(page, selectionModel::setItems);
                     printable.set(pane);
                     updatePageSize();
 
@@ -177,6 +174,7 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
     }
 
     public void close() {
+        pageCache.clear();
         fileCollection.close();
     }
 
@@ -240,6 +238,19 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
         this.colorPreview.set(colorPreview);
     }
 
+    public boolean isLongPages() {
+        return longPages.get();
+    }
+
+    @Override
+    public BooleanProperty longPagesProperty() {
+        return longPages;
+    }
+
+    public void setLongPages(boolean longPages) {
+        this.longPages.set(longPages);
+    }
+
     @Override
     public Function<DSymbol, String> getLabelGetter() {
         return labelGetter;
@@ -276,7 +287,8 @@ public class FileCollectionTab extends Tab implements ICollectionTab, Closeable,
         final int cols = Math.max(1, (int) ((width - 20) / (controller.getSizeSlider().getValue() + 20)));
         final int rows = Math.max(1, (int) ((height - 80) / (controller.getSizeSlider().getValue() + 30)));
 
-        final int pageSize = rows * cols;
+        // long pages are scrolled, only the rows in view are set up and rendered
+        final int pageSize = (isLongPages() ? Math.max(rows * cols, ProgramProperties.get("LongPageSize", 2000)) : rows * cols);
 
         if (pageSize > 0 && pageSize != fileCollection.getPageSize()) {
             fileCollection.setPageSize(pageSize);
@@ -86,8 +86,7 @@ public class Tools {
         if (geometry == Geometry.Euclidean) {
             return a.midpoint(b);
         } else if (geometry == Geometry.Spherical) {
-            // return (a.midpoint(b)).normalize().multiply(100);
-            return interpolateSpherePoints(a, b, 0.5);
+            return sphericalMidpoint(a, b);
         } else {
             return interpolateHyperbolicPoints(a, b, 0.5);
         }
@@ -100,40 +99,9 @@ public class Tools {
      * @return midpoint between a and b
      */
     public static Point3D interpolateHyperbolicPoints(Point3D a, Point3D b, double pos) {
-        final Point3D point1 = a.multiply(0.01);
-        final Point3D point2 = b.multiply(0.01);
-        final Point3D bottom = new Point3D(0, 0, 1);
-
-        final double rotAngle1 = (point1.equals(bottom) ? 0 : xAxis.angle(point1.getX(), point1.getY(), 0));
-
-        final Point3D rotAxis1 = new Point3D(0, 0, point1.getY() >= 0 ? -1 : 1);
-
-        final Rotate rotateToX = new Rotate(rotAngle1, rotAxis1);
-        final Rotate rotateToXInv = new Rotate(-rotAngle1, rotAxis1);
-
-        ///////
-
-        final double dist1 = Math.log(Math.abs(point1.getZ() + Math.sqrt(Math.abs(point1.getZ() * point1.getZ() - 1))));
-
-        Affine translate1 = new Affine(Math.cosh(-dist1), 0, Math.sinh(-dist1), 0, 0, 1, 0, 0, Math.sinh(-dist1), 0, Math.cosh(-dist1), 0);
-        Affine translate1Inv = new Affine(Math.cosh(dist1), 0, Math.sinh(dist1), 0, 0, 1, 0, 0, Math.sinh(dist1), 0, Math.cosh(dist1), 0);
-
-        ///////
-
-        final Point3D p2moved = translate1.transform(rotateToX.transform(point2));
-
-        final double rotAngle2 = (p2moved.equals(bottom) ? 0 : xAxis.angle(p2moved.getX(), p2moved.getY(), 0));
-        final Point3D rotAxis2 = new Point3D(0, 0, p2moved.getY() >= 0 ? -1 : 1);
-
-        Rotate rotate2 = new Rotate(-rotAngle2, rotAxis2); // only inverse is needed
-
-        ///////
-
-        final double dist2 = pos * Math.log(Math.abs(p2moved.getZ() + Math.sqrt(Math.abs(p2moved.getZ() * p2moved.getZ() - 1))));
-
-        final Affine translate2 = new Affine(Math.cosh(dist2), 0, Math.sinh(dist2), 0, 0, 1, 0, 0, Math.sinh(dist2), 0, Math.cosh(dist2), 0);
-
-        return rotateToXInv.transform(translate1Inv.transform(rotate2.transform(translate2.transform(bottom)))).multiply(100);
+        final double[] result = new double[3];
+        interpolateHyperbolicPoints(new double[]{a.getX(), a.getY(), a.getZ()}, 0, new double[]{b.getX(), b.getY(), b.getZ()}, 0, pos, result, 0, 1);
+        return new Point3D(result[0], result[1], result[2]);
     }
 
     /**
@@ -436,6 +404,188 @@ public class Tools {
         }
     }
 
+    // batch versions on flat coordinate arrays ///////////////////////
+    // points are stored as x0,y0,x1,y1,... or x0,y0,z0,x1,y1,z1,..., offsets and counts are given in points
+
+    /**
+     * maps 2D points (unit model) to 3D points (scaled with 100), depending on geometry
+     */
+    public static void map2Dto3D(Geometry geometry, double[] xy, int xyOffset, double[] xyz, int xyzOffset, int count) {
+        switch (geometry) {
+            default: { // Euclidean
+                for (int i = 0; i < count; i++) {
+                    final int s = 2 * (xyOffset + i), t = 3 * (xyzOffset + i);
+                    xyz[t] = 100 * xy[s];
+                    xyz[t + 1] = 100 * xy[s + 1];
+                    xyz[t + 2] = 0;
+                }
+                break;
+            }
+            case Spherical: {
+                for (int i = 0; i < count; i++) {
+                    final int s = 2 * (xyOffset + i), t = 3 * (xyzOffset + i);
+                    final double x = xy[s], y = xy[s + 1];
+                    final double d = x * x + y * y;
+                    final double f = 100 / (1 + d);
+                    xyz[t] = 2 * x * f;
+                    xyz[t + 1] = 2 * y * f;
+                    xyz[t + 2] = (d - 1) * f;
+                }
+                break;
+            }
+            case Hyperbolic: {
+                for (int i = 0; i < count; i++) {
+                    final int s = 2 * (xyOffset + i), t = 3 * (xyzOffset + i);
+                    double x = xy[s], y = xy[s + 1];
+                    double d = x * x + y * y;
+                    if (d == 0) { // zero causes problems
+                        x = y = 0.000000001;
+                        d = 2 * x * x;
+                    }
+                    if (d < 1) {
+                        final double f = 100 / (1 - d);
+                        xyz[t] = 2 * x * f;
+                        xyz[t + 1] = 2 * y * f;
+                        xyz[t + 2] = (1 + d) * f;
+                    } else
+                        xyz[t] = xyz[t + 1] = xyz[t + 2] = 0;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * maps 3D points (scaled with 100) to 2D points (unit model), depending on geometry, see map3Dto2D
+     */
+    public static void map3Dto2D(Geometry geometry, double[] xyz, int xyzOffset, double[] xy, int xyOffset, int count) {
+        switch (geometry) {
+            default: { // Euclidean
+                for (int i = 0; i < count; i++) {
+                    final int s = 3 * (xyzOffset + i), t = 2 * (xyOffset + i);
+                    xy[t] = 0.01 * xyz[s];
+                    xy[t + 1] = 0.01 * xyz[s + 1];
+                }
+                break;
+            }
+            case Spherical: { // inverse of stereographic projection
+                for (int i = 0; i < count; i++) {
+                    final int s = 3 * (xyzOffset + i), t = 2 * (xyOffset + i);
+                    final double z = 0.01 * xyz[s + 2];
+                    final double f = 0.01 / (1 - z); // = 0.01 * (d + 1) / 2 with d = (1 + z) / (1 - z)
+                    xy[t] = f * xyz[s];
+                    xy[t + 1] = f * xyz[s + 1];
+                }
+                break;
+            }
+            case Hyperbolic: { // hyperboloid to Poincare disk
+                for (int i = 0; i < count; i++) {
+                    final int s = 3 * (xyzOffset + i), t = 2 * (xyOffset + i);
+                    final double f = 1 / (100 + xyz[s + 2]);
+                    xy[t] = f * xyz[s];
+                    xy[t + 1] = f * xyz[s + 1];
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * computes the midpoints of pairs of 3D points a[i],b[i], depending on geometry
+     */
+    public static void midpoint3D(Geometry geometry, double[] a, int aOffset, double[] b, int bOffset, double[] result, int resultOffset, int count) {
+        switch (geometry) {
+            default: { // Euclidean
+                for (int i = 0; i < count; i++) {
+                    final int s = 3 * (aOffset + i), t = 3 * (bOffset + i), r = 3 * (resultOffset + i);
+                    result[r] = 0.5 * (a[s] + b[t]);
+                    result[r + 1] = 0.5 * (a[s + 1] + b[t + 1]);
+                    result[r + 2] = 0.5 * (a[s + 2] + b[t + 2]);
+                }
+                break;
+            }
+            case Spherical:
+                sphericalMidpoint(a, aOffset, b, bOffset, result, resultOffset, count);
+                break;
+            case Hyperbolic: { // the midpoint is the sum of the two points, projected onto the hyperboloid
+                for (int i = 0; i < count; i++) {
+                    final int s = 3 * (aOffset + i), t = 3 * (bOffset + i), r = 3 * (resultOffset + i);
+                    final double x = a[s] + b[t];
+                    final double y = a[s + 1] + b[t + 1];
+                    final double z = a[s + 2] + b[t + 2];
+                    final double f = 100 / Math.sqrt(Math.max(1e-12, z * z - x * x - y * y));
+                    result[r] = f * x;
+                    result[r + 1] = f * y;
+                    result[r + 2] = f * z;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * computes the midpoints of pairs of points a[i],b[i] on the sphere, projected onto the sphere of radius 100
+     */
+    public static void sphericalMidpoint(double[] a, int aOffset, double[] b, int bOffset, double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int s = 3 * (aOffset + i), t = 3 * (bOffset + i), r = 3 * (resultOffset + i);
+            final double fa = 1 / Math.sqrt(a[s] * a[s] + a[s + 1] * a[s + 1] + a[s + 2] * a[s + 2]);
+            final double fb = 1 / Math.sqrt(b[t] * b[t] + b[t + 1] * b[t + 1] + b[t + 2] * b[t + 2]);
+            final double x = fa * a[s] + fb * b[t];
+            final double y = fa * a[s + 1] + fb * b[t + 1];
+            final double z = fa * a[s + 2] + fb * b[t + 2];
+            final double f = 100 / Math.sqrt(x * x + y * y + z * z);
+            result[r] = f * x;
+            result[r + 1] = f * y;
+            result[r + 2] = f * z;
+        }
+    }
+
+    /**
+     * interpolates between pairs of points a[i],b[i] on the hyperboloid (scaled with 100), along the geodesic.
+     * With d the distance between the points, the result is (sinh((1-pos)*d)*a + sinh(pos*d)*b)/sinh(d)
+     */
+    public static void interpolateHyperbolicPoints(double[] a, int aOffset, double[] b, int bOffset, double pos, double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int s = 3 * (aOffset + i), t = 3 * (bOffset + i), r = 3 * (resultOffset + i);
+            final double cosh = Math.max(1, 0.0001 * (a[s + 2] * b[t + 2] - a[s] * b[t] - a[s + 1] * b[t + 1]));
+            final double d = Math.log(cosh + Math.sqrt(cosh * cosh - 1));
+            final double fa, fb;
+            if (d < 1e-9) {
+                fa = 1 - pos;
+                fb = pos;
+            } else {
+                final double sinh = Math.sinh(d);
+                fa = Math.sinh((1 - pos) * d) / sinh;
+                fb = Math.sinh(pos * d) / sinh;
+            }
+            result[r] = fa * a[s] + fb * b[t];
+            result[r + 1] = fa * a[s + 1] + fb * b[t + 1];
+            result[r + 2] = fa * a[s + 2] + fb * b[t + 2];
+        }
+    }
+
+    /**
+     * moves 3D points slightly above the surface, in place, see moveSlightlyAbove
+     */
+    public static void moveSlightlyAbove(Geometry geometry, double[] xyz, int offset, int count) {
+        // - because we view from below
+        switch (geometry) {
+            case Euclidean:
+                for (int i = 3 * offset + 2; i < 3 * (offset + count); i += 3)
+                    xyz[i] -= 0.01;
+                break;
+            case Spherical:
+                for (int i = 3 * offset; i < 3 * (offset + count); i++)
+                    xyz[i] *= 1.01;
+                break;
+            case Hyperbolic:
+                for (int i = 3 * offset + 2; i < 3 * (offset + count); i += 3)
+                    xyz[i] -= 0.6;
+                break;
+        }
+    }
+
     // more geometric tools ///////////////////////
     public static double arcsinh(double value) {
         return Math.log(value + Math.sqrt(1 + (value * value)));
@@ -70,6 +70,7 @@ public class ControlBindings {
             if (n instanceof ICollectionTab) {
                 controller.getShowLabelsMenuItem().setSelected(((ICollectionTab) n).isShowLabels());
                 controller.getColorPreviewMenuItem().setSelected(((ICollectionTab) n).isColorPreview());
+                controller.getLongPagesMenuItem().setSelected(((ICollectionTab) n).isLongPages());
             }
         });
         final IntegerProperty selectionInCollection = new SimpleIntegerProperty(0);
@@ -103,6 +104,7 @@ public class ControlBindings {
                 controller.getRedoMenuItem().textProperty().bind(tab.getUndoManager().redoNameProperty());
 
                 controller.getShowChambersMenuItem().setSelected(tab.getTilingStyle().isShowAllChambers());
+                controller.getBakeCopiesMenuItem().setSelected(tab.getTilingStyle().isBakeCopies());
                 controller.getSaveSelectedMenuItem().setDisable(false);
 
                 controller.getShowMoreTilesMenuItem().setDisable(tab.getTiling().getGeometry() != Geometry.Hyperbolic);
@@ -119,6 +121,7 @@ public class ControlBindings {
                 controller.getRedoMenuItem().setText("Redo");
 
                 controller.getShowChambersMenuItem().setSelected(false);
+                controller.getBakeCopiesMenuItem().setSelected(false);
 
                 controller.getShowMoreTilesMenuItem().setDisable(true);
                 controller.getShowLessTilesMenuItem().setDisable(true);
@@ -267,6 +270,13 @@ public class ControlBindings {
         });
         controller.getColorPreviewMenuItem().disableProperty().bind(isCollectionTabSelected.not());
 
+        controller.getLongPagesMenuItem().setOnAction((e) -> {
+            if (selectedTab.get() instanceof ICollectionTab) {
+                ((ICollectionTab) selectedTab.get()).setLongPages(controller.getLongPagesMenuItem().isSelected());
+            }
+        });
+        controller.getLongPagesMenuItem().disableProperty().bind(isCollectionTabSelected.not());
+
 
         controller.getShowChambersMenuItem().setOnAction((e) -> {
             final boolean selected = controller.getShowChambersMenuItem().isSelected();
@@ -289,6 +299,27 @@ public class ControlBindings {
         });
         controller.getShowChambersMenuItem().disableProperty().bind(isCollectionTabSelected);
 
+        controller.getBakeCopiesMenuItem().setOnAction((e) -> {
+            final boolean selected = controller.getBakeCopiesMenuItem().isSelected();
+            if (selectedTab.get() instanceof TilingEditorTab) {
+                final TilingEditorTab tab = (TilingEditorTab) selectedTab.get();
+                tab.getUndoManager().doAndAdd(new UndoableRedoableCommand("bake copies") {
+                    @Override
+                    public void undo() {
+                        tab.getTilingStyle().setBakeCopies(!selected);
+                        controller.getBakeCopiesMenuItem().setSelected(!selected);
+                    }
+
+                    @Override
+                    public void redo() {
+                        tab.getTilingStyle().setBakeCopies(selected);
+                        controller.getBakeCopiesMenuItem().setSelected(selected);
+                    }
+                });
+            }
+        });
+        controller.getBakeCopiesMenuItem().disableProperty().bind(isCollectionTabSelected);
+
         controller.getShowMoreTilesMenuItem().setOnAction((e) -> {
             if (selectedTab.get() instanceof TilingEditorTab) {
                 final TilingEditorTab tab = (TilingEditorTab) selectedTab.get();
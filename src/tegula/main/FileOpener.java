@@ -57,7 +57,7 @@ public class FileOpener implements Consumer<String> {
         if (window == null)
             return;
         try {
-            if (file.getPath().endsWith(".tdb")) {
+            if (file.getPath().endsWith(".tdb") || file.getPath().endsWith(".tdbs") || file.isDirectory()) {
                 try {
                     final MainWindow toUse;
                     if (window.hasCollection()) {
@@ -66,7 +66,11 @@ public class FileOpener implements Consumer<String> {
                     } else
                         toUse = window;
 
-                    final DBCollection dbCollection = new DBCollection(file.getPath());
+                    final DBCollection dbCollection;
+                    if (file.getPath().endsWith(".tdb"))
+                        dbCollection = new DBCollection(file.getPath());
+                    else // several databases that are opened as one collection
+                        dbCollection = new DBCollection(file.getPath(), DBCollection.getShardFiles(file));
                     final DBCollectionTab dbCollectionTab = new DBCollectionTab(toUse, dbCollection);
 					toUse.getMainTabPane().getTabs().add(dbCollectionTab);
 					toUse.getStage().setTitle(FileUtils.getFileNameWithoutPath(fileName) + " - " + ProgramProperties.getProgramName());
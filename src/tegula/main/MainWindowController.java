@@ -108,9 +108,15 @@ public class MainWindowController {
     @FXML
     private CheckMenuItem colorPreviewMenuItem;
 
+    @FXML
+    private CheckMenuItem longPagesMenuItem;
+
     @FXML
     private CheckMenuItem showChambersMenuItem;
 
+    @FXML
+    private CheckMenuItem bakeCopiesMenuItem;
+
     @FXML
     private MenuItem showMoreTilesMenuItem;
 
@@ -321,10 +327,18 @@ public class MainWindowController {
         return colorPreviewMenuItem;
     }
 
+    public CheckMenuItem getLongPagesMenuItem() {
+        return longPagesMenuItem;
+    }
+
     public CheckMenuItem getShowChambersMenuItem() {
         return showChambersMenuItem;
     }
 
+    public CheckMenuItem getBakeCopiesMenuItem() {
+        return bakeCopiesMenuItem;
+    }
+
     public MenuItem getShowMoreTilesMenuItem() {
         return showMoreTilesMenuItem;
     }
@@ -25,6 +25,7 @@ import javafx.collections.ObservableList;
 import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import jloda.fx.util.ColorSchemeManager;
+import tegula.tiling.MaterialPalette;
 
 /**
  * class representing styling choices for tiling
@@ -33,6 +34,8 @@ import jloda.fx.util.ColorSchemeManager;
 public class TilingStyle {
     private final Group decorations = new Group();
 
+    private MaterialPalette materialPalette = new MaterialPalette();
+
     private final IntegerProperty bandWidth = new SimpleIntegerProperty(4);
     private final IntegerProperty bandCapFineness = new SimpleIntegerProperty(24);
 
@@ -67,6 +70,11 @@ public class TilingStyle {
     private final BooleanProperty showSymmetryIcons = new SimpleBooleanProperty(false);
     private final BooleanProperty showDecorations = new SimpleBooleanProperty(false);
 
+    private final BooleanProperty bakeCopies = new SimpleBooleanProperty(false);
+
+    private final BooleanProperty adaptiveCopyBudget = new SimpleBooleanProperty(true);
+    private final IntegerProperty targetFrameRate = new SimpleIntegerProperty(30);
+
     private final ObjectProperty<CameraSettings.HyperbolicModel> hyperbolicModel = new SimpleObjectProperty<>(CameraSettings.HyperbolicModel.Poincare);
     public static final int minLimitHyperbolicGroup = 5;
     private final IntegerProperty hyperbolicLimit = new SimpleIntegerProperty(minLimitHyperbolicGroup);
@@ -112,6 +120,10 @@ public class TilingStyle {
         setShowDecorations(src.getShowDecorations());
 
         setSphericalUsePointLight(src.isSphericalUsePointLight());
+
+        setBakeCopies(src.isBakeCopies());
+        setAdaptiveCopyBudget(src.isAdaptiveCopyBudget());
+        setTargetFrameRate(src.getTargetFrameRate());
     }
 
     public void setTileColorsScheme(String colorSchemeName) {
@@ -350,6 +362,42 @@ public class TilingStyle {
         this.showDecorations.set(showDecorations);
     }
 
+    public boolean isBakeCopies() {
+        return bakeCopies.get();
+    }
+
+    public BooleanProperty bakeCopiesProperty() {
+        return bakeCopies;
+    }
+
+    public void setBakeCopies(boolean bakeCopies) {
+        this.bakeCopies.set(bakeCopies);
+    }
+
+    public boolean isAdaptiveCopyBudget() {
+        return adaptiveCopyBudget.get();
+    }
+
+    public BooleanProperty adaptiveCopyBudgetProperty() {
+        return adaptiveCopyBudget;
+    }
+
+    public void setAdaptiveCopyBudget(boolean adaptiveCopyBudget) {
+        this.adaptiveCopyBudget.set(adaptiveCopyBudget);
+    }
+
+    public int getTargetFrameRate() {
+        return targetFrameRate.get();
+    }
+
+    public IntegerProperty targetFrameRateProperty() {
+        return targetFrameRate;
+    }
+
+    public void setTargetFrameRate(int targetFrameRate) {
+        this.targetFrameRate.set(targetFrameRate);
+    }
+
     public Color getBackgroundColor() {
         return backgroundColor.get();
     }
@@ -413,4 +461,15 @@ public class TilingStyle {
     public Group getDecorations() {
         return decorations;
     }
+
+    /**
+     * materials shared by all nodes drawn in this style. Not copied by copy()
+     */
+    public MaterialPalette getMaterialPalette() {
+        return materialPalette;
+    }
+
+    public void setMaterialPalette(MaterialPalette materialPalette) {
+        this.materialPalette = materialPalette;
+    }
 }
@@ -0,0 +1,251 @@
+/*
+ * BakedCopies.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Material;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+import javafx.scene.transform.Transform;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * renders all copies of the fundamental domain using one triangle mesh per material.
+ * The triangles of the prototype are transformed by the transform of each copy and baked into the meshes,
+ * so the number of scene-graph nodes does not depend on the number of copies. The copies themselves only need to carry
+ * their transforms, so the tiling places empty groups rather than clones of the prototype.
+ * Baked meshes carry no ids, so selection and picking require the per-copy nodes.
+ */
+public class BakedCopies {
+    private final Group group = new Group();
+    private final ArrayList<Part> parts = new ArrayList<>();
+    private int numberOfCopies = 0;
+
+    /**
+     * setup the parts from the given prototype
+     *
+     * @return true, if prototype can be baked, false, if it contains nodes other than triangle meshes
+     */
+    public boolean setup(Group prototype) {
+        parts.clear();
+        group.getChildren().clear();
+        numberOfCopies = 0;
+
+        final Map<Object, ArrayList<MeshView>> material2views = new LinkedHashMap<>();
+        if (!collectMeshViews(prototype, material2views)) {
+            parts.clear();
+            return false;
+        }
+
+        for (ArrayList<MeshView> views : material2views.values()) {
+            final Part part = new Part(views);
+            parts.add(part);
+            group.getChildren().add(part.meshView);
+        }
+        return true;
+    }
+
+    /**
+     * can the given prototype be baked?
+     *
+     * @return true, if the prototype only contains triangle meshes
+     */
+    public static boolean canBake(Group prototype) {
+        return collectMeshViews(prototype, new LinkedHashMap<>());
+    }
+
+    /**
+     * update the baked meshes to display the copies contained in the given group. Each copy is placed using the transform of
+     * the group concatenated with its own transform.
+     * If the number of copies has not changed, then the points are rewritten in place and faces are kept
+     */
+    public void update(Group tiles) {
+        final List<Node> copies = tiles.getChildren();
+        final Transform tilesTransform = tiles.getLocalToParentTransform();
+        final double[][] transforms = new double[copies.size()][];
+        for (int c = 0; c < copies.size(); c++) {
+            transforms[c] = toArray(tilesTransform.createConcatenation(copies.get(c).getLocalToParentTransform()));
+        }
+        final boolean facesChanged = (copies.size() != numberOfCopies);
+        numberOfCopies = copies.size();
+
+        for (Part part : parts) {
+            part.update(transforms, facesChanged);
+        }
+    }
+
+    public Group getGroup() {
+        return group;
+    }
+
+    public int getNumberOfCopies() {
+        return numberOfCopies;
+    }
+
+    /**
+     * collects all mesh views, grouped by material
+     *
+     * @return false, if a node is found that cannot be baked
+     */
+    private static boolean collectMeshViews(Parent parent, Map<Object, ArrayList<MeshView>> material2views) {
+        for (Node node : parent.getChildrenUnmodifiable()) {
+            if (node instanceof MeshView) {
+                final MeshView meshView = (MeshView) node;
+                if (!(meshView.getMesh() instanceof TriangleMesh) || ((TriangleMesh) meshView.getMesh()).getVertexFormat() != VertexFormat.POINT_TEXCOORD
+                        || meshView.getDrawMode() != DrawMode.FILL || meshView.getCullFace() != CullFace.BACK || !meshView.getLocalToParentTransform().isIdentity())
+                    return false;
+                material2views.computeIfAbsent(computeMaterialKey(meshView.getMaterial()), k -> new ArrayList<>()).add(meshView);
+            } else if (node instanceof Group) {
+                if (!node.getLocalToParentTransform().isIdentity() || !collectMeshViews((Group) node, material2views))
+                    return false;
+            } else
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * materials that look the same are baked into the same mesh
+     */
+    private static Object computeMaterialKey(Material material) {
+        if (material instanceof PhongMaterial) {
+            final PhongMaterial phong = (PhongMaterial) material;
+            if (phong.getDiffuseMap() == null && phong.getSpecularMap() == null && phong.getBumpMap() == null && phong.getSelfIlluminationMap() == null) {
+                final Color specular = phong.getSpecularColor();
+                return List.of(phong.getDiffuseColor(), specular != null ? specular : Color.TRANSPARENT, phong.getSpecularPower());
+            }
+        }
+        return material;
+    }
+
+    private static double[] toArray(Transform t) {
+        return new double[]{t.getMxx(), t.getMxy(), t.getMxz(), t.getTx(), t.getMyx(), t.getMyy(), t.getMyz(), t.getTy(), t.getMzx(), t.getMzy(), t.getMzz(), t.getTz()};
+    }
+
+    /**
+     * all prototype triangles of one material
+     */
+    private static class Part {
+        private final TriangleMesh mesh = new TriangleMesh();
+        private final MeshView meshView = new MeshView(mesh);
+        private final float[] points;
+        private final int[] faces;
+        private final int[] smoothingGroups;
+        private float[] buffer = new float[0];
+
+        Part(ArrayList<MeshView> views) {
+            meshView.setMaterial(views.get(0).getMaterial());
+
+            int numberOfPoints = 0;
+            int numberOfFaces = 0;
+            int numberOfTexCoords = 0;
+            boolean hasSmoothingGroups = true;
+            for (MeshView view : views) {
+                final TriangleMesh src = (TriangleMesh) view.getMesh();
+                numberOfPoints += src.getPoints().size();
+                numberOfFaces += src.getFaces().size();
+                numberOfTexCoords += src.getTexCoords().size();
+                if (src.getFaceSmoothingGroups().size() != src.getFaces().size() / 6)
+                    hasSmoothingGroups = false;
+            }
+
+            points = new float[numberOfPoints];
+            faces = new int[numberOfFaces];
+            smoothingGroups = (hasSmoothingGroups ? new int[numberOfFaces / 6] : null);
+            final float[] texCoords = new float[numberOfTexCoords];
+
+            int pointsOffset = 0;
+            int facesOffset = 0;
+            int texCoordsOffset = 0;
+            for (MeshView view : views) {
+                final TriangleMesh src = (TriangleMesh) view.getMesh();
+                src.getPoints().copyTo(0, points, pointsOffset, src.getPoints().size());
+                src.getTexCoords().copyTo(0, texCoords, texCoordsOffset, src.getTexCoords().size());
+                for (int i = 0; i < src.getFaces().size(); i += 2) {
+                    faces[facesOffset + i] = src.getFaces().get(i) + pointsOffset / 3;
+                    faces[facesOffset + i + 1] = src.getFaces().get(i + 1) + texCoordsOffset / 2;
+                }
+                if (smoothingGroups != null)
+                    src.getFaceSmoothingGroups().copyTo(0, smoothingGroups, facesOffset / 6, src.getFaceSmoothingGroups().size());
+                pointsOffset += src.getPoints().size();
+                facesOffset += src.getFaces().size();
+                texCoordsOffset += src.getTexCoords().size();
+            }
+            mesh.getTexCoords().setAll(texCoords);
+        }
+
+        /**
+         * transform the prototype points by all copy transforms and write them into the mesh
+         */
+        void update(double[][] transforms, boolean facesChanged) {
+            final int size = transforms.length * points.length;
+            if (buffer.length != size)
+                buffer = new float[size];
+
+            int pos = 0;
+            for (double[] m : transforms) {
+                for (int i = 0; i < points.length; i += 3) {
+                    final double x = points[i];
+                    final double y = points[i + 1];
+                    final double z = points[i + 2];
+                    buffer[pos++] = (float) (m[0] * x + m[1] * y + m[2] * z + m[3]);
+                    buffer[pos++] = (float) (m[4] * x + m[5] * y + m[6] * z + m[7]);
+                    buffer[pos++] = (float) (m[8] * x + m[9] * y + m[10] * z + m[11]);
+                }
+            }
+
+            if (facesChanged || mesh.getPoints().size() != size) {
+                final int numberOfPoints = points.length / 3;
+                final int[] allFaces = new int[transforms.length * faces.length];
+                for (int c = 0; c < transforms.length; c++) {
+                    final int offset = c * faces.length;
+                    final int pointsOffset = c * numberOfPoints;
+                    for (int i = 0; i < faces.length; i += 2) {
+                        allFaces[offset + i] = faces[i] + pointsOffset;
+                        allFaces[offset + i + 1] = faces[i + 1];
+                    }
+                }
+                // clear faces first, so that faces never refer to points that do not exist
+                mesh.getFaces().clear();
+                mesh.getFaceSmoothingGroups().clear();
+                mesh.getPoints().setAll(buffer);
+                mesh.getFaces().setAll(allFaces);
+                if (smoothingGroups != null) {
+                    final int[] allSmoothingGroups = new int[transforms.length * smoothingGroups.length];
+                    for (int c = 0; c < transforms.length; c++)
+                        System.arraycopy(smoothingGroups, 0, allSmoothingGroups, c * smoothingGroups.length, smoothingGroups.length);
+                    mesh.getFaceSmoothingGroups().setAll(allSmoothingGroups);
+                }
+            } else
+                mesh.getPoints().set(0, buffer, 0, size);
+        }
+    }
+}
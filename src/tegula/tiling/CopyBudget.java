@@ -0,0 +1,129 @@
+/*
+ * CopyBudget.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling;
+
+import jloda.util.ProgramProperties;
+import tegula.main.TilingStyle;
+
+/**
+ * adaptive budget for the number of copies of the fundamental domain.
+ * Measures the time needed to generate and to render a copy on this machine and
+ * derives the number of copies and the computation time that fit the target frame rate
+ */
+public class CopyBudget {
+    private static final double Smoothing = 0.2;
+    private static CopyBudget instance;
+
+    private double generationNanosPerCopy = 0; // 0, if not yet measured
+    private double renderNanosPerCopy = 0; // 0, if not yet measured
+    private int budgetHits = 0;
+
+    /**
+     * get the instance, measurements are per machine and thus shared by all windows
+     *
+     * @return instance
+     */
+    public static synchronized CopyBudget getInstance() {
+        if (instance == null)
+            instance = new CopyBudget();
+        return instance;
+    }
+
+    /**
+     * record the time needed to generate the given number of copies
+     */
+    public synchronized void recordGeneration(int copies, long nanos) {
+        if (copies >= 10)
+            generationNanosPerCopy = smooth(generationNanosPerCopy, (double) nanos / copies);
+    }
+
+    /**
+     * record the time of a frame in which the given number of copies were shown.
+     * Frames that are faster than the target are limited by the display refresh, so they only give an upper bound
+     */
+    public synchronized void recordFrame(int copies, long frameNanos, long targetFrameNanos) {
+        if (copies >= 100) {
+            final double sample = (double) frameNanos / copies;
+            if (frameNanos >= targetFrameNanos)
+                renderNanosPerCopy = smooth(renderNanosPerCopy, sample);
+            else if (renderNanosPerCopy == 0 || renderNanosPerCopy > sample)
+                renderNanosPerCopy = sample;
+        }
+    }
+
+    /**
+     * record that a computation was stopped because it exceeded the budget
+     */
+    public synchronized void recordBudgetHit() {
+        budgetHits++;
+    }
+
+    /**
+     * computes the maximum number of copies
+     *
+     * @param fixedMax used if adaptive budget is off or no measurements are available yet
+     * @return max number of copies
+     */
+    public synchronized int computeMaxCopies(TilingStyle tilingStyle, int fixedMax) {
+        if (!tilingStyle.isAdaptiveCopyBudget() || renderNanosPerCopy == 0)
+            return fixedMax;
+        else {
+            final double targetFrameNanos = 1000000000.0 / Math.max(1, tilingStyle.getTargetFrameRate());
+            return (int) Math.max(ProgramProperties.get("MinCopies", 500), Math.min(ProgramProperties.get("MaxCopies", 100000), targetFrameNanos / renderNanosPerCopy));
+        }
+    }
+
+    /**
+     * computes the maximum time that generating the given number of copies should take
+     *
+     * @return time in milliseconds
+     */
+    public synchronized long computeMaxMillis(TilingStyle tilingStyle, int maxCopies) {
+        if (!tilingStyle.isAdaptiveCopyBudget() || generationNanosPerCopy == 0)
+            return 10000;
+        else
+            return Math.max(1000, Math.round(3 * maxCopies * generationNanosPerCopy / 1000000.0));
+    }
+
+    /**
+     * determines whether the given number of copies leaves enough room to show more copies.
+     * Increasing the hyperbolic limit by one roughly doubles the number of copies
+     *
+     * @return true, if twice the number of copies fits into both the copy and the time budget
+     */
+    public synchronized boolean hasHeadroom(TilingStyle tilingStyle, int copies, int maxCopies, long maxMillis) {
+        return tilingStyle.isAdaptiveCopyBudget() && generationNanosPerCopy > 0 && 2 * copies < maxCopies
+                && 2 * copies * generationNanosPerCopy < 1000000.0 * maxMillis / 3;
+    }
+
+    /**
+     * get a short description of the current measurements and budget
+     *
+     * @return info string
+     */
+    public synchronized String getInfo() {
+        return String.format("gen: %.1fµs/copy, render: %.1fµs/copy%s", generationNanosPerCopy / 1000,
+                renderNanosPerCopy / 1000, (budgetHits > 0 ? String.format(", hits: %,d", budgetHits) : ""));
+    }
+
+    private static double smooth(double value, double sample) {
+        return value == 0 ? sample : (1 - Smoothing) * value + Smoothing * sample;
+    }
+}
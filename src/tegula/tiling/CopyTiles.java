@@ -23,12 +23,15 @@ import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.image.ImageView;
 import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
 import javafx.scene.shape.Cylinder;
+import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.Polyline;
 import javafx.scene.shape.Sphere;
 import javafx.scene.text.Text;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -48,95 +51,145 @@ public class CopyTiles {
         final Group result = new Group();
 
         for (Node node : group.getChildren()) {
+            final Node copy = copyNode(node, true);
+            if (copy != null)
+                result.getChildren().add(copy);
+        }
+        copyProperties(group, result);
+        return result;
+    }
+
+    /**
+     * creates a lightweight instance of a prototype. Mesh views share meshes and materials with the prototype and differ
+     * only by transform, no event handlers are copied. Mouse clicks are to be handled by one handler on the containing group
+     *
+     * @return instance
+     */
+    public static Group instantiate(Group prototype) {
+        final Node[] nodes = new Node[prototype.getChildren().size()];
+        int count = 0;
+        for (Node node : prototype.getChildren()) {
             if (node instanceof MeshView) {
                 final MeshView src = (MeshView) node;
-                final PhongMaterial material = (PhongMaterial) src.getMaterial();
-                MeshView target = new MeshView(((MeshView) node).getMesh());
-                target.setMaterial(material);
+                final MeshView target = new MeshView(src.getMesh());
+                target.setMaterial(src.getMaterial());
                 target.setId(src.getId());
-                target.setUserData(src.getUserData());
-                target.setDrawMode(src.getDrawMode());
-                result.getChildren().add(target);
+                if (src.getDrawMode() != DrawMode.FILL)
+                    target.setDrawMode(src.getDrawMode());
+                if (src.getCullFace() != CullFace.BACK)
+                    target.setCullFace(src.getCullFace());
+                nodes[count++] = target;
+            } else {
+                final Node copy = copyNode(node, false);
+                if (copy != null)
+                    nodes[count++] = copy;
+            }
+        }
+        final Group result = new Group();
+        result.getChildren().setAll(count == nodes.length ? nodes : Arrays.copyOf(nodes, count));
+        copyProperties(prototype, result);
+        return result;
+    }
 
-                if (node.getOnMouseClicked() != null)
-                    target.setOnMouseClicked(node.getOnMouseClicked());
-            } else if (node instanceof ImageView) {
-                final ImageView src = (ImageView) node;
-                final ImageView target = new ImageView(((ImageView) node).getImage());
-                target.setFitWidth(src.getFitWidth());
-                target.setFitHeight(src.getFitHeight());
-                target.setId(src.getId());
-                target.setUserData(src.getUserData());
-                result.getChildren().add(target);
-                target.setTranslateX(src.getTranslateX());
-                target.setTranslateY(src.getTranslateY());
-                target.setTranslateZ(src.getTranslateZ());
-                target.setRotationAxis(src.getRotationAxis());
-                target.setRotate(src.getRotate());
+    /**
+     * copy a single node
+     *
+     * @return copy or null, if not implemented for this type of node
+     */
+    private static Node copyNode(Node node, boolean copyHandlers) {
+        Node copy = null;
+        if (node instanceof MeshView) {
+            final MeshView src = (MeshView) node;
+            final PhongMaterial material = (PhongMaterial) src.getMaterial();
+            MeshView target = new MeshView(((MeshView) node).getMesh());
+            target.setMaterial(material);
+            target.setId(src.getId());
+            target.setUserData(src.getUserData());
+            target.setDrawMode(src.getDrawMode());
+            copy = target;
 
-                if (node.getOnMouseClicked() != null)
-                    target.setOnMouseClicked(node.getOnMouseClicked());
-            } else if (node instanceof Polyline) {
-                final Polyline src = (Polyline) node;
-                final Polyline target = new Polyline();
-                target.getPoints().addAll(src.getPoints());
-                target.setFill(src.getFill());
-                target.setStroke(src.getStroke());
-                target.setStrokeLineCap(src.getStrokeLineCap());
-                target.setId(src.getId());
-                target.setUserData(src.getUserData());
-                result.getChildren().add(target);
+            if (copyHandlers && node.getOnMouseClicked() != null)
+                target.setOnMouseClicked(node.getOnMouseClicked());
+        } else if (node instanceof ImageView) {
+            final ImageView src = (ImageView) node;
+            final ImageView target = new ImageView(((ImageView) node).getImage());
+            target.setFitWidth(src.getFitWidth());
+            target.setFitHeight(src.getFitHeight());
+            target.setId(src.getId());
+            target.setUserData(src.getUserData());
+            copy = target;
+            target.setTranslateX(src.getTranslateX());
+            target.setTranslateY(src.getTranslateY());
+            target.setTranslateZ(src.getTranslateZ());
+            target.setRotationAxis(src.getRotationAxis());
+            target.setRotate(src.getRotate());
 
-                if (node.getOnMouseClicked() != null)
-                    target.setOnMouseClicked(node.getOnMouseClicked());
-            } else if (node instanceof Sphere) {
-                final Sphere src = (Sphere) node;
-                final Sphere target = new Sphere(src.getRadius());
-                target.setMaterial(src.getMaterial());
-                target.getTransforms().addAll(src.getTransforms());
-                target.setId(src.getId());
-                target.setUserData(src.getUserData());
-                result.getChildren().add(target);
+            if (copyHandlers && node.getOnMouseClicked() != null)
+                target.setOnMouseClicked(node.getOnMouseClicked());
+        } else if (node instanceof Polyline) {
+            final Polyline src = (Polyline) node;
+            final Polyline target = new Polyline();
+            target.getPoints().addAll(src.getPoints());
+            target.setFill(src.getFill());
+            target.setStroke(src.getStroke());
+            target.setStrokeLineCap(src.getStrokeLineCap());
+            target.setId(src.getId());
+            target.setUserData(src.getUserData());
+            copy = target;
 
-                if (node.getOnMouseClicked() != null)
-                    target.setOnMouseClicked(node.getOnMouseClicked());
-            } else if (node instanceof Cylinder) {
-                final Cylinder src = (Cylinder) node;
-                final Cylinder target = new Cylinder(src.getRadius(), src.getHeight(), src.getDivisions());
-                target.setCullFace(src.getCullFace());
-                target.setDrawMode(src.getDrawMode());
-                target.setMaterial(src.getMaterial());
-                target.getTransforms().addAll(src.getTransforms());
-                target.setId(src.getId());
-                target.setUserData(src.getUserData());
-                result.getChildren().add(target);
+            if (copyHandlers && node.getOnMouseClicked() != null)
+                target.setOnMouseClicked(node.getOnMouseClicked());
+        } else if (node instanceof Sphere) {
+            final Sphere src = (Sphere) node;
+            final Sphere target = new Sphere(src.getRadius());
+            target.setMaterial(src.getMaterial());
+            target.getTransforms().addAll(src.getTransforms());
+            target.setId(src.getId());
+            target.setUserData(src.getUserData());
+            copy = target;
 
-                if (node.getOnMouseClicked() != null)
-                    target.setOnMouseClicked(node.getOnMouseClicked());
-            } else if (node instanceof Text) {
-                final Text src = (Text) node;
-                final Text target = new Text(src.getText());
-                target.setFont(src.getFont());
-                target.setFill(src.getFill());
-                target.getTransforms().addAll(src.getTransforms());
-                target.setId(src.getId());
-                target.setUserData(src.getUserData());
-                result.getChildren().add(target);
-            } else if (node instanceof Group) {
-                final Group src = (Group) node;
-                final Group target = apply(src);
-                target.getTransforms().addAll(src.getTransforms());
-                target.setId(src.getId());
-                target.setUserData(src.getUserData());
-                result.getChildren().add(target);
+            if (copyHandlers && node.getOnMouseClicked() != null)
+                target.setOnMouseClicked(node.getOnMouseClicked());
+        } else if (node instanceof Cylinder) {
+            final Cylinder src = (Cylinder) node;
+            final Cylinder target = new Cylinder(src.getRadius(), src.getHeight(), src.getDivisions());
+            target.setCullFace(src.getCullFace());
+            target.setDrawMode(src.getDrawMode());
+            target.setMaterial(src.getMaterial());
+            target.getTransforms().addAll(src.getTransforms());
+            target.setId(src.getId());
+            target.setUserData(src.getUserData());
+            copy = target;
 
-                if (node.getOnMouseClicked() != null)
-                    target.setOnMouseClicked(node.getOnMouseClicked());
-            } else if (!warned.contains(node.getClass())) {
-                System.err.println("Warning: copyGroup(): not implemented for class: " + node.getClass());
-                warned.add(node.getClass());
-            }
+            if (copyHandlers && node.getOnMouseClicked() != null)
+                target.setOnMouseClicked(node.getOnMouseClicked());
+        } else if (node instanceof Text) {
+            final Text src = (Text) node;
+            final Text target = new Text(src.getText());
+            target.setFont(src.getFont());
+            target.setFill(src.getFill());
+            target.getTransforms().addAll(src.getTransforms());
+            target.setId(src.getId());
+            target.setUserData(src.getUserData());
+            copy = target;
+        } else if (node instanceof Group) {
+            final Group src = (Group) node;
+            final Group target = (copyHandlers ? apply(src) : instantiate(src));
+            target.getTransforms().addAll(src.getTransforms());
+            target.setId(src.getId());
+            target.setUserData(src.getUserData());
+            copy = target;
+
+            if (copyHandlers && node.getOnMouseClicked() != null)
+                target.setOnMouseClicked(node.getOnMouseClicked());
+        } else if (!warned.contains(node.getClass())) {
+            System.err.println("Warning: copyGroup(): not implemented for class: " + node.getClass());
+            warned.add(node.getClass());
         }
+        return copy;
+    }
+
+    private static void copyProperties(Group group, Group result) {
         result.setId(group.getId());
         result.setUserData(group.getUserData());
         result.setRotationAxis(group.getRotationAxis());
@@ -144,7 +197,5 @@ public class CopyTiles {
         result.setTranslateX(group.getTranslateX());
         result.setTranslateY(group.getTranslateY());
         result.setTranslateZ(group.getTranslateZ());
-
-        return result;
     }
 }
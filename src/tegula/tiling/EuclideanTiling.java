@@ -100,11 +100,14 @@ public class EuclideanTiling extends TilingBase implements TilingCreator {
             //Prototype of fDomain (for copies)
             fundPrototype.getChildren().clear();
             fundPrototype.getChildren().setAll(FundamentalDomain.compute(ds, getfDomain(), tilingStyle));
+            setupBakedCopies();
             all.getChildren().add(provideCopy(new Translate(), fundPrototype)); // Add identity to Prototype
         }
 
         if (!isDrawFundamentalDomainOnly()) {
-            final int maxCopies = ProgramProperties.get("MaxCopiesEuclidean", 5000);
+            final int maxCopies = CopyBudget.getInstance().computeMaxCopies(tilingStyle, ProgramProperties.get("MaxCopiesEuclidean", 5000));
+            setMaxCopies(maxCopies);
+            final long maxMillis = CopyBudget.getInstance().computeMaxMillis(tilingStyle, maxCopies);
             final QuadTree seen = new QuadTree(); // Saves reference points of tiles
 
             Point3D pt = transformRecycled.transform(referencePoint);
@@ -123,22 +126,21 @@ public class EuclideanTiling extends TilingBase implements TilingCreator {
             }
 
             final long start = System.currentTimeMillis();
+            final long startNanos = System.nanoTime();
 
-            while (queue.size() > 0) {
+            while (queue.size() > 0 && !isCanceled()) {
                 // Breaks while loop if too many copies (rounding errors)
                 if (!reset && queue.size() >= 1.5 * getNumberOfCopies()) {
                     return FAILED;
                 }
-                if (getNumberOfCopies() + all.getChildren().size() > maxCopies) {
-                    if (System.currentTimeMillis() - previousWarning > 10000) {
-                        NotificationManager.showWarning("Exceeded max copies: " + maxCopies);
-                        previousWarning = System.currentTimeMillis();
-                    }
-                    break;
-                }
-                if (System.currentTimeMillis() - start > 10000) {
-                    if (System.currentTimeMillis() - previousWarning > 10000) {
-                        NotificationManager.showWarning("Exceeded max computation time (10sec)");
+                if (getNumberOfCopies() + all.getChildren().size() > maxCopies || System.currentTimeMillis() - start > maxMillis) {
+                    if (tilingStyle.isAdaptiveCopyBudget()) // degrade gracefully: the window is only partially covered
+                        CopyBudget.getInstance().recordBudgetHit();
+                    else if (System.currentTimeMillis() - previousWarning > 10000) {
+                        if (getNumberOfCopies() + all.getChildren().size() > maxCopies)
+                            NotificationManager.showWarning("Exceeded max copies: " + maxCopies);
+                        else
+                            NotificationManager.showWarning("Exceeded max computation time (" + maxMillis / 1000 + "sec)");
                         previousWarning = System.currentTimeMillis();
                     }
                     break;
@@ -174,6 +176,7 @@ public class EuclideanTiling extends TilingBase implements TilingCreator {
                     }
                 }
             }
+            CopyBudget.getInstance().recordGeneration(all.getChildren().size(), System.nanoTime() - startNanos);
         }
         return all;
     }
@@ -320,7 +323,7 @@ public class EuclideanTiling extends TilingBase implements TilingCreator {
      * @return copy
      */
     private Node provideCopy(Transform transform, Group fund) {
-        final Node copy = (recycler.size() > 0 ? recycler().pop() : CopyTiles.apply(fund));
+        final Node copy = (recycler.size() > 0 ? recycler().pop() : instantiateCopy(fund));
         copy.getTransforms().setAll(transformRecycled.createConcatenation(transform));
         return copy;
     }
@@ -19,36 +19,43 @@
 
 package tegula.tiling;
 
+import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.Material;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.Sphere;
-import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.shape.TriangleMesh;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.scene.transform.Translate;
+import jloda.util.ProgramProperties;
 import tegula.core.dsymbols.DSymbol;
 import tegula.core.dsymbols.FDomain;
 import tegula.core.dsymbols.Geometry;
-import tegula.core.funtiles.utils.WrapInt;
 import tegula.geometry.Tools;
 import tegula.main.TilingStyle;
 import tegula.tiling.parts.*;
 
-import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Fundamental domain for tiling
  * Daniel Huson and Ruediger Zeller, 2016
  */
 public class FundamentalDomain {
+    private static final Map<List<Object>, Object> meshCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+            return size() > ProgramProperties.get("PrototypeMeshCacheSize", 32);
+        }
+    });
+
     /**
      * Computes a fundamental domain
      *
@@ -63,34 +70,18 @@ public class FundamentalDomain {
         final int[] a2edge = dsymbol.computeOrbits(0, 2);
         final int[] a2vertex = dsymbol.computeOrbits(1, 2);
 
-        // set colors
-        final Material[] tile2material = new Material[a2tile.length + 1];
-        {
-            for (int t = 1; t < tile2material.length; t++)
-                tile2material[t] = new PhongMaterial(tilingStyle.getTileColor(t));
-        }
+        // colors are taken from the shared palette, so that recoloring doesn't require visiting any nodes
+        final MaterialPalette palette = tilingStyle.getMaterialPalette();
 
         final double bandWidth = (geom == Geometry.Euclidean ? 0.2 : 0.2) * tilingStyle.getBandWidth();
 
-        final Material[] edge2material = new Material[a2edge.length + 1];
         final double[] edgeWidth = new double[a2edge.length + 1];
         // todo: support different colors for different edges
-        {
-            for (int e = 1; e < edge2material.length; e++) {
-                edge2material[e] = new PhongMaterial(tilingStyle.getBandColor());
-                edgeWidth[e] = bandWidth;
-            }
-        }
+        Arrays.fill(edgeWidth, bandWidth);
 
-        final Material[] vertex2material = new Material[a2vertex.length + 1];
         final double[] vertexDiameter = new double[a2vertex.length + 1];
         // todo: support different colors for different vertices
-        {
-            for (int v = 1; v < vertex2material.length; v++) {
-                vertex2material[v] = new PhongMaterial(tilingStyle.getBandColor());
-                vertexDiameter[v] = bandWidth;
-            }
-        }
+        Arrays.fill(vertexDiameter, bandWidth);
 
         // For bands and the band caps (i.e. circles at the ends of bands)
 
@@ -109,200 +100,125 @@ public class FundamentalDomain {
         final Point3D[] a2VertexPoints3D = new Point3D[dsymbol.size() + 1];
         final int[][] a2ChamberFaces = new int[dsymbol.size() + 1][];
 
-        // compute all coordinates for each chamber:
-        for (int a = 1; a <= dsymbol.size(); a++) {
-            final Point3D[] chamberPoints; // points that create the triangles
-            final Point3D[] edgePoints3D;
-            final int[] chamberFaces;
-
-            // end of geometric cases
-            switch (geom) {
-                // Iterative Triangle mesh generator
-                // clockwise orientation
-                // sets points for band caps
-                // scales the points on sphere to reduce rendering problems
-                case Spherical: {
-                    final int depth = tilingStyle.isSmoothEdges() ? 4 : 0; // 4^5 = 1024
-                    chamberFaces = new int[(int) Math.pow(4, (depth + 1)) * 6];
-                    chamberPoints = new Point3D[depth == 0 ? 6 : 1026]; // 3, 6, 66, 258, 1026 // size of points array dependent on depth
-                    final WrapInt p = new WrapInt(0);
-                    final WrapInt f = new WrapInt(0);
-                    chamberPoints[p.incrementInt()] = fDomain.getVertex3D(0, a);
-                    chamberPoints[p.incrementInt()] = fDomain.getVertex3D(1, a);
-                    chamberPoints[p.incrementInt()] = fDomain.getVertex3D(2, a);
-                    chamberPoints[p.incrementInt()] = fDomain.getEdgeCenter3D(0, a);
-                    chamberPoints[p.incrementInt()] = fDomain.getEdgeCenter3D(1, a);
-                    chamberPoints[p.incrementInt()] = fDomain.getEdgeCenter3D(2, a);
-                    class Triangle {
-
-                        private Triangle(boolean orientationUp, int pointA, int pointB, int pointC, int depth) {
-                            int depth1 = depth;
-
-                            if (depth1 > 0) {
-                                int midAB = p.incrementInt();
-                                chamberPoints[midAB] = Tools.sphericalMidpoint(chamberPoints[pointA], chamberPoints[pointB]); // Tools.midpoint3D(geom,
-                                int midAC = p.incrementInt();
-                                chamberPoints[midAC] = Tools.sphericalMidpoint(chamberPoints[pointA], chamberPoints[pointC]); // Tools.midpoint3D(geom,
-                                int midBC = p.incrementInt();
-                                chamberPoints[midBC] = Tools.sphericalMidpoint(chamberPoints[pointB], chamberPoints[pointC]);// Tools.midpoint3D(geom,
-
-                                new Triangle(orientationUp, pointA, midAB, midAC, --depth1);
-                                new Triangle(orientationUp, midAB, pointB, midBC, depth1);
-                                new Triangle(orientationUp, midAC, midBC, pointC, depth1);
-
-                                if (orientationUp) {
-                                    new Triangle(false, midAB, midBC, midAC, depth1);
-                                } else {
-                                    new Triangle(true, midAC, midAB, midBC, depth1);
-                                }
-                            } else {
-                                int facPos = 6 * f.incrementInt();
-                                chamberFaces[facPos] = pointA;
-                                chamberFaces[facPos + 1] = 0;
-                                chamberFaces[facPos + 2] = pointB;
-                                chamberFaces[facPos + 3] = 1;
-                                chamberFaces[facPos + 4] = pointC;
-                                chamberFaces[facPos + 5] = 2;
-                            }
+        // compute all coordinates for each chamber. Chambers are independent, so this is done in parallel:
+        final boolean smoothEdges = tilingStyle.isSmoothEdges();
+        // maximal deviation of a spherical triangle from the sphere of radius 100, determines how finely chambers are subdivided:
+        final double sphericalTolerance = ProgramProperties.get("SphericalSubdivisionTolerance", 0.02);
+        final boolean parallel = ProgramProperties.get("ParallelFundamentalDomain", true) && (geom == Geometry.Spherical && smoothEdges || dsymbol.size() >= 8);
+
+        // meshes are cached by the coordinates of the fundamental domain and the style fields that they depend on:
+        final Fingerprint fingerprint = new Fingerprint(dsymbol, fDomain);
+        // in the Euclidean and hyperbolic case, tiles can be triangulated as polygons rather than by chambers:
+        final boolean tilePolygons = (geom != Geometry.Spherical && ProgramProperties.get("TilePolygonMeshes", true));
+        final double hyperbolicTolerance = ProgramProperties.get("HyperbolicSubdivisionTolerance", 2.0);
+        final List<Object> facesKey = List.of("faces", fingerprint, smoothEdges, sphericalTolerance, tilePolygons, hyperbolicTolerance);
+        final List<Object> edgesKey = List.of("edges", fingerprint, smoothEdges, sphericalTolerance, bandWidth, bandCapFineness);
+        final List<Object> verticesKey = List.of("vertices", fingerprint, bandWidth, bandCapFineness);
+
+        final boolean needFaces = (tilingStyle.isShowFaces() || tilingStyle.isShowBackFaces());
+        final boolean needEdges = (tilingStyle.isShowEdges() || tilingStyle.isShowBackEdges());
+        final boolean needVertices = (tilingStyle.isShowVertices() || tilingStyle.isShowBackVertices());
+
+        TriangleMesh[] a2TileMesh = (needFaces ? (TriangleMesh[]) meshCache.get(facesKey) : null);
+        TriangleMesh[] a2EdgeMesh = (needEdges ? (TriangleMesh[]) meshCache.get(edgesKey) : null);
+        TriangleMesh[] a2VertexMesh = (needVertices ? (TriangleMesh[]) meshCache.get(verticesKey) : null);
+
+        if (needFaces && a2TileMesh == null || needEdges && a2EdgeMesh == null || needVertices && a2VertexMesh == null)
+            forAll(parallel, IntStream.rangeClosed(1, dsymbol.size()).toArray(), a -> computeChamber(a, geom, fDomain, smoothEdges, sphericalTolerance, a2ChamberCoordinates, a2edgePoints, a2VertexPoints3D, a2ChamberFaces));
+
+        // compute mesh data for all tiles, edges and vertices, in parallel:
+        final int[] tileOrbits = toArray(dsymbol.orbits(0, 1));
+        final int[] edgeOrbits = toArray(dsymbol.orbits(0, 2));
+        final int[] vertexOrbits = toArray(dsymbol.orbits(1, 2));
+
+        if (needFaces && a2TileMesh == null) { // construct triangles. All triangles belonging to flags of the same 0,1-orbit are put into a single mesh
+            final TriangleMesh[] a2Mesh = new TriangleMesh[dsymbol.size() + 1];
+            forAll(parallel, tileOrbits, a0 -> {
+                TriangleMesh mesh = (tilePolygons ? computeTilePolygonMesh(dsymbol, fDomain, a0, orientation, a2edgePoints, hyperbolicTolerance) : null);
+
+                if (mesh == null) { // tile is not a closed polygon in the fundamental domain, use the triangles of its chambers
+                    final ArrayList<TriangleMesh> meshes = new ArrayList<>();
+
+                    for (int a : dsymbol.orbitMembers(0, 1, a0)) {
+                        final float[] chamberCoordinates = a2ChamberCoordinates[a]; // points that support triangles
+                        final int[] chamberFaces = a2ChamberFaces[a];
+
+                        if (fDomain.getOrientation(a) != orientation) {
+                            invertOrientationOfFaces(chamberFaces);
                         }
-                    }
-                    new Triangle(true, 0, 4, 5, depth);
-                    new Triangle(true, 5, 3, 1, depth);
-                    new Triangle(true, 4, 2, 3, depth);
-                    new Triangle(false, 4, 3, 5, depth);
-                    if (tilingStyle.isSmoothEdges()) {
-                        int[] pointsOf2EdgeSorted = {0, 16, 13, 22, 10, 46, 43, 52, 7, 142, 139,
-                                148, 136, 172, 169, 178, 5,
-                                271, 268, 277, 265, 301, 298, 307, 262, 397, 394, 403, 391, 427, 424, 433, 1};
-
-                        edgePoints3D = new Point3D[pointsOf2EdgeSorted.length];
-
-                        for (int i = 0; i < pointsOf2EdgeSorted.length; i++) {
-                            edgePoints3D[i] = chamberPoints[pointsOf2EdgeSorted[i]];
+
+                        {
+                            final TriangleMesh chamberMesh = new TriangleMesh();
+                            chamberMesh.getPoints().setAll(chamberCoordinates);
+                            chamberMesh.getFaces().setAll(chamberFaces);
+                            meshes.add(chamberMesh);
                         }
-                    } else {
-                        edgePoints3D = new Point3D[]{chamberPoints[0], chamberPoints[5], chamberPoints[5], chamberPoints[1]};
-                    }
-                    a2VertexPoints3D[a] = chamberPoints[0];
-                    for (int i = 0; i < chamberPoints.length; i++) {
-                        chamberPoints[i] = chamberPoints[i].multiply(0.995);
                     }
-                    break;
+                    mesh = MeshUtils.combineTriangleMeshes(meshes.toArray(new TriangleMesh[0]));
                 }
-                case Euclidean: {
-                    chamberPoints = new Point3D[7];
-                    chamberPoints[0] = fDomain.getVertex3D(0, a);
-                    chamberPoints[1] = fDomain.getVertex3D(1, a);
-                    chamberPoints[2] = fDomain.getVertex3D(2, a);
-                    chamberPoints[3] = fDomain.getEdgeCenter3D(0, a);
-                    chamberPoints[4] = fDomain.getEdgeCenter3D(1, a);
-                    chamberPoints[5] = fDomain.getEdgeCenter3D(2, a);
-                    chamberPoints[6] = fDomain.getChamberCenter3D(a);
-                    chamberFaces = new int[]{0, 0, 6, 1, 5, 2, // v0 cc e2
-                            1, 0, 5, 1, 6, 2, // v1 e2 cc
-                            1, 0, 6, 1, 3, 2, // v1 cc e0
-                            2, 0, 3, 0, 6, 2, // v2 e0 cc
-                            2, 0, 6, 1, 4, 2, // v2 cc e1
-                            0, 0, 4, 1, 6, 2 // v0 e1 cc
-                    };
-                    edgePoints3D = new Point3D[3];
-                    edgePoints3D[0] = chamberPoints[0];
-                    edgePoints3D[1] = chamberPoints[5];
-                    edgePoints3D[2] = chamberPoints[1];
-                    a2VertexPoints3D[a] = chamberPoints[0];
-                    break;
+                mesh.getTexCoords().setAll(0.5f, 0, 0, 0, 1, 1);
+                {
+                    final int[] smoothingGroups = new int[mesh.getFaces().size() / 6];
+                    for (int i = 0; i < smoothingGroups.length; i++)
+                        smoothingGroups[i] = i;
+                    mesh.getFaceSmoothingGroups().setAll(smoothingGroups);
                 }
-// scales points to reduce rendering problems
-                case Hyperbolic: {
-                    chamberPoints = new Point3D[13];
-                    chamberPoints[0] = fDomain.getVertex3D(0, a);
-                    chamberPoints[1] = fDomain.getVertex3D(1, a);
-                    chamberPoints[2] = fDomain.getVertex3D(2, a);
-                    chamberPoints[3] = fDomain.getEdgeCenter3D(0, a);
-                    chamberPoints[4] = fDomain.getEdgeCenter3D(1, a);
-                    chamberPoints[5] = fDomain.getEdgeCenter3D(2, a);
-                    chamberPoints[6] = fDomain.getChamberCenter3D(a);
-                    chamberPoints[7] = Tools.midpoint3D(geom, chamberPoints[0], chamberPoints[5]);
-                    chamberPoints[8] = Tools.midpoint3D(geom, chamberPoints[5], chamberPoints[1]);
-                    chamberPoints[9] = Tools.midpoint3D(geom, chamberPoints[0], chamberPoints[7]);
-                    chamberPoints[10] = Tools.midpoint3D(geom, chamberPoints[7], chamberPoints[5]);
-                    chamberPoints[11] = Tools.midpoint3D(geom, chamberPoints[5], chamberPoints[8]);
-                    chamberPoints[12] = Tools.midpoint3D(geom, chamberPoints[8], chamberPoints[1]);
-                    chamberFaces = new int[]{0, 0, 6, 1, 9, 2, //
-                            9, 0, 6, 1, 7, 2, //
-                            7, 0, 6, 1, 10, 2, //
-                            10, 0, 6, 1, 5, 2, //
-                            5, 0, 6, 1, 11, 2, //
-                            11, 0, 6, 1, 8, 2, //
-                            8, 0, 6, 1, 12, 2, //
-                            12, 0, 6, 1, 1, 2, //
-                            0, 0, 4, 1, 6, 2, //
-                            4, 0, 2, 1, 6, 2, //
-                            2, 0, 3, 1, 6, 2, //
-                            6, 0, 3, 1, 1, 2 //
-                    };
-                    a2VertexPoints3D[a] = chamberPoints[0];
-
-                    int[] pointsOf2EdgeSorted = {0, 9, 7, 10, 5, 11, 8, 12, 1};
-                    edgePoints3D = new Point3D[9];
-                    for (int i = 0; i < 9; i++) {
-                        edgePoints3D[i] = chamberPoints[pointsOf2EdgeSorted[i]];
-                    }
-                    for (int i = 0; i < chamberPoints.length; i++) {
-                        chamberPoints[i] = chamberPoints[i].multiply(1.0125);
+                a2Mesh[a0] = mesh;
+            });
+            a2TileMesh = a2Mesh;
+            meshCache.put(facesKey, a2TileMesh);
+        }
+
+        if (needEdges && a2EdgeMesh == null) { // all bands and caps are written into one buffer, one group per 0,2-orbit
+            final TriangleMesh[] a2Mesh = new TriangleMesh[dsymbol.size() + 1];
+            final double bandsAbove = (geom == Geometry.Euclidean ? -1 : geom == Geometry.Hyperbolic ? 0.1 : 0);
+            final BandBuilder bandBuilder = new BandBuilder(geom, bandsAbove, bandCapFineness);
+
+            for (int a0 : edgeOrbits) {
+                bandBuilder.startGroup();
+                for (int a : dsymbol.orbitMembers(0, 2, a0)) {
+                    if (dsymbol.getS2(a) > a || fDomain.isBoundaryEdge(2, a)) {
+                        bandBuilder.addPolyline(toCoordinates(a2edgePoints[a], fDomain.getOrientation(a) != orientation), edgeWidth[a2edge[a]]);
                     }
-                    break;
                 }
-                default:
-                    throw new RuntimeException("Invalid case");
             }
-
-            final float[] chamberCoordinates = new float[3 * chamberPoints.length];
-
-            for (int i = 0; i < chamberPoints.length; i++) {
-                chamberCoordinates[3 * i] = (float) chamberPoints[i].getX();
-                chamberCoordinates[3 * i + 1] = (float) chamberPoints[i].getY();
-                chamberCoordinates[3 * i + 2] = (float) chamberPoints[i].getZ();
+            bandBuilder.build();
+            for (int i = 0; i < edgeOrbits.length; i++) {
+                a2Mesh[edgeOrbits[i]] = bandBuilder.getMesh(i);
             }
-
-            a2ChamberCoordinates[a] = chamberCoordinates;
-            a2edgePoints[a] = edgePoints3D;
-            a2ChamberFaces[a] = chamberFaces;
+            a2EdgeMesh = a2Mesh;
+            meshCache.put(edgesKey, a2EdgeMesh);
         }
 
-        if (tilingStyle.isShowFaces() || tilingStyle.isShowBackFaces()) { // construct triangles. All triangles belonging to flags of the same 0,1-orbit are put into a single mesh
-            for (int a0 : dsymbol.orbits(0, 1)) {
-                final PhongMaterial material = (PhongMaterial) tile2material[a2tile[a0]];
-                final ArrayList<TriangleMesh> meshes = new ArrayList<>();
+        if (needVertices && a2VertexMesh == null) {
+            final TriangleMesh[] a2Mesh = new TriangleMesh[dsymbol.size() + 1];
+            final double linesAbove = (geom == Geometry.Euclidean ? -1 : 0);
 
-                for (int a : dsymbol.orbitMembers(0, 1, a0)) {
-                    final float[] chamberCoordinates = a2ChamberCoordinates[a]; // points that support triangles
-                    final int[] chamberFaces = a2ChamberFaces[a];
+            forAll(parallel, vertexOrbits, a -> {
+                final Point3D center = a2VertexPoints3D[a];
+                // todo: need better tangent computation
+                final Point3D tangent = geom == Geometry.Euclidean ? new Point3D(1, 0, 0) : center.crossProduct(new Point3D(1, 0, 0));
 
-                    if (fDomain.getOrientation(a) != orientation) {
-                        invertOrientationOfFaces(chamberFaces);
-                    }
+                final Point3D[] coordinates = BandCap3D.circle(center, tangent, bandWidth, bandCapFineness, geom);
+                final TriangleMesh mesh = BandCap3D.CircleMesh(center, coordinates, geom, linesAbove, false);
+                MeshUtils.setDefaultTexCoordinates(mesh);
+                a2Mesh[a] = mesh;
+            });
+            a2VertexMesh = a2Mesh;
+            meshCache.put(verticesKey, a2VertexMesh);
+        }
 
-                    {
-                        final TriangleMesh mesh = new TriangleMesh();
-                        mesh.getPoints().addAll(chamberCoordinates);
-                        mesh.getFaces().addAll(chamberFaces);
-                        meshes.add(mesh);
-                    }
-                }
-                final TriangleMesh mesh = MeshUtils.combineTriangleMeshes(meshes.toArray(new TriangleMesh[0]));
-                mesh.getTexCoords().setAll(0.5f, 0, 0, 0, 1, 1);
-                {
-                    for (int i = 0; i < mesh.getFaces().size() / 6; i++)
-                        mesh.getFaceSmoothingGroups().addAll(i);
-                }
+        // assemble nodes:
+        if (needFaces) {
+            for (int a0 : tileOrbits) {
+                final PhongMaterial material = palette.getTileMaterial(tilingStyle, a2tile[a0]);
+                final TriangleMesh mesh = a2TileMesh[a0];
 
                 if (tilingStyle.isShowFaces()) {
                     final MeshView meshView = new MeshView(mesh);
                     // material.setSpecularColor(Color.YELLOW);
                     meshView.setId("t=" + a2tile[a0]);
                     meshView.setMaterial(material);
-                    meshes.add(mesh);
                     facesGroup.getChildren().add(meshView);
                 }
                 if (tilingStyle.isShowBackFaces()) {
@@ -310,86 +226,46 @@ public class FundamentalDomain {
                     // material.setSpecularColor(Color.YELLOW);
                     meshView.setId("t=" + a2tile[a0]);
                     meshView.setMaterial(material);
-                    meshes.add(mesh);
                     facesGroup.getChildren().add(meshView);
                 }
             }
         }
-        if (tilingStyle.isShowEdges() || tilingStyle.isShowBackEdges()) {
-            final double linesAbove = (geom == Geometry.Euclidean ? -1 : 0);
-
-            for (int a0 : dsymbol.orbits(0, 2)) {
-                final ArrayList<TriangleMesh> meshes = new ArrayList<>();
-
-                for (int a : dsymbol.orbitMembers(0, 2, a0)) {
-                    final Point3D[] edgePoints = a2edgePoints[a];
-
-                    if (false && geom == Geometry.Euclidean) {
-                        if (fDomain.getOrientation(a) != orientation) {
-                            reverseOrderOfPoints(edgePoints);
-                        }
-                        meshes.add(HalfBand3D.createEuclidean(edgePoints, edgeWidth[a2edge[a]], StrokeLineCap.ROUND, null)); // todo: this is broken!
+        if (needEdges) {
+            for (int a0 : edgeOrbits) {
+                final TriangleMesh mesh = a2EdgeMesh[a0];
 
-                    } else if (dsymbol.getS2(a) > a || fDomain.isBoundaryEdge(2, a)) {
-                        if (fDomain.getOrientation(a) != orientation) {
-                            reverseOrderOfPoints(edgePoints);
-                        }
-                        meshes.add(Band3D.connect(geom, edgePoints, edgeWidth[a2edge[a]], linesAbove, tilingStyle.getBandCapFineness() > 0 ? StrokeLineCap.ROUND : StrokeLineCap.BUTT));
-                    }
-                }
                 if (tilingStyle.isShowEdges()) {
-                    final ArrayList<TriangleMesh> list = new ArrayList<>(meshes);
-                    final TriangleMesh mesh = MeshUtils.combineTriangleMeshes(list.toArray(new TriangleMesh[0]));
-                    mesh.getTexCoords().addAll(0.5f, 0, 0, 0, 1, 1);
-
                     final MeshView meshView = new MeshView(mesh);
                     // material.setSpecularColor(Color.YELLOW);
                     meshView.setId("e=" + a2edge[a0]);
-                    meshView.setMaterial(edge2material[a2edge[a0]]);
-                    meshes.add(mesh);
+                    meshView.setMaterial(palette.getBandMaterial(tilingStyle));
                     edgesGroup.getChildren().add(meshView);
-
-                    // test createFan:
-                    //meshes.add(MeshUtils.createFan(cornerPoints[0],cornerPoints[0].add(50,0,0),cornerPoints[0].add(0,50,0),cornerPoints[0].add(50,50,0)));
                 }
                 if (tilingStyle.isShowBackEdges()) {
-                    final ArrayList<TriangleMesh> list = new ArrayList<>(meshes);
-                    final TriangleMesh mesh = MeshUtils.combineTriangleMeshes(list.toArray(new TriangleMesh[0]));
-                    mesh.getTexCoords().addAll(0.5f, 0, 0, 0, 1, 1);
-
                     final MeshView meshView = new MeshView(MeshUtils.reverseOrientation(mesh));
                     // material.setSpecularColor(Color.YELLOW);
                     meshView.setId("e=" + a2edge[a0]);
-                    meshView.setMaterial(edge2material[a2edge[a0]]);
-                    meshes.add(mesh);
+                    meshView.setMaterial(palette.getBandMaterial(tilingStyle));
                     edgesGroup.getChildren().add(meshView);
                 }
             }
         }
-        if (tilingStyle.isShowVertices() || tilingStyle.isShowBackVertices()) {
-            final double linesAbove = (geom == Geometry.Euclidean ? -1 : 0);
-
-            for (int a : dsymbol.orbits(1, 2)) {
-                final Point3D center = a2VertexPoints3D[a];
-                // todo: need better tangent computation
-                final Point3D tangent = geom == Geometry.Euclidean ? new Point3D(1, 0, 0) : center.crossProduct(new Point3D(1, 0, 0));
-
-                final Point3D[] coordinates = BandCap3D.circle(center, tangent, bandWidth, bandCapFineness, geom);
-                final TriangleMesh mesh = BandCap3D.CircleMesh(center, coordinates, geom, linesAbove, false);
-                MeshUtils.setDefaultTexCoordinates(mesh);
+        if (needVertices) {
+            for (int a : vertexOrbits) {
+                final TriangleMesh mesh = a2VertexMesh[a];
 
                 if (tilingStyle.isShowVertices()) {
                     final MeshView meshView = new MeshView(mesh);
                     // material.setSpecularColor(Color.YELLOW);
                     meshView.setId("v=" + a2vertex[a]);
-                    meshView.setMaterial(vertex2material[a2vertex[a]]);
+                    meshView.setMaterial(palette.getBandMaterial(tilingStyle));
                     verticesGroup.getChildren().add(meshView);
                 }
                 if (tilingStyle.isShowBackVertices()) {
                     final MeshView meshView = new MeshView(MeshUtils.reverseOrientation(mesh));
                     // material.setSpecularColor(Color.YELLOW);
                     meshView.setId("v=" + a2vertex[a]);
-                    meshView.setMaterial(vertex2material[a2vertex[a]]);
+                    meshView.setMaterial(palette.getBandMaterial(tilingStyle));
                     verticesGroup.getChildren().add(meshView);
                 }
             }
@@ -455,16 +331,250 @@ public class FundamentalDomain {
             if (geom == Geometry.Euclidean)
                 all.add(tilingStyle.getDecorations());
             else
-                all.add(MapImageToGeometry.apply(geom, tilingStyle.getDecorations()));
+            {
+                final List<Object> decorationsKey = MapImageToGeometry.computeKey(geom, tilingStyle.getDecorations());
+                Group decorations = (Group) meshCache.get(decorationsKey);
+                if (decorations == null) {
+                    decorations = MapImageToGeometry.apply(geom, tilingStyle.getDecorations());
+                    meshCache.put(decorationsKey, decorations);
+                }
+                all.add(CopyTiles.instantiate(decorations)); // the cached nodes themselves can't be added to more than one group
+            }
         }
         return all;
     }
 
+    /**
+     * computes the coordinates, faces and edge points of a chamber
+     */
+    private static void computeChamber(int a, Geometry geom, FDomain fDomain, boolean smoothEdges, double sphericalTolerance, float[][] a2ChamberCoordinates, Point3D[][] a2edgePoints, Point3D[] a2VertexPoints3D, int[][] a2ChamberFaces) {
+        final float[] chamberCoordinates; // points that create the triangles
+        final Point3D[] edgePoints3D;
+        final int[] chamberFaces;
+
+        // end of geometric cases
+        switch (geom) {
+            // Iterative Triangle mesh generator
+            // clockwise orientation
+            // sets points for band caps
+            // scales the points on sphere to reduce rendering problems
+            case Spherical: {
+                final GeodesicSubdivision subdivision = new GeodesicSubdivision(Geometry.Spherical, smoothEdges ? sphericalTolerance : Double.MAX_VALUE);
+                subdivision.addPoint(fDomain.getVertex3D(0, a));
+                subdivision.addPoint(fDomain.getVertex3D(1, a));
+                subdivision.addPoint(fDomain.getVertex3D(2, a));
+                subdivision.addPoint(fDomain.getEdgeCenter3D(0, a));
+                subdivision.addPoint(fDomain.getEdgeCenter3D(1, a));
+                subdivision.addPoint(fDomain.getEdgeCenter3D(2, a));
+                subdivision.addTriangle(0, 4, 5);
+                subdivision.addTriangle(5, 3, 1);
+                subdivision.addTriangle(4, 2, 3);
+                subdivision.addTriangle(4, 3, 5);
+
+                chamberFaces = subdivision.getFaces();
+
+                if (smoothEdges) {
+                    // points along the 2-edge, as produced by the subdivision:
+                    final ArrayList<Integer> path = subdivision.getEdgePath(0, 5);
+                    final ArrayList<Integer> second = subdivision.getEdgePath(5, 1);
+                    path.addAll(second.subList(1, second.size()));
+                    edgePoints3D = new Point3D[path.size()];
+                    for (int i = 0; i < path.size(); i++) {
+                        edgePoints3D[i] = subdivision.getPoint(path.get(i));
+                    }
+                } else {
+                    edgePoints3D = new Point3D[]{subdivision.getPoint(0), subdivision.getPoint(5), subdivision.getPoint(5), subdivision.getPoint(1)};
+                }
+                a2VertexPoints3D[a] = subdivision.getPoint(0);
+                chamberCoordinates = toFloatCoordinates(subdivision.getPoints(), 0.995);
+                break;
+            }
+            case Euclidean: {
+                final Point3D[] chamberPoints = new Point3D[7];
+                chamberPoints[0] = fDomain.getVertex3D(0, a);
+                chamberPoints[1] = fDomain.getVertex3D(1, a);
+                chamberPoints[2] = fDomain.getVertex3D(2, a);
+                chamberPoints[3] = fDomain.getEdgeCenter3D(0, a);
+                chamberPoints[4] = fDomain.getEdgeCenter3D(1, a);
+                chamberPoints[5] = fDomain.getEdgeCenter3D(2, a);
+                chamberPoints[6] = fDomain.getChamberCenter3D(a);
+                chamberFaces = new int[]{0, 0, 6, 1, 5, 2, // v0 cc e2
+                        1, 0, 5, 1, 6, 2, // v1 e2 cc
+                        1, 0, 6, 1, 3, 2, // v1 cc e0
+                        2, 0, 3, 0, 6, 2, // v2 e0 cc
+                        2, 0, 6, 1, 4, 2, // v2 cc e1
+                        0, 0, 4, 1, 6, 2 // v0 e1 cc
+                };
+                edgePoints3D = new Point3D[3];
+                edgePoints3D[0] = chamberPoints[0];
+                edgePoints3D[1] = chamberPoints[5];
+                edgePoints3D[2] = chamberPoints[1];
+                a2VertexPoints3D[a] = chamberPoints[0];
+                chamberCoordinates = toFloatCoordinates(toCoordinates(chamberPoints, false), 1);
+                break;
+            }
+// scales points to reduce rendering problems
+            case Hyperbolic: {
+                final Point3D[] chamberPoints = new Point3D[13];
+                chamberPoints[0] = fDomain.getVertex3D(0, a);
+                chamberPoints[1] = fDomain.getVertex3D(1, a);
+                chamberPoints[2] = fDomain.getVertex3D(2, a);
+                chamberPoints[3] = fDomain.getEdgeCenter3D(0, a);
+                chamberPoints[4] = fDomain.getEdgeCenter3D(1, a);
+                chamberPoints[5] = fDomain.getEdgeCenter3D(2, a);
+                chamberPoints[6] = fDomain.getChamberCenter3D(a);
+                { // points along the 2-edge, obtained by inserting geodesic midpoints twice:
+                    double[] edge = toCoordinates(new Point3D[]{chamberPoints[0], chamberPoints[5], chamberPoints[1]}, false);
+                    edge = insertMidpoints(geom, edge);
+                    edge = insertMidpoints(geom, edge);
+                    chamberPoints[9] = new Point3D(edge[3], edge[4], edge[5]);
+                    chamberPoints[7] = new Point3D(edge[6], edge[7], edge[8]);
+                    chamberPoints[10] = new Point3D(edge[9], edge[10], edge[11]);
+                    chamberPoints[11] = new Point3D(edge[15], edge[16], edge[17]);
+                    chamberPoints[8] = new Point3D(edge[18], edge[19], edge[20]);
+                    chamberPoints[12] = new Point3D(edge[21], edge[22], edge[23]);
+                }
+                chamberFaces = new int[]{0, 0, 6, 1, 9, 2, //
+                        9, 0, 6, 1, 7, 2, //
+                        7, 0, 6, 1, 10, 2, //
+                        10, 0, 6, 1, 5, 2, //
+                        5, 0, 6, 1, 11, 2, //
+                        11, 0, 6, 1, 8, 2, //
+                        8, 0, 6, 1, 12, 2, //
+                        12, 0, 6, 1, 1, 2, //
+                        0, 0, 4, 1, 6, 2, //
+                        4, 0, 2, 1, 6, 2, //
+                        2, 0, 3, 1, 6, 2, //
+                        6, 0, 3, 1, 1, 2 //
+                };
+                a2VertexPoints3D[a] = chamberPoints[0];
+
+                int[] pointsOf2EdgeSorted = {0, 9, 7, 10, 5, 11, 8, 12, 1};
+                edgePoints3D = new Point3D[9];
+                for (int i = 0; i < 9; i++) {
+                    edgePoints3D[i] = chamberPoints[pointsOf2EdgeSorted[i]];
+                }
+                chamberCoordinates = toFloatCoordinates(toCoordinates(chamberPoints, false), 1.0125);
+                break;
+            }
+            default:
+                throw new RuntimeException("Invalid case");
+        }
+
+        a2ChamberCoordinates[a] = chamberCoordinates;
+        a2edgePoints[a] = edgePoints3D;
+        a2ChamberFaces[a] = chamberFaces;
+    }
+
+    /**
+     * runs the task for all values, in parallel, if requested
+     */
+    private static void forAll(boolean parallel, int[] values, IntConsumer task) {
+        if (parallel)
+            Arrays.stream(values).parallel().forEach(task);
+        else
+            Arrays.stream(values).forEach(task);
+    }
+
+    private static int[] toArray(Iterable<Integer> values) {
+        final ArrayList<Integer> list = new ArrayList<>();
+        values.forEach(list::add);
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
     private static double computeWindingNumber(Point3D a0, Point3D a1, Point3D a2) {
         return (a1.getX() - a0.getX()) * (a1.getY() + a0.getY()) + (a2.getX() - a1.getX()) * (a2.getY() + a1.getY())
                 + (a0.getX() - a2.getX()) * (a0.getY() + a2.getY());
     }
 
+    /**
+     * computes the mesh of a tile as a single polygon, bounded by the 2-edges of the chambers in the 0,1-orbit of a0,
+     * and triangulated by ear clipping. Hyperbolic triangles are subdivided where they deviate from the hyperboloid
+     *
+     * @return mesh, or null, if the tile does not form a closed simple polygon in the fundamental domain
+     */
+    private static TriangleMesh computeTilePolygonMesh(DSymbol dsymbol, FDomain fDomain, int a0, int orientation, Point3D[][] a2edgePoints, double hyperbolicTolerance) {
+        final Geometry geom = fDomain.getGeometry();
+        final double epsilon = 0.0001;
+
+        // walk around the tile, alternating between 0- and 1-neighbors, chambers are traversed from vertex 0 to 1 and then back
+        final ArrayList<Point3D> boundary = new ArrayList<>();
+        int a = a0;
+        boolean forward = true;
+        int steps = 0;
+        do {
+            if (dsymbol.getS0(a) == a || dsymbol.getS1(a) == a || ++steps > dsymbol.size())
+                return null; // tile is cut by a mirror
+            final Point3D[] edgePoints = a2edgePoints[a];
+            if (fDomain.getVertex(2, a).distance(fDomain.getVertex(2, a0)) > epsilon
+                || boundary.size() > 0 && boundary.get(boundary.size() - 1).distance(edgePoints[forward ? 0 : edgePoints.length - 1]) > epsilon)
+                return null; // tile is cut by the boundary of the fundamental domain
+            for (int i = (boundary.size() > 0 ? 1 : 0); i < edgePoints.length; i++) {
+                boundary.add(edgePoints[forward ? i : edgePoints.length - 1 - i]);
+            }
+            a = (forward ? dsymbol.getS0(a) : dsymbol.getS1(a));
+            forward = !forward;
+        } while (a != a0 || !forward);
+
+        if (boundary.get(0).distance(boundary.get(boundary.size() - 1)) > epsilon)
+            return null;
+        boundary.remove(boundary.size() - 1);
+
+        final double[] xy = new double[2 * boundary.size()];
+        for (int i = 0; i < boundary.size(); i++) {
+            final Point2D point = Tools.map3Dto2D(geom, boundary.get(i));
+            xy[2 * i] = point.getX();
+            xy[2 * i + 1] = point.getY();
+        }
+        final int[] triangles = PolygonTriangulation.apply(xy);
+        if (triangles == null)
+            return null;
+
+        // use the same orientation as the triangles of the chambers of the tile. A chamber triangle such as v0,cc,e2
+        // is oriented opposite to the boundary of the chamber, which runs along the 2-edge from v0 to v1 and then to v2:
+        final ArrayList<Point2D> chamber = new ArrayList<>();
+        for (Point3D point : a2edgePoints[a0]) {
+            chamber.add(Tools.map3Dto2D(geom, point));
+        }
+        chamber.add(fDomain.getVertex(2, a0));
+        final boolean chamberSign = (computeSignedArea(chamber) < 0) == (fDomain.getOrientation(a0) == orientation);
+        final ArrayList<Point2D> polygon = new ArrayList<>();
+        for (int i = 0; i < boundary.size(); i++) {
+            polygon.add(new Point2D(xy[2 * i], xy[2 * i + 1]));
+        }
+        final boolean reverse = ((computeSignedArea(polygon) > 0) != chamberSign);
+
+        final GeodesicSubdivision subdivision = new GeodesicSubdivision(geom, hyperbolicTolerance);
+        for (Point3D point : boundary) {
+            subdivision.addPoint(point);
+        }
+        for (int i = 0; i < triangles.length; i += 3) {
+            if (reverse)
+                subdivision.addTriangle(triangles[i], triangles[i + 2], triangles[i + 1]);
+            else
+                subdivision.addTriangle(triangles[i], triangles[i + 1], triangles[i + 2]);
+        }
+
+        final double scale = (geom == Geometry.Hyperbolic ? 1.0125 : 1); // same as for chambers, to reduce rendering problems
+        final TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(toFloatCoordinates(subdivision.getPoints(), scale));
+        mesh.getFaces().setAll(subdivision.getFaces());
+        return mesh;
+    }
+
+    /**
+     * twice the signed area of a polygon
+     */
+    private static double computeSignedArea(ArrayList<Point2D> polygon) {
+        double area = 0;
+        for (int i = 0; i < polygon.size(); i++) {
+            final Point2D p = polygon.get(i);
+            final Point2D q = polygon.get((i + 1) % polygon.size());
+            area += p.getX() * q.getY() - q.getX() * p.getY();
+        }
+        return area;
+    }
+
     /**
      * flip the orientation of faces
      */
@@ -480,17 +590,52 @@ public class FundamentalDomain {
     }
 
     /**
-     * reverse the order of points
+     * inserts the geodesic midpoint between any two consecutive points of a polyline
      *
-	 */
-    private static void reverseOrderOfPoints(Point3D[] list) {
-        for (int i = 0; i < list.length / 2; i++) {
-            Point3D tmp = list[i];
-            list[i] = list[list.length - i - 1];
-            list[list.length - i - 1] = tmp;
+     * @param coordinates x0,y0,z0,x1,y1,z1,...
+     * @return coordinates of refined polyline
+     */
+    private static double[] insertMidpoints(Geometry geom, double[] coordinates) {
+        final int n = coordinates.length / 3;
+        final double[] midpoints = new double[3 * (n - 1)];
+        Tools.midpoint3D(geom, coordinates, 0, coordinates, 1, midpoints, 0, n - 1);
+
+        final double[] result = new double[3 * (2 * n - 1)];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(coordinates, 3 * i, result, 6 * i, 3);
+            if (i + 1 < n)
+                System.arraycopy(midpoints, 3 * i, result, 6 * i + 3, 3);
         }
+        return result;
     }
 
+    /**
+     * copies points into a flat array of coordinates
+     *
+     * @param reverse if true, copy in reverse order
+     * @return coordinates x0,y0,z0,x1,y1,z1,...
+     */
+    private static double[] toCoordinates(Point3D[] points, boolean reverse) {
+        final double[] coordinates = new double[3 * points.length];
+        for (int i = 0; i < points.length; i++) {
+            final Point3D point = points[reverse ? points.length - 1 - i : i];
+            coordinates[3 * i] = point.getX();
+            coordinates[3 * i + 1] = point.getY();
+            coordinates[3 * i + 2] = point.getZ();
+        }
+        return coordinates;
+    }
+
+    /**
+     * converts coordinates to floats, scaling them by the given factor
+     */
+    private static float[] toFloatCoordinates(double[] coordinates, double scale) {
+        final float[] result = new float[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            result[i] = (float) (scale * coordinates[i]);
+        }
+        return result;
+    }
 
     /**
      * computes the representation of chambers
@@ -560,4 +705,43 @@ public class FundamentalDomain {
         }
         return result;
     }
+
+    /**
+     * fingerprint of the coordinates of a fundamental domain, used to look up cached meshes
+     */
+    private static class Fingerprint {
+        private final DSymbol dsymbol;
+        private final Geometry geometry;
+        private final double[] coordinates;
+        private final int hashCode;
+
+        Fingerprint(DSymbol dsymbol, FDomain fDomain) {
+            this.dsymbol = dsymbol;
+            this.geometry = fDomain.getGeometry();
+            coordinates = new double[14 * dsymbol.size()];
+            int i = 0;
+            for (int a = 1; a <= dsymbol.size(); a++) {
+                for (int k = 0; k <= 2; k++) {
+                    coordinates[i++] = fDomain.getVertex(k, a).getX();
+                    coordinates[i++] = fDomain.getVertex(k, a).getY();
+                    coordinates[i++] = fDomain.getEdgeCenter(k, a).getX();
+                    coordinates[i++] = fDomain.getEdgeCenter(k, a).getY();
+                }
+                coordinates[i++] = fDomain.getChamberCenter(a).getX();
+                coordinates[i++] = fDomain.getChamberCenter(a).getY();
+            }
+            hashCode = 31 * System.identityHashCode(dsymbol) + Arrays.hashCode(coordinates);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Fingerprint && ((Fingerprint) other).dsymbol == dsymbol && ((Fingerprint) other).geometry == geometry
+                    && Arrays.equals(((Fingerprint) other).coordinates, coordinates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
 }
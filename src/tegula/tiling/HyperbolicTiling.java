@@ -24,6 +24,7 @@ import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Transform;
 import javafx.scene.transform.Translate;
 import jloda.fx.window.NotificationManager;
@@ -32,10 +33,9 @@ import tegula.core.dsymbols.DSymbol;
 import tegula.geometry.Tools;
 import tegula.main.TilingStyle;
 import tegula.tiling.parts.OctTree;
+import tegula.tiling.parts.OctTreeMap;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.*;
 
 /**
  * a hyperbolic tiling
@@ -46,11 +46,28 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
 
     private static long previousWarning = 0L;
 
-    private final OctTree coveredPoints = new OctTree();
+    // all placed and pending copies, keyed by reference point before applying transformRecycled:
+    private final OctTreeMap<Copy> index = new OctTreeMap<>();
+    private final Set<Copy> placed = new LinkedHashSet<>();
+    // copies adjacent to placed ones that have not been placed yet, because they are out of range:
+    private final Set<Copy> pending = new LinkedHashSet<>();
+
+    private final ArrayList<Transform> neighborTransforms = new ArrayList<>();
+    private double neighborDistance = 0;
+
+    // level of detail: copies whose projected size is small are drawn using a simplified prototype, or are skipped
+    private final Group simplifiedPrototype = new Group();
+    private final Stack<Node> simplifiedRecycler = new Stack<>();
+    private double viewRadius = 400; // radius of the Poincare disk in pixels
+    private double simplifyZ = Double.MAX_VALUE;
+    private double skipZ = Double.MAX_VALUE;
+
+    // amount by which the hyperbolic limit of the style is reduced to keep within the copy budget:
+    private int limitReduction = 0;
 
     private Point3D referencePoint = getfDomain().computeReferencePoint();
 
-    private Transform transformRecycled = new Translate();
+    private Transform transformRecycled = new Translate(); // applied to the group of all copies, each copy carries its group element
 
     private final Point2D transVector = new Point2D(0, 0);
     private boolean changeDirection;
@@ -64,15 +81,23 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
     }
 
     /**
-     * update the tiling
+     * makes sure that the hyperbolic limit of the style is large enough to show the fundamental domain.
+     * This changes the style and so must be called on the FX thread, before the tiling is updated
      */
-    public Group update() {
-        double diameterFDomain = getfDomain().calculateDiameter();
+    public void adjustHyperbolicLimit() {
+        final double diameterFDomain = getfDomain().calculateDiameter();
         if (2.8 * diameterFDomain > tilingStyle.getHyperbolicLimit()) {
             tilingStyle.setHyperbolicLimit((int) Math.round(2.8 * diameterFDomain));
         }
+    }
+
+    /**
+     * update the tiling. Does not change the style, so can be run in a background thread
+     */
+    public Group update() {
+        setupLevelOfDetail(getfDomain().calculateDiameter());
 
-        final Group tiles = produceTiles(true);
+        final Group tiles = produceTiles();
         setNumberOfCopies(tiles.getChildren().size());
         return tiles;
     }
@@ -80,103 +105,125 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
     /**
      * produces hyperbolic tiles
      */
-    private Group produceTiles(boolean reset) {
-        final double maxDist = Math.cosh(0.5 * tilingStyle.getHyperbolicLimit());
-        //System.err.println("Create Hyperbolic Tiling");
-
-        //handles.getChildren().clear();
-
-        final Group all = new Group();
-
-        if (reset) { // need to recompute fundamental domain
-            recycler.clear();
-            coveredPoints.clear();
-
-            //Tolerance for rounding errors in OctTree
-            tolerance = computeTolerance(getGeometry(), referencePoint, generators);
+    private Group produceTiles() {
+        recycler.clear();
+        simplifiedRecycler.clear();
+        clearCopies();
 
-            //Prototype of fDomain (for copies)
-            fundPrototype.getChildren().clear();
-            fundPrototype.getChildren().setAll(FundamentalDomain.compute(ds, getfDomain(), tilingStyle));
-            all.getChildren().add(provideCopy(new Translate(), fundPrototype));
-        }
+        //Tolerance for rounding errors in OctTreeMap
+        tolerance = computeTolerance(getGeometry(), referencePoint, generators);
+        setupNeighborTransforms();
 
+        //Prototype of fDomain (for copies)
+        fundPrototype.getChildren().clear();
+        fundPrototype.getChildren().setAll(FundamentalDomain.compute(ds, getfDomain(), tilingStyle));
+        setupBakedCopies();
 
-        if (!isDrawFundamentalDomainOnly()) {
-            final int maxCopies = ProgramProperties.get("MaxCopiesHyperbolic", 5000);
-            final OctTree seen = new OctTree();
+        simplifiedPrototype.getChildren().clear();
+        if (simplifyZ < Double.MAX_VALUE && !isDrawFundamentalDomainOnly())
+            simplifiedPrototype.getChildren().setAll(FundamentalDomain.compute(ds, getfDomain(), createSimplifiedStyle()));
 
-            Point3D pt = transformRecycled.transform(referencePoint);
-            seen.insert(getGeometry(), pt, tolerance);
+        final Group all = new Group();
+        final Copy identity = new Copy(new Translate(), referencePoint);
+        index.put(getGeometry(), identity.key, tolerance, identity);
+        place(identity, all.getChildren());
 
-            // Make copies of fundamental domain.
-            final Queue<Transform> queue = new LinkedList<>(generators.getTransforms());
+        if (!isDrawFundamentalDomainOnly())
+            expand(all.getChildren());
+        return all;
+    }
 
-            for (Transform g : generators.getTransforms()) {  // Makes copies of fundamental domain by using generators
-                final Point3D ref = transformRecycled.createConcatenation(g).transform(referencePoint);
-                if (seen.insert(getGeometry(), ref, tolerance)) {    // Checks whether point "ref" is in OctTree "seen". Adds it if not.
-                    if (insertCoveredPoint(ref)) {
-                        all.getChildren().add(provideCopy(g, fundPrototype));
-                    }
-                }
+    /**
+     * places pending copies that are in range, starting from the frontier of placed copies.
+     * Only pending copies are considered, so the work done is proportional to the newly covered area
+     *
+     * @param target new nodes are added here
+     */
+    private void expand(List<Node> target) {
+        final double maxDist = computeMaxDist();
+        final double dropDist = Math.cosh(Math.log(Math.max(1, maxDist) + Math.sqrt(Math.max(0, maxDist * maxDist - 1))) + neighborDistance);
+        final int maxCopies = CopyBudget.getInstance().computeMaxCopies(tilingStyle, ProgramProperties.get("MaxCopiesHyperbolic", 5000));
+        setMaxCopies(maxCopies);
+        final long maxMillis = CopyBudget.getInstance().computeMaxMillis(tilingStyle, maxCopies);
+
+        final Queue<Copy> queue = new LinkedList<>();
+        for (Iterator<Copy> it = pending.iterator(); it.hasNext(); ) {
+            final Copy copy = it.next();
+            final double z = computeViewZ(copy.key);
+            if (z < maxDist)
+                queue.add(copy);
+            else if (z > dropDist) { // no longer adjacent to any placed copy
+                it.remove();
+                index.remove(getGeometry(), copy.key, tolerance);
             }
+        }
 
-            final long start = System.currentTimeMillis();
-
-            int countChildren = 0;
-            while (queue.size() > 0) {
-                // Breaks while loop if too many copies (rounding errors)
-                if (!reset && getNumberOfCopies() > 0 && countChildren >= 1.5 * getNumberOfCopies()) {
-                    System.out.println(countChildren + " children and " + getNumberOfCopies() + " copies");
-                    return FAILED;
-                }
-                if (coveredPoints.size() > maxCopies) {
-                    if (System.currentTimeMillis() - previousWarning > 10000) {
+        final long start = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final int placedBefore = placed.size();
+
+        while (queue.size() > 0 && !isCanceled()) {
+            if (placed.size() > maxCopies || System.currentTimeMillis() - start > maxMillis) {
+                if (tilingStyle.isAdaptiveCopyBudget()) {
+                    // degrade gracefully: show fewer copies from now on
+                    CopyBudget.getInstance().recordBudgetHit();
+                    if (getEffectiveLimit() > TilingStyle.minLimitHyperbolicGroup)
+                        limitReduction++;
+                } else if (System.currentTimeMillis() - previousWarning > 10000) {
+                    if (placed.size() > maxCopies)
                         NotificationManager.showWarning("Exceeded max copies: " + maxCopies);
-                        previousWarning = System.currentTimeMillis();
-                    }
-                    break;
-                }
-                if (System.currentTimeMillis() - start > 10000) {
-                    if (System.currentTimeMillis() - previousWarning > 10000) {
-                        NotificationManager.showWarning("Exceeded max computation time (10sec)");
-                        previousWarning = System.currentTimeMillis();
-                    }
-                    break;
+                    else
+                        NotificationManager.showWarning("Exceeded max computation time (" + maxMillis / 1000 + "sec)");
+                    previousWarning = System.currentTimeMillis();
                 }
+                break;
+            }
 
-                final Transform t = queue.poll(); // remove t from queue
+            final Copy copy = queue.poll();
+            if (copy.node == null && pending.remove(copy)) {
+                for (Copy neighbor : place(copy, target)) {
+                    if (computeViewZ(neighbor.key) < maxDist)
+                        queue.add(neighbor);
+                }
+            }
+        }
+        CopyBudget.getInstance().recordGeneration(placed.size() - placedBefore, System.nanoTime() - startNanos);
 
-                if (t != null) {
-                    for (Transform g : generators.getTransforms()) {
-                        {
-                            final Transform tg = t.createConcatenation(g);
-                            final Point3D ref = transformRecycled.createConcatenation(tg).transform(referencePoint);
-                            if (seen.insert(getGeometry(), ref, tolerance) && ref.getZ() < maxDist) {
-                                countChildren++;
-                                queue.add(tg);
-                                if (insertCoveredPoint(ref)) {
-                                    all.getChildren().add(provideCopy(tg, fundPrototype));
+        // recover: show more copies again, once the measurements show that they fit into the budget
+        if (limitReduction > 0 && queue.size() == 0 && CopyBudget.getInstance().hasHeadroom(tilingStyle, placed.size(), maxCopies, maxMillis))
+            limitReduction--;
+    }
 
-                                }
-                            }
-                        }
-                        {
-                            final Transform gt = g.createConcatenation(t);
-                            final Point3D ref = transformRecycled.createConcatenation(gt).transform(referencePoint);
-                            if (seen.insert(getGeometry(), ref, tolerance) && ref.getZ() < maxDist) {
-                                countChildren++;
-                                queue.add(gt);
-                                if (insertCoveredPoint(ref)) {
-                                    all.getChildren().add(provideCopy(gt, fundPrototype));
-                                }
-                            }
-                        }
-                    }
-                }
+    /**
+     * places a copy and registers all its neighbors that are not yet known as pending
+     *
+     * @return the new pending neighbors
+     */
+    private ArrayList<Copy> place(Copy copy, List<Node> target) {
+        copy.simplified = (computeViewZ(copy.key) > simplifyZ);
+        copy.node = provideCopy(copy.element, copy.simplified);
+        target.add(copy.node);
+        placed.add(copy);
+
+        final ArrayList<Copy> neighbors = new ArrayList<>();
+        for (Transform g : neighborTransforms) {
+            final Transform element = copy.element.createConcatenation(g);
+            final Copy neighbor = new Copy(element, element.transform(referencePoint));
+            if (index.put(getGeometry(), neighbor.key, tolerance, neighbor)) {
+                pending.add(neighbor);
+                neighbors.add(neighbor);
             }
         }
-        return all;
+        return neighbors;
+    }
+
+    /**
+     * removes a copy from the scene, it becomes pending again
+     */
+    private void retire(Copy copy) {
+        (copy.simplified ? simplifiedRecycler : recycler).push(copy.node);
+        copy.node = null;
+        pending.add(copy);
     }
 
     /**
@@ -186,14 +233,9 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
     public void translateTiling(double dx, double dy, Group tiles) {
         changeDirection = false;
 
-        // OctTree is used for saving copies which are kept under translation
-        coveredPoints.clear();
-
         dx /= 300;
         dy /= 300;
 
-        double maxDist = Math.cosh(0.5 * tilingStyle.getHyperbolicLimit());
-
         // Calculate hyperbolic translation of tiles:
         Transform translate = Tools.hyperbolicTranslation(dx, dy);
 
@@ -209,6 +251,15 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
                 calculateBackShiftHyperbolic();
             }
             transformRecycled = transformRecycled.createConcatenation(t); // Transforms original fundamental domain (which served as construction for the tile) to reset fundamental domain
+            try {
+                rebase(t.createInverse());
+            } catch (NonInvertibleTransformException ex) {
+                reset(); // Reset fundamental domain
+                tiles.getTransforms().setAll(transformRecycled);
+                tiles.getChildren().setAll(produceTiles().getChildren()); // Update tiling
+                setNumberOfCopies(tiles.getChildren().size());
+                return;
+            }
         }
 
 
@@ -236,36 +287,17 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
                 columns[0].getZ(), columns[1].getZ(), columns[2].getZ(), 0);
         //--------------------------------------------------------------------------------------------------------------
 
-        //First step: Translate tiles by vector (dx,dy) ------------------------------------------------------------
-        int i = 0;
-        while (i < tiles.getChildren().size()) {
-            final Group group = (Group) tiles.getChildren().get(i);
-            if (group == null || group.getChildren().size() == 0)
-                throw new RuntimeException("Fund copy empty");
-
-            final Transform nodeTransform = group.getTransforms().get(0);
-            final Point3D point = translate.createConcatenation(nodeTransform).transform(referencePoint); // point = translated reference point of node
-
-            if (point.getZ() > maxDist) {
-                tiles.getChildren().remove(i);
-                recycler.push(group); // Remove node and add to recycler
-            } else {
-                group.getTransforms().setAll(translate.createConcatenation(nodeTransform));
-                insertCoveredPoint(point);
-                i++;
-            }
-        }
-
-        //Second step: Create new tiles ----------------------------------------------------------------------------
-        Group newTiles = produceTiles(false);
+        //First step: Move all copies and retire those that are out of range -------------------------------------
+        tiles.getTransforms().setAll(transformRecycled);
+        updatePlacedCopies(tiles);
 
-        if (newTiles == FAILED) { // Generates new tiling if too much rounding errors
-            reset(); // Reset fundamental domain
-            tiles.getChildren().setAll(produceTiles(true)); // Update tiling
-        } else { // No rounding errors: add new tiles
-            tiles.getChildren().addAll(newTiles.getChildren());
-            setNumberOfCopies(tiles.getChildren().size());
+        //Second step: Expand from the frontier into the newly exposed region --------------------------------------
+        if (!isDrawFundamentalDomainOnly()) {
+            final ArrayList<Node> newTiles = new ArrayList<>();
+            expand(newTiles);
+            tiles.getChildren().addAll(newTiles);
         }
+        setNumberOfCopies(tiles.getChildren().size());
     }
 
     /**
@@ -273,16 +305,7 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
      */
     public void decreaseTiling(Group tiles) {
         tilingStyle.setHyperbolicLimit(tilingStyle.getHyperbolicLimit() - 1);
-        double maxDist = Math.cosh(0.5 * tilingStyle.getHyperbolicLimit());
-
-        final ArrayList<Node> toRemove = new ArrayList<>();
-        for (Node node : tiles.getChildren()) {
-            final Point3D pt = node.getTransforms().get(0).transform(referencePoint);
-            if (pt.getZ() > maxDist)
-                toRemove.add(node);
-        }
-        tiles.getChildren().removeAll(toRemove);
-        recycler.addAll(toRemove);
+        updatePlacedCopies(tiles);
         setNumberOfCopies(tiles.getChildren().size());
     }
 
@@ -292,19 +315,143 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
     public void increaseTiling(Group tiles) {
         tilingStyle.setHyperbolicLimit(tilingStyle.getHyperbolicLimit() + 1);
 
-        coveredPoints.clear();
+        final ArrayList<Node> newTiles = new ArrayList<>();
+        expand(newTiles);
+        tiles.getChildren().addAll(newTiles);
+        setNumberOfCopies(tiles.getChildren().size());
+    }
 
-        for (int i = 0; i < tiles.getChildren().size(); i++) {
-            final Node node = tiles.getChildren().get(i);
-            final Point3D pt = node.getTransforms().get(0).transform(referencePoint);
-            insertCoveredPoint(pt); // Add existing tiles to tree structure
+    /**
+     * retires all placed copies that are out of range and updates the level of detail of the remaining ones
+     */
+    private void updatePlacedCopies(Group tiles) {
+        final double maxDist = computeMaxDist();
+
+        final Set<Node> toRemove = new HashSet<>();
+        final ArrayList<Node> toAdd = new ArrayList<>();
+        for (Iterator<Copy> it = placed.iterator(); it.hasNext(); ) {
+            final Copy copy = it.next();
+            final double z = computeViewZ(copy.key);
+            if (z > maxDist) {
+                toRemove.add(copy.node);
+                it.remove();
+                retire(copy);
+            } else if ((z > simplifyZ) != copy.simplified) { // change level of detail
+                toRemove.add(copy.node);
+                (copy.simplified ? simplifiedRecycler : recycler).push(copy.node);
+                copy.simplified = !copy.simplified;
+                copy.node = provideCopy(copy.element, copy.simplified);
+                toAdd.add(copy.node);
+            }
         }
+        if (toRemove.size() > 0)
+            tiles.getChildren().removeAll(toRemove);
+        if (toAdd.size() > 0)
+            tiles.getChildren().addAll(toAdd);
+    }
 
-        setNumberOfCopies(0);
-        // Add new tiles
-        final Group newTiles = produceTiles(false);
-        tiles.getChildren().addAll(newTiles.getChildren());
-        setNumberOfCopies(tiles.getChildren().size());
+    /**
+     * maximal z-coordinate of the reference point of a placed copy, determined by the hyperbolic limit and the level of detail
+     *
+     * @return max z-coordinate
+     */
+    private double computeMaxDist() {
+        return Math.min(Math.cosh(0.5 * getEffectiveLimit()), skipZ);
+    }
+
+    /**
+     * the hyperbolic limit of the style, reduced if the copy budget was exceeded
+     *
+     * @return limit used
+     */
+    private int getEffectiveLimit() {
+        if (!tilingStyle.isAdaptiveCopyBudget())
+            return tilingStyle.getHyperbolicLimit();
+        else
+            return Math.max(Math.min(TilingStyle.minLimitHyperbolicGroup, tilingStyle.getHyperbolicLimit()), tilingStyle.getHyperbolicLimit() - limitReduction);
+    }
+
+    /**
+     * setup the level of detail. In the Poincare model, a small region around a point with z-coordinate z is
+     * scaled by 1/(1+z), so a copy of diameter d is displayed using about d*viewRadius/(1+z) pixels
+     */
+    private void setupLevelOfDetail(double diameterFDomain) {
+        if (ProgramProperties.get("HyperbolicLevelOfDetail", true)) {
+            final double size = diameterFDomain * viewRadius;
+            // baked copies all use the same prototype, and are cheap anyway, so don't simplify them
+            simplifyZ = (tilingStyle.isBakeCopies() ? Double.MAX_VALUE : size / Math.max(1, ProgramProperties.get("HyperbolicDetailPixels", 24)) - 1);
+            skipZ = Math.max(1, size / Math.max(1, ProgramProperties.get("HyperbolicSkipPixels", 1)) - 1);
+        } else {
+            simplifyZ = Double.MAX_VALUE;
+            skipZ = Double.MAX_VALUE;
+        }
+    }
+
+    /**
+     * creates the style used for copies that are displayed small: no round band caps and no vertices
+     *
+     * @return simplified style
+     */
+    private TilingStyle createSimplifiedStyle() {
+        final TilingStyle style = new TilingStyle();
+        style.copy(tilingStyle);
+        style.getTileColors().setAll(tilingStyle.getTileColors());
+        style.setMaterialPalette(tilingStyle.getMaterialPalette()); // so that recoloring also applies to simplified copies
+        style.setBandCapFineness(0);
+        style.setShowVertices(false);
+        style.setShowBackVertices(false);
+        return style;
+    }
+
+    /**
+     * after transformRecycled has been multiplied by a group element t, express all copies relative to the new transformRecycled
+     *
+     * @param inverse inverse of t
+     */
+    private void rebase(Transform inverse) {
+        index.clear();
+        for (Copy copy : placed) {
+            copy.rebase(inverse);
+            copy.node.getTransforms().setAll(copy.element);
+            index.put(getGeometry(), copy.key, tolerance, copy);
+        }
+        for (Iterator<Copy> it = pending.iterator(); it.hasNext(); ) {
+            final Copy copy = it.next();
+            copy.rebase(inverse);
+            if (!index.put(getGeometry(), copy.key, tolerance, copy))
+                it.remove();
+        }
+    }
+
+    /**
+     * computes the z-coordinate of the given point after applying transformRecycled
+     *
+     * @return z-coordinate
+     */
+    private double computeViewZ(Point3D key) {
+        return transformRecycled.getMzx() * key.getX() + transformRecycled.getMzy() * key.getY() + transformRecycled.getMzz() * key.getZ() + transformRecycled.getTz();
+    }
+
+    /**
+     * setup the transforms used to reach neighboring copies, namely all generators and their inverses
+     */
+    private void setupNeighborTransforms() {
+        neighborTransforms.clear();
+        neighborDistance = 0;
+        for (Transform g : generators.getTransforms()) {
+            neighborTransforms.add(g);
+            try {
+                neighborTransforms.add(g.createInverse());
+            } catch (NonInvertibleTransformException ignored) {
+            }
+            neighborDistance = Math.max(neighborDistance, Tools.distance(getGeometry(), referencePoint, g.transform(referencePoint)));
+        }
+    }
+
+    private void clearCopies() {
+        index.clear();
+        placed.clear();
+        pending.clear();
     }
 
     /**
@@ -391,19 +538,58 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
      *
      * @return copy
      */
-    private Node provideCopy(Transform transform, Group fund) {
-        final Node copy = (recycler.size() > 0 ? recycler.pop() : CopyTiles.apply(fund));
-        copy.getTransforms().setAll(transformRecycled.createConcatenation(transform));
+    private Node provideCopy(Transform transform, boolean simplified) {
+        final Stack<Node> stack = (simplified ? simplifiedRecycler : recycler);
+        final Node copy = (stack.size() > 0 ? stack.pop() : instantiateCopy(simplified ? simplifiedPrototype : fundPrototype));
+        copy.getTransforms().setAll(transform);
         return copy;
     }
 
+    @Override
+    public Transform getTilesTransform() {
+        return transformRecycled;
+    }
+
+    @Override
+    public boolean updateParts(Group tiles) {
+        if (!updatePrototype())
+            return false;
+        simplifiedRecycler.clear();
+        simplifiedPrototype.getChildren().clear();
+        if (simplifyZ < Double.MAX_VALUE && !isDrawFundamentalDomainOnly())
+            simplifiedPrototype.getChildren().setAll(FundamentalDomain.compute(ds, getfDomain(), createSimplifiedStyle()));
+        if (!isBakedCopies()) {
+            for (Copy copy : placed)
+                replaceParts((Group) copy.node, copy.simplified ? simplifiedPrototype : fundPrototype);
+        }
+        return true;
+    }
+
     @Override
     public void reset() {
         super.reset();
         fundPrototype.getChildren().clear();
-        referencePoint = null;
+        referencePoint = getfDomain().computeReferencePoint();
         recycler.clear();
-        coveredPoints.clear();
+        simplifiedPrototype.getChildren().clear();
+        simplifiedRecycler.clear();
+        clearCopies();
+    }
+
+    /**
+     * set the radius of the Poincare disk in pixels, used to determine the level of detail
+     */
+    public void setViewRadius(double viewRadius) {
+        if (viewRadius > 0)
+            this.viewRadius = viewRadius;
+    }
+
+    public Group getSimplifiedPrototype() {
+        return simplifiedPrototype;
+    }
+
+    public Stack<Node> simplifiedRecycler() {
+        return simplifiedRecycler;
     }
 
     public Point2D getTransVector() {
@@ -415,11 +601,22 @@ public class HyperbolicTiling extends TilingBase implements TilingCreator {
     }
 
     /**
-     * attempt to insert point to oct tree of covered points
-     *
-     * @return false, if point is already covered
+     * a copy of the fundamental domain
      */
-    private boolean insertCoveredPoint(Point3D p) {
-        return coveredPoints.insert(getGeometry(), p, tolerance);
+    private static class Copy {
+        private Transform element; // group element, relative to transformRecycled
+        private Point3D key; // reference point mapped by element
+        private Node node; // null, while pending
+        private boolean simplified; // node is a copy of the simplified prototype
+
+        Copy(Transform element, Point3D key) {
+            this.element = element;
+            this.key = key;
+        }
+
+        void rebase(Transform inverse) {
+            element = inverse.createConcatenation(element);
+            key = inverse.transform(key);
+        }
     }
 }
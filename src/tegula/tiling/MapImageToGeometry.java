@@ -19,7 +19,6 @@
 
 package tegula.tiling;
 
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableFloatArray;
 import javafx.collections.ObservableIntegerArray;
 import javafx.geometry.Bounds;
@@ -33,12 +32,11 @@ import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.TriangleMesh;
-import jloda.util.Pair;
 import tegula.core.dsymbols.Geometry;
 import tegula.geometry.Tools;
+import tegula.tiling.parts.EdgeSubdivision;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * methods for mapping images onto a sphere
@@ -56,17 +54,16 @@ public class MapImageToGeometry {
             if (item instanceof ImageView) {
                 final ImageView imageView = ((ImageView) item);
 
-                final Bounds bounds = item.getBoundsInLocal();
-                final Point2D[] points2D = {
-                        item.localToParent(new Point2D(bounds.getMinX(), bounds.getMinY())), item.localToParent(new Point2D(bounds.getMinX(), bounds.getMaxY())),
-                        item.localToParent(new Point2D(bounds.getMaxX(), bounds.getMaxY())), item.localToParent(new Point2D(bounds.getMaxX(), bounds.getMinY()))};
+                final Point2D[] points2D = computeCorners(imageView);
 
+                final double[] xy = new double[2 * points2D.length];
                 for (int i = 0; i < points2D.length; i++) {
-                    points2D[i] = new Point2D(points2D[i].getX() / 100, points2D[i].getY() / 100);
+                    xy[2 * i] = points2D[i].getX() / 100;
+                    xy[2 * i + 1] = points2D[i].getY() / 100;
                 }
 
-                final Point3D[] points3D = {Tools.map2Dto3D(geometry, points2D[0]), Tools.map2Dto3D(geometry, points2D[1]),
-                        Tools.map2Dto3D(geometry, points2D[2]), Tools.map2Dto3D(geometry, points2D[3])};
+                final double[] points3D = new double[3 * points2D.length];
+                Tools.map2Dto3D(geometry, xy, 0, points3D, 0, points2D.length);
 
                 // don't subdivide
                 double maxSideLength;
@@ -86,8 +83,6 @@ public class MapImageToGeometry {
 
                 final TriangleMesh mesh = computeTriangleMesh(geometry, maxSideLength, points3D);
 
-                moveSlightlyAbove(geometry, mesh);
-
 
                 final MeshView meshView = new MeshView(mesh);
                 if (true) {
@@ -106,132 +101,163 @@ public class MapImageToGeometry {
     }
 
     /**
-     * compute a triangle mesh for the given four points
+     * computes a key that identifies the result of mapping the given items onto the given geometry
      *
-     * @return mesh
+     * @return key consisting of the geometry and the image and corners of each image view
      */
-    private static TriangleMesh computeTriangleMesh(Geometry geometry, double maxSideLength, Point3D[] points3D) {
-        TriangleMesh mesh = computeMeshOnFourPoints(points3D);
-
-        int count = 0;
-
-        while (!sideLengthsBelowThreshold(Geometry.Euclidean, mesh, maxSideLength)) {
-            refine(geometry, mesh);
-            if (++count == 8)
-                break;
+    public static List<Object> computeKey(Geometry geometry, Group items) {
+        final List<Object> key = new ArrayList<>();
+        key.add("decorations");
+        key.add(geometry);
+        for (Node item : items.getChildren()) {
+            if (item instanceof ImageView) {
+                key.add(((ImageView) item).getImage());
+                key.addAll(Arrays.asList(computeCorners(item)));
+            }
         }
-        //System.err.println(String.format("MaxSideLength: %.3f Refinements: %d triangles: %d", maxSideLength, count, mesh.getFaces().size() / 6));
-        return mesh;
+        return key;
     }
 
     /**
-     * refine a mesh
+     * get the four corners of the item in parent coordinates
      *
-	 */
-    public static void refine(Geometry geometry, TriangleMesh mesh) {
+     * @return corners
+     */
+    private static Point2D[] computeCorners(Node item) {
+        final Bounds bounds = item.getBoundsInLocal();
+        return new Point2D[]{
+                item.localToParent(new Point2D(bounds.getMinX(), bounds.getMinY())), item.localToParent(new Point2D(bounds.getMinX(), bounds.getMaxY())),
+                item.localToParent(new Point2D(bounds.getMaxX(), bounds.getMaxY())), item.localToParent(new Point2D(bounds.getMaxX(), bounds.getMinY()))};
+    }
 
-        final Map<Pair<Integer, Integer>, Integer> pair2point = new HashMap<>(); // each pair of ordered faces is mapped to a new  point in mesh
-        final Map<Pair<Integer, Integer>, Integer> pair2texCoord = new HashMap<>(); // each pair of ordered faces is mapped to a new  texture coordinate
+    /**
+     * compute a triangle mesh for the given four points. Edges whose geodesic length exceeds the threshold are split
+     * recursively, up to 8 times. Because an edge is split or not depending only on its two end points, neighboring
+     * triangles are subdivided consistently and only the triangles with long sides are refined.
+     * The mesh is placed slightly above the tiling
+     *
+     * @param points3D coordinates of the four points, x0,y0,z0,x1,y1,z1,...
+     * @return mesh
+     */
+    private static TriangleMesh computeTriangleMesh(Geometry geometry, double maxSideLength, double[] points3D) {
+        if (points3D.length != 12)
+            throw new IllegalArgumentException("points3D: must have length 12");
 
-        final ObservableFloatArray meshPoints = mesh.getPoints();
-        final Point3D[] points3D = new Point3D[meshPoints.size() / 3];
-        final Point2D[] texPoints = new Point2D[mesh.getTexCoords().size() / 2];
-        for (int i = 0; i < points3D.length; i++) {
-            points3D[i] = new Point3D(meshPoints.get(3 * i), meshPoints.get(3 * i + 1), meshPoints.get(3 * i + 2));
-        }
-        for (int i = 0; i < texPoints.length; i++) {
-            texPoints[i] = new Point2D(mesh.getTexCoords().get(2 * i), mesh.getTexCoords().get(2 * i + 1));
+        double longest = 0;
+        for (int i = 0; i < 4; i++) {
+            longest = Math.max(longest, Refinement.computeLength(geometry, points3D, i, (i + 1) % 4));
         }
+        longest = Math.max(longest, Refinement.computeLength(geometry, points3D, 0, 2));
 
-        final ObservableIntegerArray nextFaces = FXCollections.observableIntegerArray();
-
-        final ObservableIntegerArray faces = mesh.getFaces();
-        for (int f = 0; f < mesh.getFaces().size(); f += 6) {
-            final int[] threePoints = new int[3];
-            final int[] threeTexCoord = new int[3];
-            for (int i = 0; i < 3; i++) {
-                threePoints[i] = faces.get(f + 2 * i);
-                threeTexCoord[i] = faces.get(f + 2 * i + 1);
-            }
+        final Refinement refinement = new Refinement(geometry, maxSideLength, longest / 256);
+        final float[] textureCoordinates = {0, 0, 0, 1, 1, 1, 1, 0};
+        for (int i = 0; i < 4; i++) {
+            refinement.addPoint(points3D[3 * i], points3D[3 * i + 1], points3D[3 * i + 2], textureCoordinates[2 * i], textureCoordinates[2 * i + 1]);
+        }
+        refinement.addTriangle(0, 1, 2);
+        refinement.addTriangle(0, 2, 3);
+        refinement.moveSlightlyAbove();
 
-            // add edge midpoints:
+        //System.err.println(String.format("MaxSideLength: %.3f points: %d triangles: %d", maxSideLength, refinement.numberOfPoints, refinement.numberOfFaces));
+        return refinement.computeMesh();
+    }
 
-            for (int i = 0; i < 3; i++) {
-                final int ai = threePoints[i];
-                final Point3D a = points3D[ai];
-                final int at = threeTexCoord[i];
+    /**
+     * adaptive refinement of a triangle mesh, on primitive buffers. Each point has its own texture coordinate, with the same index
+     */
+    private static class Refinement extends EdgeSubdivision {
+        private final Geometry geometry;
+        private final double maxSideLength;
+        private final double minSideLength;
+
+        private double[] points = new double[3 * 64];
+        private float[] texCoords = new float[2 * 64];
+        private int numberOfPoints;
+
+        private int[] faces = new int[6 * 64];
+        private int numberOfFaces;
+
+        Refinement(Geometry geometry, double maxSideLength, double minSideLength) {
+            this.geometry = geometry;
+            this.maxSideLength = maxSideLength;
+            this.minSideLength = minSideLength;
+        }
 
-                for (int j = i + 1; j < 3; j++) {
-                    final int bi = threePoints[j];
-                    final Point3D b = points3D[bi];
-                    final int bt = threeTexCoord[j];
+        int addPoint(double x, double y, double z, float u, float v) {
+            if (numberOfPoints == texCoords.length / 2) {
+                points = Arrays.copyOf(points, 2 * points.length);
+                texCoords = Arrays.copyOf(texCoords, 2 * texCoords.length);
+            }
+            points[3 * numberOfPoints] = x;
+            points[3 * numberOfPoints + 1] = y;
+            points[3 * numberOfPoints + 2] = z;
+            texCoords[2 * numberOfPoints] = u;
+            texCoords[2 * numberOfPoints + 1] = v;
+            return numberOfPoints++;
+        }
 
+        @Override
+        protected void addFace(int a, int b, int c) {
+            if (6 * (numberOfFaces + 1) > faces.length)
+                faces = Arrays.copyOf(faces, 2 * faces.length);
+            final int pos = 6 * numberOfFaces++;
+            faces[pos] = faces[pos + 1] = a;
+            faces[pos + 2] = faces[pos + 3] = b;
+            faces[pos + 4] = faces[pos + 5] = c;
+        }
 
-                    final Pair<Integer, Integer> pairAB = new Pair<>(Math.min(ai, bi), Math.max(ai, bi));
-                    if (!pair2point.containsKey(pairAB)) {
-                        final Point3D mid = Tools.midpoint3D(geometry, a, b);
-                        mesh.getPoints().addAll((float) mid.getX(), (float) mid.getY(), (float) mid.getZ());
-                        final Point2D texMid = texPoints[at].add(texPoints[bt]).multiply(0.5);
-                        mesh.getTexCoords().addAll((float) texMid.getX(), (float) texMid.getY());
+        @Override
+        protected boolean mustSplit(int a, int b) {
+            final double length = computeLength(geometry, points, a, b);
+            return length > maxSideLength && length > minSideLength;
+        }
 
-                        pair2point.put(pairAB, (mesh.getPoints().size() - 1) / 3);
-                        pair2texCoord.put(pairAB, (mesh.getTexCoords().size() - 1) / 2);
-                    }
+        /**
+         * geodesic length of an edge
+         */
+        static double computeLength(Geometry geometry, double[] points, int a, int b) {
+            final double ax = points[3 * a], ay = points[3 * a + 1], az = points[3 * a + 2];
+            final double bx = points[3 * b], by = points[3 * b + 1], bz = points[3 * b + 2];
+            switch (geometry) {
+                case Spherical: {
+                    final double cos = (ax * bx + ay * by + az * bz) / Math.sqrt((ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz));
+                    return 100 * Math.acos(Math.max(-1, Math.min(1, cos)));
+                }
+                case Hyperbolic: {
+                    return 100 * Tools.arccosh(Math.max(1, Math.abs(ax * bx + ay * by - az * bz) * 0.0001));
                 }
+                default:
+                    return Math.sqrt((ax - bx) * (ax - bx) + (ay - by) * (ay - by) + (az - bz) * (az - bz));
             }
-
-            // now setup four new triangles:
-            final int[] sixPoints = {threePoints[0], pair2point.get(new Pair<>(Math.min(threePoints[0], threePoints[1]), Math.max(threePoints[0], threePoints[1]))),
-                    threePoints[1], pair2point.get(new Pair<>(Math.min(threePoints[1], threePoints[2]), Math.max(threePoints[1], threePoints[2]))),
-                    threePoints[2], pair2point.get(new Pair<>(Math.min(threePoints[2], threePoints[0]), Math.max(threePoints[2], threePoints[0])))
-            };
-            final int[] sixTexCoords = {threeTexCoord[0], pair2texCoord.get(new Pair<>(Math.min(threePoints[0], threePoints[1]), Math.max(threePoints[0], threePoints[1]))),
-                    threeTexCoord[1], pair2texCoord.get(new Pair<>(Math.min(threePoints[1], threePoints[2]), Math.max(threePoints[1], threePoints[2]))),
-                    threeTexCoord[2], pair2texCoord.get(new Pair<>(Math.min(threePoints[2], threePoints[0]), Math.max(threePoints[2], threePoints[0])))
-            };
-            nextFaces.addAll(sixPoints[0], sixTexCoords[0], sixPoints[1], sixTexCoords[1], sixPoints[5], sixTexCoords[5]);
-            nextFaces.addAll(sixPoints[1], sixTexCoords[1], sixPoints[2], sixTexCoords[2], sixPoints[3], sixTexCoords[3]);
-            nextFaces.addAll(sixPoints[3], sixTexCoords[3], sixPoints[4], sixTexCoords[4], sixPoints[5], sixTexCoords[5]);
-            nextFaces.addAll(sixPoints[1], sixTexCoords[1], sixPoints[3], sixTexCoords[3], sixPoints[5], sixTexCoords[5]);
         }
 
-        mesh.getFaces().setAll(nextFaces);
-    }
-
-    /**
-     * move mesh slightly above the tiling
-     *
-	 */
-    private static void moveSlightlyAbove(Geometry geometry, TriangleMesh mesh) {
-        final ObservableFloatArray points = mesh.getPoints();
-        for (int i = 0; i < mesh.getPoints().size(); i += 3) {
-            final Point3D point = Tools.moveSlightlyAbove(geometry, new Point3D(points.get(i), points.get(i + 1), points.get(i + 2)));
-            points.set(i, (float) point.getX());
-            points.set(i + 1, (float) point.getY());
-            points.set(i + 2, (float) point.getZ());
+        /**
+         * adds the geodesic midpoint of an edge, with the mean texture coordinate
+         *
+         * @return index of midpoint
+         */
+        @Override
+        protected int addMidpoint(int a, int b) {
+            final int m = addPoint(0, 0, 0, 0.5f * (texCoords[2 * a] + texCoords[2 * b]), 0.5f * (texCoords[2 * a + 1] + texCoords[2 * b + 1]));
+            Tools.midpoint3D(geometry, points, a, points, b, points, m, 1);
+            return m;
         }
-    }
 
-    /**
-     * Setup triangle mesh on four points
-     *
-     * @return mesh
-     */
-    private static TriangleMesh computeMeshOnFourPoints(Point3D[] points3D) {
-        if (points3D.length != 4)
-            throw new IllegalArgumentException("points3D: must have length 4");
-
-        final TriangleMesh mesh = new TriangleMesh();
-        for (Point3D point : points3D) {
-            mesh.getPoints().addAll((float) point.getX(), (float) point.getY(), (float) point.getZ());
+        void moveSlightlyAbove() {
+            Tools.moveSlightlyAbove(geometry, points, 0, numberOfPoints);
         }
-        final float[] textureCoordinates = {0, 0, 0, 1, 1, 1, 1, 0};
-        mesh.getTexCoords().addAll(textureCoordinates);
-
-        mesh.getFaces().addAll(0, 0, 1, 1, 2, 2);
-        mesh.getFaces().addAll(0, 0, 2, 2, 3, 3);
 
-        return mesh;
+        TriangleMesh computeMesh() {
+            final float[] meshPoints = new float[3 * numberOfPoints];
+            for (int i = 0; i < meshPoints.length; i++) {
+                meshPoints[i] = (float) points[i];
+            }
+            final TriangleMesh mesh = new TriangleMesh();
+            mesh.getPoints().setAll(meshPoints);
+            mesh.getTexCoords().setAll(texCoords, 0, 2 * numberOfPoints);
+            mesh.getFaces().setAll(faces, 0, 6 * numberOfFaces);
+            return mesh;
+        }
     }
 
     public static boolean sideLengthsBelowThreshold(Geometry geometry, TriangleMesh mesh, double maxSideLength) {
@@ -256,6 +282,6 @@ public class MapImageToGeometry {
 
 
     public static double longestSide(Geometry geometry, Point3D a, Point3D b, Point3D c) {
-        return Math.max(Tools.geometricDistance(geometry, a, b), Math.max(Tools.geometricDistance(geometry, a, c), Tools.geometricDistance(geometry, b, b)));
+        return Math.max(Tools.geometricDistance(geometry, a, b), Math.max(Tools.geometricDistance(geometry, a, c), Tools.geometricDistance(geometry, b, c)));
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * MaterialPalette.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling;
+
+import javafx.application.Platform;
+import javafx.scene.paint.PhongMaterial;
+import tegula.main.TilingStyle;
+
+import java.util.ArrayList;
+
+/**
+ * materials shared by all copies of a tiling: one material per tile orbit and one for all bands and caps
+ * Materials are only recolored in the FX application thread
+ */
+public class MaterialPalette {
+    private final ArrayList<PhongMaterial> tileMaterials = new ArrayList<>();
+    private PhongMaterial bandMaterial;
+
+    /**
+     * get the material for the given tile number, creating it, if necessary
+     *
+     * @return material
+     */
+    public synchronized PhongMaterial getTileMaterial(TilingStyle tilingStyle, int tileNumber) {
+        while (tileMaterials.size() < tileNumber)
+            tileMaterials.add(new PhongMaterial(tilingStyle.getTileColor(tileMaterials.size() + 1)));
+        final PhongMaterial material = tileMaterials.get(tileNumber - 1);
+        if (Platform.isFxApplicationThread())
+            material.setDiffuseColor(tilingStyle.getTileColor(tileNumber));
+        return material;
+    }
+
+    /**
+     * get the material for bands and band caps, creating it, if necessary
+     *
+     * @return material
+     */
+    public synchronized PhongMaterial getBandMaterial(TilingStyle tilingStyle) {
+        if (bandMaterial == null)
+            bandMaterial = new PhongMaterial(tilingStyle.getBandColor());
+        else if (Platform.isFxApplicationThread())
+            bandMaterial.setDiffuseColor(tilingStyle.getBandColor());
+        return bandMaterial;
+    }
+
+    /**
+     * recolor all tile materials. Must be called in the FX application thread
+     */
+    public synchronized void updateTileColors(TilingStyle tilingStyle) {
+        for (int t = 1; t <= tileMaterials.size(); t++)
+            tileMaterials.get(t - 1).setDiffuseColor(tilingStyle.getTileColor(t));
+    }
+
+    /**
+     * recolor the band material. Must be called in the FX application thread
+     */
+    public synchronized void updateBandColor(TilingStyle tilingStyle) {
+        if (bandMaterial != null)
+            bandMaterial.setDiffuseColor(tilingStyle.getBandColor());
+    }
+
+    /**
+     * recolor all materials. Must be called in the FX application thread
+     */
+    public void update(TilingStyle tilingStyle) {
+        updateTileColors(tilingStyle);
+        updateBandColor(tilingStyle);
+    }
+}
@@ -68,9 +68,10 @@ public class SphericalTiling extends TilingBase implements TilingCreator {
 
         final Group all = new Group();
         fundPrototype.getChildren().setAll(FundamentalDomain.compute(ds, getfDomain(), tilingStyle));
+        setupBakedCopies();
 
         {
-            final Group group = CopyTiles.apply(fundPrototype);
+            final Group group = instantiateCopy(fundPrototype);
             group.getTransforms().setAll(new Translate());
             all.getChildren().add(group);
         }
@@ -83,13 +84,13 @@ public class SphericalTiling extends TilingBase implements TilingCreator {
             for (Transform g : generators.getTransforms()) {  // Makes copies of fundamental domain by using generators
                 final Point3D ref = g.transform(referencePoint);
                 if (seen.insert(getGeometry(), ref, tolerance)) {
-                    final Group group = CopyTiles.apply(fundPrototype);
+                    final Group group = instantiateCopy(fundPrototype);
                     group.getTransforms().setAll(g);
                     all.getChildren().add(group);
                 }
             }
 
-            while (queue.size() > 0) {
+            while (queue.size() > 0 && !isCanceled()) {
                 if (queue.size() >= 1000) {
                     NotificationManager.showError("Internal error");
                     break;
@@ -101,7 +102,7 @@ public class SphericalTiling extends TilingBase implements TilingCreator {
                         final Transform tg = t.createConcatenation(g);
                         final Point3D ref = tg.transform(referencePoint);
                         if (seen.insert(getGeometry(), ref, tolerance)) {
-                            final Group group = CopyTiles.apply(fundPrototype);
+                            final Group group = instantiateCopy(fundPrototype);
                             group.getTransforms().setAll(tg);
                             all.getChildren().add(group);
                             queue.add(tg);
@@ -112,7 +113,7 @@ public class SphericalTiling extends TilingBase implements TilingCreator {
                         final Transform gt = g.createConcatenation(t);
                         final Point3D ref = gt.transform(referencePoint);
                         if (seen.insert(getGeometry(), ref, tolerance)) {
-                            final Group group = CopyTiles.apply(fundPrototype);
+                            final Group group = instantiateCopy(fundPrototype);
                             group.getTransforms().setAll(gt);
                             all.getChildren().add(group);
                             queue.add(gt);
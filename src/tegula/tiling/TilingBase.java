@@ -24,6 +24,7 @@ import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
 import tegula.core.dsymbols.DSymbol;
 import tegula.core.dsymbols.FDomain;
 import tegula.core.dsymbols.Geometry;
@@ -31,6 +32,7 @@ import tegula.core.dsymbols.OrbifoldGroupName;
 import tegula.geometry.Tools;
 import tegula.main.TilingStyle;
 
+import java.util.ArrayList;
 import java.util.Stack;
 
 /**
@@ -57,6 +59,9 @@ abstract public class TilingBase {
 
     private final BooleanProperty drawFundamentalDomainOnly = new SimpleBooleanProperty(false);
     private int numberOfCopies = 0;
+    private int maxCopies = 0;
+    private volatile boolean canceled = false;
+    private boolean bakedCopies = false;
 
     /**
      * constructor
@@ -159,6 +164,30 @@ abstract public class TilingBase {
         return numberOfCopies;
     }
 
+    /**
+     * the maximum number of copies used by the last computation, 0, if the number of copies is not limited
+     *
+     * @return max copies
+     */
+    public int getMaxCopies() {
+        return maxCopies;
+    }
+
+    protected void setMaxCopies(int maxCopies) {
+        this.maxCopies = maxCopies;
+    }
+
+    /**
+     * request that a computation of the tiling running in the background stops early
+     */
+    public void setCanceled(boolean canceled) {
+        this.canceled = canceled;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
     public Geometry getGeometry() {
         return getfDomain().getGeometry();
     }
@@ -170,4 +199,82 @@ abstract public class TilingBase {
     public Group getFundPrototype() {
         return fundPrototype;
     }
+
+    /**
+     * determines whether copies are baked, call this after setting up the prototype.
+     * Baked copies are empty groups that only carry their transform, the meshes are taken from the prototype
+     */
+    protected void setupBakedCopies() {
+        bakedCopies = tilingStyle.isBakeCopies() && BakedCopies.canBake(fundPrototype);
+    }
+
+    /**
+     * are the copies empty groups that are to be baked into meshes from the prototype?
+     *
+     * @return true, if baked
+     */
+    public boolean isBakedCopies() {
+        return bakedCopies;
+    }
+
+    /**
+     * recomputes the prototype after the shown parts (faces, edges or vertices) or the band width have changed and
+     * replaces the parts of all copies in place, without recomputing the copies. Meshes that have not changed are taken
+     * from the mesh cache of the fundamental domain
+     *
+     * @return false, if the copies have to be recomputed
+     */
+    public boolean updateParts(Group tiles) {
+        if (!updatePrototype())
+            return false;
+        if (!isBakedCopies()) {
+            for (Node node : tiles.getChildren()) {
+                if (node instanceof Group)
+                    replaceParts((Group) node, fundPrototype);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * recomputes the prototype and clears the recycler, whose copies have the old parts
+     *
+     * @return false, if the copies can no longer be baked, or can now be baked
+     */
+    protected boolean updatePrototype() {
+        final boolean wasBaked = isBakedCopies();
+        fundPrototype.getChildren().setAll(FundamentalDomain.compute(ds, getfDomain(), tilingStyle));
+        setupBakedCopies();
+        recycler.clear();
+        return isBakedCopies() == wasBaked;
+    }
+
+    /**
+     * replaces the parts of a copy by those of the prototype, keeping the transform of the copy
+     */
+    protected static void replaceParts(Group copy, Group prototype) {
+        final Group instance = CopyTiles.instantiate(prototype);
+        final ArrayList<Node> parts = new ArrayList<>(instance.getChildren());
+        instance.getChildren().clear();
+        copy.getChildren().setAll(parts);
+    }
+
+    /**
+     * the transform to be applied to the group containing all copies, which is the identity, unless a tiling moves all
+     * copies by one common transform
+     *
+     * @return transform
+     */
+    public Transform getTilesTransform() {
+        return new Translate();
+    }
+
+    /**
+     * instantiates a copy of the given prototype, or an empty group, if copies are baked
+     *
+     * @return copy
+     */
+    protected Group instantiateCopy(Group prototype) {
+        return bakedCopies ? new Group() : CopyTiles.instantiate(prototype);
+    }
 }
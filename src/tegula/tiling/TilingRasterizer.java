@@ -0,0 +1,379 @@
+/*
+ * TilingRasterizer.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling;
+
+import javafx.geometry.Point3D;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Transform;
+import jloda.fx.util.ArgsOptions;
+import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
+import tegula.core.dsymbols.DSymbol;
+import tegula.core.dsymbols.DSymbolAlgorithms;
+import tegula.core.dsymbols.FDomain;
+import tegula.core.dsymbols.Geometry;
+import tegula.geometry.Tools;
+import tegula.main.TilingStyle;
+import tegula.tiling.parts.OctTree;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * draws tilings into images using Java2D, without JavaFX scenes, so that images can be computed in any thread and without a display.
+ * A Euclidean tiling is shown in a window around the fundamental domain, a hyperbolic tiling in the Poincare disk
+ * and a spherical tiling in orthographic projection
+ */
+public class TilingRasterizer {
+    private static final int CurvedSamples = 6; // points per half-side of a chamber, in the curved geometries
+
+    /**
+     * draws all tilings in a file to PNG files, for example to prepare previews offline
+     */
+    public static void main(String[] args) throws Exception {
+        final ArgsOptions options = new ArgsOptions(args, TilingRasterizer.class, "Draws tilings to PNG files");
+        options.comment("Input and output:");
+        final String inputFile = options.getOptionMandatory("-i", "input", "Input file containing Delaney-Dress symbols", "");
+        final String outputDirectory = options.getOption("-o", "output", "Output directory", ".");
+        options.comment("Options:");
+        final int size = options.getOption("-s", "size", "Width and height of images", 400);
+        options.done();
+
+        final ArrayList<DSymbol> dSymbols = new ArrayList<>();
+        for (String line : FileUtils.getLinesFromFile(inputFile)) {
+            if (line.startsWith("<"))
+                dSymbols.add(new DSymbol(line));
+        }
+        final TilingStyle tilingStyle = new TilingStyle();
+        final long start = System.currentTimeMillis();
+        final int count = exportImages(dSymbols, tilingStyle, size, new File(outputDirectory), FileUtils.replaceFileSuffix(FileUtils.getFileNameWithoutPath(inputFile), ""));
+        System.err.printf("Images written: %,d (%.1fs)%n", count, (System.currentTimeMillis() - start) / 1000.0);
+    }
+
+    /**
+     * draws a tiling
+     *
+     * @param size width and height of the image
+     * @return image
+     */
+    public static BufferedImage apply(DSymbol dSymbol, TilingStyle tilingStyle, int size) {
+        final FDomain fDomain = new FDomain(dSymbol, tilingStyle.isBendAnEdge());
+        final Geometry geometry = fDomain.getGeometry();
+        final View view = new View(geometry, fDomain, size);
+
+        // the boundary of each chamber: v0, e2, v1, e0, v2, e1. The first two half-sides are half of an edge of the tiling
+        final int samples = (geometry == Geometry.Euclidean ? 1 : CurvedSamples);
+        final double[][] a2boundary = new double[dSymbol.size() + 1][];
+        final double[][] a2center = new double[dSymbol.size() + 1][];
+        for (int a = 1; a <= dSymbol.size(); a++) {
+            final Point3D[] corners = {fDomain.getVertex3D(0, a), fDomain.getEdgeCenter3D(2, a), fDomain.getVertex3D(1, a),
+                    fDomain.getEdgeCenter3D(0, a), fDomain.getVertex3D(2, a), fDomain.getEdgeCenter3D(1, a)};
+            final double[] boundary = new double[3 * 6 * samples];
+            for (int k = 0; k < 6; k++) {
+                final Point3D p = corners[k];
+                final Point3D q = corners[(k + 1) % 6];
+                for (int j = 0; j < samples; j++) {
+                    interpolate(geometry, p, q, (double) j / samples, boundary, 3 * (k * samples + j));
+                }
+            }
+            a2boundary[a] = boundary;
+            final Point3D center = fDomain.getChamberCenter3D(a);
+            a2center[a] = new double[]{center.getX(), center.getY(), center.getZ()};
+        }
+
+        final ArrayList<Transform> copies = computeCopies(fDomain, view, tilingStyle);
+
+        final int[] a2tile = dSymbol.computeOrbits(0, 1);
+        final java.awt.Color[] tileColors = new java.awt.Color[dSymbol.size() + 1];
+        for (int a = 1; a <= dSymbol.size(); a++) {
+            tileColors[a] = toAWT(tilingStyle.getTileColor(a2tile[a]));
+        }
+
+        final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(toAWT(tilingStyle.getBackgroundColor()));
+            g.fillRect(0, 0, size, size);
+
+            final double[] points = new double[3 * 6 * samples];
+            final double[] center = new double[3];
+
+            if (tilingStyle.isShowFaces()) {
+                // adjacent chambers of a tile are filled without anti-aliasing, so that no seams appear between them
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+                for (Transform transform : copies) {
+                    for (int a = 1; a <= dSymbol.size(); a++) {
+                        if (view.isVisible(transform(transform, a2center[a], 0, center, 0, 1))) {
+                            transform(transform, a2boundary[a], 0, points, 0, 6 * samples);
+                            g.setColor(tileColors[a]);
+                            g.fill(view.createPath(points, 0, 6 * samples, true));
+                        }
+                    }
+                }
+            }
+
+            if (tilingStyle.isShowEdges() || tilingStyle.isShowVertices()) {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setColor(toAWT(tilingStyle.getBandColor()));
+                final double bandWidth = 0.2 * tilingStyle.getBandWidth();
+                for (Transform transform : copies) {
+                    final float width = (float) Math.max(0.5, view.getPixels(transform, bandWidth));
+                    g.setStroke(new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                    for (int a = 1; a <= dSymbol.size(); a++) {
+                        // each half-edge is shared by chambers a and s2(a), draw it once
+                        if (a <= dSymbol.getS2(a) && view.isVisible(transform(transform, a2center[a], 0, center, 0, 1))) {
+                            transform(transform, a2boundary[a], 0, points, 0, 2 * samples + 1);
+                            if (tilingStyle.isShowEdges())
+                                g.draw(view.createPath(points, 0, 2 * samples + 1, false));
+                            if (tilingStyle.isShowVertices()) {
+                                final double x = view.getX(points, 0), y = view.getY(points, 0);
+                                g.fill(new Ellipse2D.Double(x - width, y - width, 2 * width, 2 * width));
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * draws all given tilings and writes them as PNG files to the given directory, using all cores
+     *
+     * @param prefix file names are prefix-nr1.nr2.png
+     * @return number of files written
+     */
+    public static int exportImages(Collection<DSymbol> dSymbols, TilingStyle tilingStyle, int size, File directory, String prefix) throws IOException {
+        final ArrayList<IOException> exceptions = new ArrayList<>();
+        final int count = (int) dSymbols.parallelStream().filter(dSymbol -> {
+            final TilingStyle style = new TilingStyle(tilingStyle);
+            style.setBendAnEdge(!DSymbolAlgorithms.isMaximalSymmetry(dSymbol)); // as in the previews
+            try {
+                ImageIO.write(apply(dSymbol, style, size), "png", new File(directory, prefix + "-" + dSymbol.getNr1() + "." + dSymbol.getNr2() + ".png"));
+                return true;
+            } catch (IOException e) {
+                synchronized (exceptions) {
+                    exceptions.add(e);
+                }
+                return false;
+            }
+        }).count();
+        if (exceptions.size() > 0)
+            throw exceptions.get(0);
+        return count;
+    }
+
+    /**
+     * determines all copies of the fundamental domain that are visible, by a breadth-first search on the generators
+     *
+     * @return transforms of the copies
+     */
+    private static ArrayList<Transform> computeCopies(FDomain fDomain, View view, TilingStyle tilingStyle) {
+        final Geometry geometry = fDomain.getGeometry();
+        final Generators generators = fDomain.getGenerators();
+        final Point3D referencePoint = fDomain.computeReferencePoint();
+        final double tolerance = TilingBase.computeTolerance(geometry, referencePoint, generators);
+        final int maxCopies = ProgramProperties.get("RasterMaxCopies", 5000);
+        final double maxZ = Math.cosh(0.5 * tilingStyle.getHyperbolicLimit()); // as in the hyperbolic tiling
+
+        final ArrayList<Transform> copies = new ArrayList<>();
+        final OctTree seen = new OctTree();
+        final Queue<Transform> queue = new LinkedList<>();
+        final Transform identity = new Affine();
+        seen.insert(geometry, referencePoint, tolerance);
+        queue.add(identity);
+
+        while (queue.size() > 0 && copies.size() < maxCopies) {
+            final Transform t = queue.poll();
+            copies.add(t);
+            for (Transform generator : generators.getTransforms()) {
+                final Transform tg = t.createConcatenation(generator);
+                final Point3D ref = tg.transform(referencePoint);
+                final boolean inRange;
+                switch (geometry) {
+                    case Euclidean:
+                        inRange = view.isInWindow(ref);
+                        break;
+                    case Hyperbolic:
+                        inRange = ref.getZ() < maxZ;
+                        break;
+                    default:
+                        inRange = true;
+                }
+                if (inRange && seen.insert(geometry, ref, tolerance))
+                    queue.add(tg);
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * interpolates between two points of the fundamental domain (scaled with 100), along the geodesic
+     */
+    private static void interpolate(Geometry geometry, Point3D p, Point3D q, double pos, double[] result, int offset) {
+        double x = (1 - pos) * p.getX() + pos * q.getX();
+        double y = (1 - pos) * p.getY() + pos * q.getY();
+        double z = (1 - pos) * p.getZ() + pos * q.getZ();
+        if (geometry == Geometry.Hyperbolic) {
+            final Point3D apt = Tools.interpolateHyperbolicPoints(p, q, pos);
+            x = apt.getX();
+            y = apt.getY();
+            z = apt.getZ();
+        } else if (geometry == Geometry.Spherical) {
+            final double f = 100 / Math.sqrt(x * x + y * y + z * z);
+            x *= f;
+            y *= f;
+            z *= f;
+        }
+        result[offset] = x;
+        result[offset + 1] = y;
+        result[offset + 2] = z;
+    }
+
+    /**
+     * applies a transform to points given as x,y,z
+     *
+     * @return target
+     */
+    private static double[] transform(Transform transform, double[] source, int sourceOffset, double[] target, int targetOffset, int count) {
+        final double mxx = transform.getMxx(), mxy = transform.getMxy(), mxz = transform.getMxz(), tx = transform.getTx();
+        final double myx = transform.getMyx(), myy = transform.getMyy(), myz = transform.getMyz(), ty = transform.getTy();
+        final double mzx = transform.getMzx(), mzy = transform.getMzy(), mzz = transform.getMzz(), tz = transform.getTz();
+        for (int i = 0; i < count; i++) {
+            final int s = 3 * (sourceOffset + i), t = 3 * (targetOffset + i);
+            final double x = source[s], y = source[s + 1], z = source[s + 2];
+            target[t] = mxx * x + mxy * y + mxz * z + tx;
+            target[t + 1] = myx * x + myy * y + myz * z + ty;
+            target[t + 2] = mzx * x + mzy * y + mzz * z + tz;
+        }
+        return target;
+    }
+
+    private static java.awt.Color toAWT(Color color) {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(), (float) color.getOpacity());
+    }
+
+    /**
+     * maps points (scaled with 100) to pixels
+     */
+    private static class View {
+        private final Geometry geometry;
+        private final double half; // half the size of the image
+        private final double scale; // Euclidean: pixels per unit, otherwise: radius of disk in pixels
+        private final double centerX;
+        private final double centerY;
+        private final double margin; // Euclidean: extent of the fundamental domain in units
+
+        View(Geometry geometry, FDomain fDomain, int size) {
+            this.geometry = geometry;
+            this.half = 0.5 * size;
+            if (geometry == Geometry.Euclidean) {
+                final Point3D referencePoint = fDomain.computeReferencePoint();
+                centerX = referencePoint.getX();
+                centerY = referencePoint.getY();
+                margin = 100 * Math.max(fDomain.getBoundingBox().getWidth(), fDomain.getBoundingBox().getHeight());
+                scale = size / ProgramProperties.get("RasterEuclideanWindow", 400.0);
+            } else {
+                centerX = 0;
+                centerY = 0;
+                margin = 0;
+                scale = 0.98 * half;
+            }
+        }
+
+        double getX(double[] points, int i) {
+            switch (geometry) {
+                case Euclidean:
+                    return half + scale * (points[3 * i] - centerX);
+                case Hyperbolic:
+                    return half + scale * points[3 * i] / (100 + points[3 * i + 2]);
+                default:
+                    return half + scale * 0.01 * points[3 * i];
+            }
+        }
+
+        double getY(double[] points, int i) {
+            switch (geometry) {
+                case Euclidean:
+                    return half + scale * (points[3 * i + 1] - centerY);
+                case Hyperbolic:
+                    return half + scale * points[3 * i + 1] / (100 + points[3 * i + 2]);
+                default:
+                    return half + scale * 0.01 * points[3 * i + 1];
+            }
+        }
+
+        /**
+         * is the point on the visible side? Only the half of the sphere that faces the viewer is visible
+         */
+        boolean isVisible(double[] point) {
+            return geometry != Geometry.Spherical || point[2] <= 0;
+        }
+
+        /**
+         * is the reference point of a Euclidean copy close enough to the window?
+         */
+        boolean isInWindow(Point3D point) {
+            final double limit = half / scale + margin;
+            return Math.abs(point.getX() - centerX) <= limit && Math.abs(point.getY() - centerY) <= limit;
+        }
+
+        /**
+         * converts a length near the reference point of the given copy into pixels
+         */
+        double getPixels(Transform transform, double length) {
+            switch (geometry) {
+                case Euclidean:
+                    return scale * length;
+                case Hyperbolic: {
+                    // the Poincare disk shrinks lengths by (1-r^2)/2, relative to the unit hyperboloid
+                    final double[] point = transform(transform, new double[]{0, 0, 100}, 0, new double[3], 0, 1);
+                    final double x = point[0] / (100 + point[2]), y = point[1] / (100 + point[2]);
+                    return scale * 0.01 * length * 0.5 * (1 - (x * x + y * y));
+                }
+                default:
+                    return scale * 0.01 * length;
+            }
+        }
+
+        Path2D createPath(double[] points, int offset, int count, boolean close) {
+            final Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, count + 1);
+            path.moveTo(getX(points, offset), getY(points, offset));
+            for (int i = 1; i < count; i++) {
+                path.lineTo(getX(points, offset + i), getY(points, offset + i));
+            }
+            if (close)
+                path.closePath();
+            return path;
+        }
+    }
+}
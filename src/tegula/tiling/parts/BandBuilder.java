@@ -0,0 +1,451 @@
+/*
+ * BandBuilder.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tegula.tiling.parts;
+
+import javafx.scene.shape.TriangleMesh;
+import tegula.core.dsymbols.Geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * builds the bands of all edges of a fundamental domain in one pass.
+ * Polylines are given as flat coordinate arrays x0,y0,z0,x1,y1,z1,... and are grouped, one group per mesh.
+ * All band segments and round caps are written into one preallocated point buffer and one face buffer,
+ * without creating and merging a small mesh for every piece
+ */
+public class BandBuilder {
+    private final Geometry geom;
+    private final double nudgeAbove;
+    private final int capFineness;
+
+    private final ArrayList<double[]> polylines = new ArrayList<>();
+    private final ArrayList<Double> widths = new ArrayList<>();
+    private final ArrayList<Integer> groupStarts = new ArrayList<>(); // index of first polyline of each group
+
+    private float[] points;
+    private int[] faces;
+    private int numberOfPoints;
+    private int numberOfFaces;
+    private int[] groupPoints; // first point and first face of each group, plus sentinel
+    private int[] groupFaces;
+
+    // positions on the unit circle used for caps:
+    private final double[] cos;
+    private final double[] sin;
+
+    /**
+     * constructor
+     *
+     * @param geom        geometry
+     * @param nudgeAbove  distance by which bands are moved along the normal of the surface
+     * @param capFineness number of points used for round caps, 0 for no caps
+     */
+    public BandBuilder(Geometry geom, double nudgeAbove, int capFineness) {
+        this.geom = geom;
+        this.nudgeAbove = nudgeAbove;
+        this.capFineness = Math.max(0, capFineness);
+        cos = new double[this.capFineness];
+        sin = new double[this.capFineness];
+        for (int n = 0; n < this.capFineness; n++) {
+            cos[n] = Math.cos(2 * Math.PI * n / this.capFineness);
+            sin[n] = Math.sin(2 * Math.PI * n / this.capFineness);
+        }
+    }
+
+    /**
+     * starts a new group, all polylines added until the next call belong to the same mesh
+     *
+     * @return index of the group
+     */
+    public int startGroup() {
+        groupStarts.add(polylines.size());
+        return groupStarts.size() - 1;
+    }
+
+    /**
+     * adds a polyline to the current group
+     *
+     * @param xyz   coordinates, three per point
+     * @param width half the width of the band
+     */
+    public void addPolyline(double[] xyz, double width) {
+        if (groupStarts.size() == 0)
+            startGroup();
+        polylines.add(xyz);
+        widths.add(width);
+    }
+
+    /**
+     * computes all bands. Buffers are allocated once, for the largest possible number of caps
+     */
+    public void build() {
+        int maxPoints = 0;
+        int maxFaces = 0;
+        for (double[] xyz : polylines) {
+            final int n = xyz.length / 3;
+            if (n >= 2) {
+                maxPoints += 6 * (n - 1) + n * capFineness;
+                maxFaces += 4 * (n - 1) + n * capFineness;
+            }
+        }
+        points = new float[3 * maxPoints];
+        faces = new int[6 * maxFaces];
+        numberOfPoints = 0;
+        numberOfFaces = 0;
+
+        final int numberOfGroups = groupStarts.size();
+        groupPoints = new int[numberOfGroups + 1];
+        groupFaces = new int[numberOfGroups + 1];
+
+        for (int g = 0; g < numberOfGroups; g++) {
+            groupPoints[g] = numberOfPoints;
+            groupFaces[g] = numberOfFaces;
+            final int end = (g + 1 < numberOfGroups ? groupStarts.get(g + 1) : polylines.size());
+            for (int p = groupStarts.get(g); p < end; p++) {
+                addBand(polylines.get(p), widths.get(p), groupPoints[g]);
+            }
+        }
+        groupPoints[numberOfGroups] = numberOfPoints;
+        groupFaces[numberOfGroups] = numberOfFaces;
+    }
+
+    /**
+     * number of groups
+     */
+    public int getNumberOfGroups() {
+        return groupStarts.size();
+    }
+
+    /**
+     * gets the mesh for a group, build() must have been called
+     *
+     * @return mesh
+     */
+    public TriangleMesh getMesh(int group) {
+        final TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(points, 3 * groupPoints[group], 3 * (groupPoints[group + 1] - groupPoints[group]));
+        mesh.getFaces().setAll(faces, 6 * groupFaces[group], 6 * (groupFaces[group + 1] - groupFaces[group]));
+        final int[] smoothing = new int[groupFaces[group + 1] - groupFaces[group]];
+        Arrays.fill(smoothing, 1);
+        mesh.getFaceSmoothingGroups().setAll(smoothing);
+        MeshUtils.setDefaultTexCoordinates(mesh);
+        return mesh;
+    }
+
+    /**
+     * writes the band for one polyline. Face indices are relative to the first point of the group
+     */
+    private void addBand(double[] xyz, double width, int base) {
+        final int n = xyz.length / 3;
+        if (n < 2)
+            return;
+
+        // points of a segment:
+        // |2|----------|4|
+        // |0|----------|1|
+        // |3|----------|5|
+        final double[] segment = new double[18];
+        final double[] tangent = new double[3];
+        final double[] previous = new double[6]; // points 4 and 5 of previous segment
+        int previous1 = -1, previous4 = -1, previous5 = -1;
+
+        for (int pos = 0; pos + 1 < n; pos++) {
+            final int i0 = 3 * pos;
+            final int i1 = 3 * (pos + 1);
+
+            switch (geom) {
+                case Euclidean:
+                    computeEuclideanSegment(xyz, i0, i1, width, segment, tangent);
+                    break;
+                case Spherical:
+                    computeSphericalSegment(xyz, i0, i1, width, segment);
+                    break;
+                case Hyperbolic:
+                    computeHyperbolicSegment(xyz, i0, i1, width, segment);
+                    break;
+            }
+
+            final boolean gap = (pos == 0 || distance(previous, 0, segment, 6) > 0.0001 || distance(previous, 3, segment, 9) > 0.0001);
+
+            final int v0 = (previous1 != -1 ? previous1 : addPoint(segment, 0));
+            final int v1 = addPoint(segment, 3);
+            final int v2 = (gap ? addPoint(segment, 6) : previous4);
+            final int v3 = (gap ? addPoint(segment, 9) : previous5);
+            final int v4 = addPoint(segment, 12);
+            final int v5 = addPoint(segment, 15);
+
+            if (geom == Geometry.Euclidean) {
+                addFace(base, v2, v1, v4);
+                addFace(base, v2, v0, v1);
+                addFace(base, v0, v5, v1);
+                addFace(base, v0, v3, v5);
+            } else {
+                addFace(base, v2, v4, v1);
+                addFace(base, v2, v1, v0);
+                addFace(base, v0, v1, v5);
+                addFace(base, v0, v5, v3);
+            }
+
+            if (capFineness > 0) {
+                // orientation of caps, this only determines the phase of the circle points:
+                if (gap) {
+                    if (geom == Geometry.Euclidean)
+                        addCap(xyz, i0, v0, tangent[0], tangent[1], tangent[2], width, base);
+                    else if (geom == Geometry.Spherical)
+                        addCap(xyz, i0, v0, 0, xyz[i0 + 2], -xyz[i0 + 1], width, base);
+                    else
+                        addCap(xyz, i0, v0, xyz[i1] - xyz[i0], xyz[i1 + 1] - xyz[i0 + 1], xyz[i1 + 2] - xyz[i0 + 2], width, base);
+                }
+                if (pos + 2 == n) {
+                    if (geom == Geometry.Euclidean)
+                        addCap(xyz, i1, v1, tangent[0], tangent[1], tangent[2], width, base);
+                    else if (geom == Geometry.Spherical)
+                        addCap(xyz, i1, v1, 0, xyz[i1 + 2], -xyz[i1 + 1], width, base);
+                    else
+                        addCap(xyz, i1, v1, xyz[i0] + xyz[i1], xyz[i0 + 1] + xyz[i1 + 1], xyz[i0 + 2] + xyz[i1 + 2], width, base);
+                }
+            }
+            System.arraycopy(segment, 12, previous, 0, 6);
+            previous1 = v1;
+            previous4 = v4;
+            previous5 = v5;
+        }
+    }
+
+    private void computeEuclideanSegment(double[] xyz, int i0, int i1, double width, double[] segment, double[] tangent) {
+        final double dx = xyz[i1] - xyz[i0];
+        final double dy = xyz[i1 + 1] - xyz[i0 + 1];
+        final double dz = xyz[i1 + 2] - xyz[i0 + 2];
+        final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        tangent[0] = dx / length;
+        tangent[1] = dy / length;
+        tangent[2] = dz / length;
+
+        // direction crossed with z-axis:
+        final double normalLength = Math.sqrt(dy * dy + dx * dx);
+        final double nx = width * dy / normalLength;
+        final double ny = -width * dx / normalLength;
+
+        for (int k = 0; k < 2; k++) {
+            final int i = (k == 0 ? i0 : i1);
+            final int s = 3 * k;
+            set(segment, s, xyz[i], xyz[i + 1], xyz[i + 2] + nudgeAbove);
+            set(segment, 6 + 6 * k, xyz[i] + nx, xyz[i + 1] + ny, xyz[i + 2] + nudgeAbove);
+            set(segment, 9 + 6 * k, xyz[i] - nx, xyz[i + 1] - ny, xyz[i + 2] + nudgeAbove);
+        }
+    }
+
+    private void computeSphericalSegment(double[] xyz, int i0, int i1, double width, double[] segment) {
+        double dx = xyz[i1] - xyz[i0];
+        double dy = xyz[i1 + 1] - xyz[i0 + 1];
+        double dz = xyz[i1 + 2] - xyz[i0 + 2];
+        final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        dx /= length;
+        dy /= length;
+        dz /= length;
+
+        final double r0 = norm(xyz, i0);
+        final double ax = xyz[i0] / r0, ay = xyz[i0 + 1] / r0, az = xyz[i0 + 2] / r0;
+
+        // direction crossed with normal of sphere at first point, used at both ends:
+        final double nx = width * (dy * az - dz * ay);
+        final double ny = width * (dz * ax - dx * az);
+        final double nz = width * (dx * ay - dy * ax);
+
+        for (int k = 0; k < 2; k++) {
+            final int i = (k == 0 ? i0 : i1);
+            final int s = 3 * k;
+            final double r = norm(xyz, i);
+            final double ux = nudgeAbove * xyz[i] / r, uy = nudgeAbove * xyz[i + 1] / r, uz = nudgeAbove * xyz[i + 2] / r;
+            set(segment, s, xyz[i] + ux, xyz[i + 1] + uy, xyz[i + 2] + uz);
+            set(segment, 6 + 6 * k, xyz[i] + nx + ux, xyz[i + 1] + ny + uy, xyz[i + 2] + nz + uz);
+            set(segment, 9 + 6 * k, xyz[i] - nx + ux, xyz[i + 1] - ny + uy, xyz[i + 2] - nz + uz);
+        }
+    }
+
+    /**
+     * in the hyperbolic case, the side points are obtained by moving the end points orthogonally to the segment,
+     * along geodesics of the hyperboloid
+     */
+    private void computeHyperbolicSegment(double[] xyz, int i0, int i1, double width, double[] segment) {
+        final double d = 0.01 * width;
+        final double cosh = Math.cosh(d);
+        final double sinh = Math.sinh(d);
+
+        for (int k = 0; k < 2; k++) {
+            final int i = (k == 0 ? i0 : i1);
+            final int j = (k == 0 ? i1 : i0);
+            final double sign = (k == 0 ? 1 : -1); // direction of segment at the point
+
+            // point on unit hyperboloid:
+            final double px = 0.01 * xyz[i], py = 0.01 * xyz[i + 1], pz = 0.01 * xyz[i + 2];
+            // unit tangent in direction of the other end point:
+            final double qx = 0.01 * xyz[j], qy = 0.01 * xyz[j + 1], qz = 0.01 * xyz[j + 2];
+            final double pq = px * qx + py * qy - pz * qz;
+            double tx = qx + pq * px, ty = qy + pq * py, tz = qz + pq * pz;
+            final double tLength = Math.sqrt(Math.max(1e-30, tx * tx + ty * ty - tz * tz));
+            tx *= sign / tLength;
+            ty *= sign / tLength;
+            tz *= sign / tLength;
+            // unit tangent orthogonal to the segment, pointing to its left:
+            final double nx = py * tz - pz * ty;
+            final double ny = pz * tx - px * tz;
+            final double nz = -(px * ty - py * tx);
+
+            final int s = 3 * k;
+            set(segment, s, xyz[i], xyz[i + 1], xyz[i + 2]);
+            set(segment, 6 + 6 * k, 100 * (cosh * px + sinh * nx), 100 * (cosh * py + sinh * ny), 100 * (cosh * pz + sinh * nz));
+            set(segment, 9 + 6 * k, 100 * (cosh * px - sinh * nx), 100 * (cosh * py - sinh * ny), 100 * (cosh * pz - sinh * nz));
+        }
+        for (int s = 0; s < 18; s += 3) {
+            nudgeHyperbolic(segment, s);
+        }
+    }
+
+    /**
+     * adds a round cap around the given point, which has already been added as point center
+     */
+    private void addCap(double[] xyz, int i, int center, double tx, double ty, double tz, double radius, int base) {
+        final int first = numberOfPoints;
+        final double cx = xyz[i], cy = xyz[i + 1], cz = xyz[i + 2];
+        final double[] point = new double[3];
+
+        if (geom == Geometry.Hyperbolic) {
+            final double r = 0.01 * radius;
+            final double cosh = Math.cosh(r);
+            final double sinh = Math.sinh(r);
+            final double px = 0.01 * cx, py = 0.01 * cy, pz = 0.01 * cz;
+            // project orientation onto tangent plane and normalize:
+            final double pt = px * tx + py * ty - pz * tz;
+            double ux = tx + pt * px, uy = ty + pt * py, uz = tz + pt * pz;
+            double uLength = ux * ux + uy * uy - uz * uz;
+            if (uLength < 1e-20) { // orientation not usable, use any tangent
+                ux = pz;
+                uy = 0;
+                uz = px;
+                uLength = ux * ux - uz * uz;
+            }
+            uLength = Math.sqrt(uLength);
+            ux /= uLength;
+            uy /= uLength;
+            uz /= uLength;
+            final double vx = py * uz - pz * uy;
+            final double vy = pz * ux - px * uz;
+            final double vz = -(px * uy - py * ux);
+
+            for (int n = 0; n < capFineness; n++) {
+                point[0] = 100 * (cosh * px + sinh * (cos[n] * ux + sin[n] * vx));
+                point[1] = 100 * (cosh * py + sinh * (cos[n] * uy + sin[n] * vy));
+                point[2] = 100 * (cosh * pz + sinh * (cos[n] * uz + sin[n] * vz));
+                nudgeHyperbolic(point, 0);
+                addPoint(point, 0);
+            }
+        } else {
+            // normal of surface at center:
+            final double nx, ny, nz;
+            if (geom == Geometry.Spherical) {
+                final double r = Math.sqrt(cx * cx + cy * cy + cz * cz);
+                nx = cx / r;
+                ny = cy / r;
+                nz = cz / r;
+            } else {
+                nx = 0;
+                ny = 0;
+                nz = 1;
+            }
+            double tLength = Math.sqrt(tx * tx + ty * ty + tz * tz);
+            if (tLength < 1e-10) { // orientation not usable, use any tangent
+                tx = -nz;
+                ty = 0;
+                tz = nx;
+                tLength = Math.sqrt(tx * tx + tz * tz);
+            }
+            final double ux = tx / tLength, uy = ty / tLength, uz = tz / tLength;
+            double vx = ny * uz - nz * uy, vy = nz * ux - nx * uz, vz = nx * uy - ny * ux;
+            final double vLength = Math.sqrt(vx * vx + vy * vy + vz * vz);
+            vx /= vLength;
+            vy /= vLength;
+            vz /= vLength;
+
+            for (int n = 0; n < capFineness; n++) {
+                final double x = cx + radius * (cos[n] * ux + sin[n] * vx);
+                final double y = cy + radius * (cos[n] * uy + sin[n] * vy);
+                final double z = cz + radius * (cos[n] * uz + sin[n] * vz);
+                if (geom == Geometry.Spherical) {
+                    final double r = Math.sqrt(x * x + y * y + z * z);
+                    set(point, 0, x + nudgeAbove * x / r, y + nudgeAbove * y / r, z + nudgeAbove * z / r);
+                } else
+                    set(point, 0, x, y, z + nudgeAbove);
+                addPoint(point, 0);
+            }
+        }
+
+        // fan around center, oriented as in BandCap3D.CircleMesh:
+        for (int n = 0; n < capFineness; n++) {
+            final int a = first + n;
+            final int b = (n + 1 < capFineness ? a + 1 : first);
+            if (geom == Geometry.Spherical)
+                addFace(base, center, a, b);
+            else
+                addFace(base, center, b, a);
+        }
+    }
+
+    private void nudgeHyperbolic(double[] array, int s) {
+        final double x = array[s], y = array[s + 1], z = array[s + 2];
+        final double length = Math.sqrt(x * x + y * y + z * z);
+        array[s] += nudgeAbove * x / length;
+        array[s + 1] += nudgeAbove * y / length;
+        array[s + 2] -= nudgeAbove * z / length;
+    }
+
+    private int addPoint(double[] array, int s) {
+        final int i = 3 * numberOfPoints;
+        points[i] = (float) array[s];
+        points[i + 1] = (float) array[s + 1];
+        points[i + 2] = (float) array[s + 2];
+        return numberOfPoints++;
+    }
+
+    private void addFace(int base, int a, int b, int c) {
+        final int i = 6 * numberOfFaces++;
+        faces[i] = a - base;
+        faces[i + 1] = 0;
+        faces[i + 2] = b - base;
+        faces[i + 3] = 1;
+        faces[i + 4] = c - base;
+        faces[i + 5] = 2;
+    }
+
+    private static void set(double[] array, int s, double x, double y, double z) {
+        array[s] = x;
+        array[s + 1] = y;
+        array[s + 2] = z;
+    }
+
+    private static double norm(double[] array, int s) {
+        return Math.sqrt(array[s] * array[s] + array[s + 1] * array[s + 1] + array[s + 2] * array[s + 2]);
+    }
+
+    private static double distance(double[] a, int i, double[] b, int j) {
+        final double dx = a[i] - b[j], dy = a[i + 1] - b[j + 1], dz = a[i + 2] - b[j + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * EdgeMap.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling.parts;
+
+import java.util.Arrays;
+
+/**
+ * maps undirected edges, given by the indices of their two end points, to int values.
+ * Uses open addressing on primitive long keys, so that lookups don't box
+ */
+public class EdgeMap {
+    private long[] keys; // -1, if slot is empty
+    private int[] values;
+    private int size;
+
+    /**
+     * constructor
+     *
+     * @param expectedSize expected number of edges
+     */
+    public EdgeMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < 2 * expectedSize)
+            capacity <<= 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, -1L);
+    }
+
+    /**
+     * gets the value of an edge
+     *
+     * @return value or Integer.MIN_VALUE, if the edge is not present
+     */
+    public int get(int a, int b) {
+        final long key = computeKey(a, b);
+        for (int slot = computeSlot(key, keys.length); keys[slot] != -1L; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key)
+                return values[slot];
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * sets the value of an edge
+     */
+    public void put(int a, int b, int value) {
+        final long key = computeKey(a, b);
+        int slot = computeSlot(key, keys.length);
+        while (keys[slot] != -1L) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (2 * ++size > keys.length)
+            grow();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new int[2 * oldKeys.length];
+        Arrays.fill(keys, -1L);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != -1L) {
+                int slot = computeSlot(oldKeys[i], keys.length);
+                while (keys[slot] != -1L)
+                    slot = (slot + 1) & (keys.length - 1);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static long computeKey(int a, int b) {
+        return (a < b ? ((long) a << 32) | b : ((long) b << 32) | a);
+    }
+
+    private static int computeSlot(long key, int capacity) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & (capacity - 1);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * EdgeSubdivision.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling.parts;
+
+/**
+ * subdivision of triangles by recursively splitting their edges. Subclasses decide which edges are split and where.
+ * The decision only depends on the two end points of an edge, so triangles that share an edge are subdivided consistently
+ */
+public abstract class EdgeSubdivision {
+    private static final int MAX_DEPTH = 12;
+
+    private final EdgeMap edge2midpoint = new EdgeMap(64); // -1, if edge is not split
+
+    /**
+     * adds a triangle and subdivides it as required. Orientation is preserved
+     */
+    public void addTriangle(int a, int b, int c) {
+        addTriangle(a, b, c, 0);
+    }
+
+    private void addTriangle(int a, int b, int c, int depth) {
+        if (depth == MAX_DEPTH) { // only reached by very thin triangles
+            addFace(a, b, c);
+            return;
+        }
+        final int ab = getMidpoint(a, b);
+        final int bc = getMidpoint(b, c);
+        final int ca = getMidpoint(c, a);
+
+        if (ab != -1 && bc != -1 && ca != -1) {
+            addTriangle(a, ab, ca, depth + 1);
+            addTriangle(ab, b, bc, depth + 1);
+            addTriangle(ca, bc, c, depth + 1);
+            addTriangle(ab, bc, ca, depth + 1);
+        } else if (ab != -1 && bc != -1) {
+            addTriangle(ab, b, bc, depth + 1);
+            addTriangle(a, ab, bc, depth + 1);
+            addTriangle(a, bc, c, depth + 1);
+        } else if (bc != -1 && ca != -1) {
+            addTriangle(bc, c, ca, depth + 1);
+            addTriangle(b, bc, ca, depth + 1);
+            addTriangle(b, ca, a, depth + 1);
+        } else if (ca != -1 && ab != -1) {
+            addTriangle(ca, a, ab, depth + 1);
+            addTriangle(c, ca, ab, depth + 1);
+            addTriangle(c, ab, b, depth + 1);
+        } else if (ab != -1) {
+            addTriangle(a, ab, c, depth + 1);
+            addTriangle(ab, b, c, depth + 1);
+        } else if (bc != -1) {
+            addTriangle(b, bc, a, depth + 1);
+            addTriangle(bc, c, a, depth + 1);
+        } else if (ca != -1) {
+            addTriangle(c, ca, b, depth + 1);
+            addTriangle(ca, a, b, depth + 1);
+        } else
+            addFace(a, b, c);
+    }
+
+    /**
+     * gets the midpoint of an edge, creating it, if the edge needs to be split
+     *
+     * @return index of midpoint or -1, if the edge is not split
+     */
+    protected int getMidpoint(int a, int b) {
+        int m = edge2midpoint.get(a, b);
+        if (m == Integer.MIN_VALUE) {
+            m = (mustSplit(Math.min(a, b), Math.max(a, b)) ? addMidpoint(Math.min(a, b), Math.max(a, b)) : -1);
+            edge2midpoint.put(a, b, m);
+        }
+        return m;
+    }
+
+    /**
+     * determines whether an edge must be split, e.g. because it is too long. The end points are given in increasing order
+     *
+     * @return true, if edge must be split
+     */
+    protected abstract boolean mustSplit(int a, int b);
+
+    /**
+     * adds the midpoint of an edge. The end points are given in increasing order
+     *
+     * @return index of the midpoint
+     */
+    protected abstract int addMidpoint(int a, int b);
+
+    /**
+     * adds a triangle that is not subdivided any further
+     */
+    protected abstract void addFace(int a, int b, int c);
+}
@@ -0,0 +1,207 @@
+/*
+ * GeodesicSubdivision.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling.parts;
+
+import javafx.geometry.Point3D;
+import tegula.core.dsymbols.Geometry;
+import tegula.geometry.Tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * adaptive subdivision of triangles on the sphere or the hyperboloid.
+ * An edge is split if the geodesic between its end points deviates from the straight edge by more than the tolerance.
+ * This only depends on the two end points, so triangles that share an edge are subdivided consistently.
+ * Euclidean triangles are never subdivided
+ */
+public class GeodesicSubdivision extends EdgeSubdivision {
+    private final Geometry geometry;
+    private final double tolerance;
+    private double[] points = new double[3 * 64];
+    private int numberOfPoints = 0;
+    private int[] faces = new int[6 * 16];
+    private int numberOfFaces = 0;
+
+    private final double[] midpoint = new double[3];
+
+    /**
+     * constructor
+     *
+     * @param geometry  the geometry
+     * @param tolerance maximal deviation of an edge from the sphere or, in the hyperbolic case, of its image in the Poincare disk from the image of the geodesic
+     */
+    public GeodesicSubdivision(Geometry geometry, double tolerance) {
+        this.geometry = geometry;
+        this.tolerance = Math.max(0.0001, tolerance);
+    }
+
+    /**
+     * add a point
+     *
+     * @return index
+     */
+    public int addPoint(Point3D point) {
+        return addPoint(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * add a point
+     *
+     * @return index
+     */
+    public int addPoint(double x, double y, double z) {
+        ensurePointCapacity();
+        final int pos = 3 * numberOfPoints;
+        points[pos] = x;
+        points[pos + 1] = y;
+        points[pos + 2] = z;
+        return numberOfPoints++;
+    }
+
+    private void ensurePointCapacity() {
+        if (3 * (numberOfPoints + 1) > points.length)
+            points = Arrays.copyOf(points, 2 * points.length);
+    }
+
+    @Override
+    protected void addFace(int a, int b, int c) {
+        if (6 * (numberOfFaces + 1) > faces.length)
+            faces = Arrays.copyOf(faces, 2 * faces.length);
+        final int pos = 6 * numberOfFaces++;
+        faces[pos] = a;
+        faces[pos + 1] = 0;
+        faces[pos + 2] = b;
+        faces[pos + 3] = 1;
+        faces[pos + 4] = c;
+        faces[pos + 5] = 2;
+    }
+
+    /**
+     * gets the indices of all points along the subdivided edge from a to b
+     *
+     * @return indices, starting with a and ending with b
+     */
+    public ArrayList<Integer> getEdgePath(int a, int b) {
+        final ArrayList<Integer> path = new ArrayList<>();
+        path.add(a);
+        addEdgePath(a, b, path);
+        return path;
+    }
+
+    private void addEdgePath(int a, int b, ArrayList<Integer> path) {
+        final int m = getMidpoint(a, b);
+        if (m == -1)
+            path.add(b);
+        else {
+            addEdgePath(a, m, path);
+            addEdgePath(m, b, path);
+        }
+    }
+
+    public int getNumberOfPoints() {
+        return numberOfPoints;
+    }
+
+    public Point3D getPoint(int i) {
+        return new Point3D(points[3 * i], points[3 * i + 1], points[3 * i + 2]);
+    }
+
+    /**
+     * get the coordinates of all points, three per point
+     *
+     * @return coordinates
+     */
+    public double[] getPoints() {
+        return Arrays.copyOf(points, 3 * numberOfPoints);
+    }
+
+    /**
+     * get the faces in the format used by TriangleMesh, with texture coordinates 0,1,2
+     *
+     * @return faces
+     */
+    public int[] getFaces() {
+        return Arrays.copyOf(faces, 6 * numberOfFaces);
+    }
+
+    @Override
+    protected boolean mustSplit(int a, int b) {
+        switch (geometry) {
+            case Spherical:
+                return computeDeviation(a, b) > tolerance;
+            case Hyperbolic: {
+                // compare the image of the geodesic midpoint in the Poincare disk to the midpoint of the images of the end points
+                computeMidpoint(a, b, midpoint, 0);
+                final int s = 3 * a, t = 3 * b;
+                final double fa = 100 / (points[s + 2] + 100), fb = 100 / (points[t + 2] + 100), fm = 100 / (midpoint[2] + 100);
+                final double dx = fm * midpoint[0] - 0.5 * (fa * points[s] + fb * points[t]);
+                final double dy = fm * midpoint[1] - 0.5 * (fa * points[s + 1] + fb * points[t + 1]);
+                return Math.sqrt(dx * dx + dy * dy) > tolerance;
+            }
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected int addMidpoint(int a, int b) {
+        ensurePointCapacity();
+        computeMidpoint(a, b, points, numberOfPoints);
+        return numberOfPoints++;
+    }
+
+    /**
+     * computes the geodesic midpoint of two points. Uses a fixed order of the end points so that neighboring triangles compute identical midpoints
+     */
+    private void computeMidpoint(int a, int b, double[] result, int resultOffset) {
+        if (isBefore(b, a)) {
+            final int tmp = a;
+            a = b;
+            b = tmp;
+        }
+        Tools.midpoint3D(geometry, points, a, points, b, result, resultOffset, 1);
+    }
+
+    /**
+     * computes by how much the straight edge between two points on the sphere deviates from the geodesic between them
+     *
+     * @return deviation
+     */
+    private double computeDeviation(int a, int b) {
+        final int s = 3 * a, t = 3 * b;
+        final double magnitudeA = Math.sqrt(points[s] * points[s] + points[s + 1] * points[s + 1] + points[s + 2] * points[s + 2]);
+        final double magnitudeB = Math.sqrt(points[t] * points[t] + points[t + 1] * points[t + 1] + points[t + 2] * points[t + 2]);
+        final double radius = 0.5 * (magnitudeA + magnitudeB);
+        final double cos = Math.max(-1, Math.min(1, (points[s] * points[t] + points[s + 1] * points[t + 1] + points[s + 2] * points[t + 2]) / (magnitudeA * magnitudeB)));
+        return radius * (1 - Math.sqrt(0.5 * (1 + cos)));
+    }
+
+    /**
+     * is point a before point b in the lexicographic order of coordinates?
+     */
+    private boolean isBefore(int a, int b) {
+        for (int i = 0; i < 3; i++) {
+            if (points[3 * a + i] != points[3 * b + i])
+                return points[3 * a + i] < points[3 * b + i];
+        }
+        return false;
+    }
+}
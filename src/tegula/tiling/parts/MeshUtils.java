@@ -19,16 +19,12 @@
 
 package tegula.tiling.parts;
 
-import javafx.collections.ObservableFloatArray;
 import javafx.geometry.Point3D;
-import javafx.scene.shape.ObservableFaceArray;
 import javafx.scene.shape.TriangleMesh;
 import javafx.scene.shape.VertexFormat;
-import jloda.util.Triplet;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * some mesh utilities
@@ -93,54 +89,69 @@ public class MeshUtils {
 
         final int numberOfMeshes = meshes.length;
 
-        final int[][] pointsIndex = new int[numberOfMeshes][];
-        for (int m = 0; m < numberOfMeshes; m++) {
-            pointsIndex[m] = new int[meshes[m].getPoints().size() / 3];
+        int totalPoints = 0;
+        int totalFaces = 0;
+        int totalSmoothingGroups = 0;
+        for (TriangleMesh mesh : meshes) {
+            totalPoints += mesh.getPoints().size() / 3;
+            totalFaces += mesh.getFaces().size();
+            totalSmoothingGroups += mesh.getFaceSmoothingGroups().size();
         }
 
         // setup points
+        final float[] newPoints = new float[3 * totalPoints];
+        final int[][] pointsIndex = new int[numberOfMeshes][];
+        int count = 0;
         {
-            final Map<Triplet<Float, Float, Float>, Integer> point2index = new HashMap<>();
-            int count = 0;
+            final PointIndex point2index = new PointIndex(totalPoints);
+            final float[] points = new float[3 * totalPoints];
             for (int m = 0; m < numberOfMeshes; m++) {
-                final int[] index = pointsIndex[m];
-                final ObservableFloatArray points = meshes[m].getPoints();
-                {
-                    int p = 0;
-                    for (int i = 0; i < points.size(); i += 3) {
-                        final Triplet<Float, Float, Float> point = new Triplet<>(points.get(i), points.get(i + 1), points.get(i + 2));
-                        Integer pos = point2index.get(point);
-                        if (pos == null) {
-                            pos = count++;
-                            point2index.put(point, pos);
-                            newMesh.getPoints().addAll(point.getFirst(), point.getSecond(), point.getThird());
-                        }
-                        index[p++] = pos;
+                final int size = meshes[m].getPoints().size();
+                meshes[m].getPoints().copyTo(0, points, 0, size);
+                final int[] index = pointsIndex[m] = new int[size / 3];
+                for (int i = 0; i < size; i += 3) {
+                    int pos = point2index.getOrAdd(points[i], points[i + 1], points[i + 2], count);
+                    if (pos == count) {
+                        newPoints[3 * count] = points[i];
+                        newPoints[3 * count + 1] = points[i + 1];
+                        newPoints[3 * count + 2] = points[i + 2];
+                        count++;
                     }
+                    index[i / 3] = pos;
                 }
             }
-            //System.err.println("points in: "+( mesh1.getPoints().size()+ mesh2.getPoints().size())+" out: "+newMesh.getPoints().size());
+            //System.err.println("points in: "+totalPoints+" out: "+count);
         }
 
         // setup faces
+        final int[] newFaces = new int[totalFaces];
         {
+            int f = 0;
             for (int m = 0; m < numberOfMeshes; m++) {
                 final int[] index = pointsIndex[m];
-                final ObservableFaceArray faces = meshes[m].getFaces();
-                for (int i = 0; i < faces.size(); i += 2) {
-                    newMesh.getFaces().addAll(index[faces.get(i)], faces.get(i + 1));
-                    //newMesh.getFaces().addAll(faces.get(i),faces.get(i+1));
+                final int size = meshes[m].getFaces().size();
+                meshes[m].getFaces().copyTo(0, newFaces, f, size);
+                for (int i = f; i < f + size; i += 2) {
+                    newFaces[i] = index[newFaces[i]];
                 }
+                f += size;
             }
-            // System.err.println("faces in: "+( mesh1.getFaces().size()+ mesh2.getFaces().size())+" out: "+newMesh.getFaces().size());
         }
 
         // add smoothing groups
-        for (TriangleMesh mesh : meshes)
-            newMesh.getFaceSmoothingGroups().addAll(mesh.getFaceSmoothingGroups());
+        final int[] newSmoothingGroups = new int[totalSmoothingGroups];
+        {
+            int g = 0;
+            for (TriangleMesh mesh : meshes) {
+                mesh.getFaceSmoothingGroups().copyTo(0, newSmoothingGroups, g, mesh.getFaceSmoothingGroups().size());
+                g += mesh.getFaceSmoothingGroups().size();
+            }
+        }
 
+        newMesh.getPoints().setAll(newPoints, 0, 3 * count);
+        newMesh.getFaces().setAll(newFaces);
+        newMesh.getFaceSmoothingGroups().setAll(newSmoothingGroups);
         return newMesh;
-
     }
 
     /**
@@ -172,4 +183,48 @@ public class MeshUtils {
         for (int i = 0; i < mesh.getFaces().size() / 6; i++)
             mesh.getFaceSmoothingGroups().addAll(group);
     }
+
+    /**
+     * open-addressing hash table that maps points, given by their three float coordinates, to indices.
+     * Points are compared by their bit patterns, like Float.equals
+     */
+    private static class PointIndex {
+        private final int[] keys; // three int bit patterns per slot
+        private final int[] values; // -1, if slot is empty
+        private final int mask;
+
+        PointIndex(int expectedSize) {
+            int capacity = 16;
+            while (capacity < 2 * expectedSize)
+                capacity <<= 1;
+            keys = new int[3 * capacity];
+            values = new int[capacity];
+            Arrays.fill(values, -1);
+            mask = capacity - 1;
+        }
+
+        /**
+         * gets the index of the point, or adds it with the given index, if not present
+         *
+         * @return index of point
+         */
+        int getOrAdd(float x, float y, float z, int index) {
+            final int bx = Float.floatToIntBits(x);
+            final int by = Float.floatToIntBits(y);
+            final int bz = Float.floatToIntBits(z);
+            int h = (bx * 31 + by) * 31 + bz;
+            h ^= (h >>> 16);
+            int slot = (h * 0x9E3779B9) & mask;
+            while (values[slot] != -1) {
+                if (keys[3 * slot] == bx && keys[3 * slot + 1] == by && keys[3 * slot + 2] == bz)
+                    return values[slot];
+                slot = (slot + 1) & mask;
+            }
+            keys[3 * slot] = bx;
+            keys[3 * slot + 1] = by;
+            keys[3 * slot + 2] = bz;
+            values[slot] = index;
+            return index;
+        }
+    }
 }
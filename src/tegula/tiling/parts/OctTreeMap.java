@@ -0,0 +1,166 @@
+/*
+ * OctTreeMap.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling.parts;
+
+import javafx.geometry.Point3D;
+import tegula.core.dsymbols.Geometry;
+import tegula.geometry.Tools;
+
+import java.util.ArrayList;
+import java.util.Stack;
+
+/**
+ * An OctTree that maps 3D points to values. In contrast to OctTree, entries can be removed again.
+ * Removed entries are kept as routing nodes and are revived when a nearby point is inserted.
+ */
+public class OctTreeMap<T> {
+    private Node<T> root;
+    private int size;
+    private int removed;
+
+    private static class Node<T> {
+        final Point3D a;
+        T value; // null, if entry has been removed
+        @SuppressWarnings("unchecked")
+        final Node<T>[] children = (Node<T>[]) new Node[8]; // one node for each direction in space
+
+        Node(Point3D a, T value) {
+            this.a = a;
+            this.value = value;
+        }
+    }
+
+    /**
+     * number of entries
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * attempts to add the point with the given value
+     *
+     * @return true, if added, false, if there already is an entry for the point
+     */
+    public boolean put(Geometry geom, Point3D point, double tolerance, T value) {
+        if (value == null)
+            throw new IllegalArgumentException("value: null");
+        if (root == null) {
+            root = new Node<>(point, value);
+            size++;
+            return true;
+        }
+        final double tol = tolerance * 0.01;
+        Node<T> h = root;
+        while (true) {
+            if (Tools.distance(geom, point, h.a) > tolerance) {
+                final int octant = octant(h.a, point, tol);
+                if (h.children[octant] == null) {
+                    h.children[octant] = new Node<>(point, value);
+                    size++;
+                    return true;
+                } else
+                    h = h.children[octant];
+            } else if (h.value == null) { // revive removed entry
+                h.value = value;
+                removed--;
+                size++;
+                return true;
+            } else
+                return false;
+        }
+    }
+
+    /**
+     * gets the value associated with the given point
+     *
+     * @return value or null
+     */
+    public T get(Geometry geom, Point3D point, double tolerance) {
+        final Node<T> node = find(geom, point, tolerance);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * removes the entry for the given point
+     *
+     * @return the removed value or null
+     */
+    public T remove(Geometry geom, Point3D point, double tolerance) {
+        final Node<T> node = find(geom, point, tolerance);
+        if (node == null || node.value == null)
+            return null;
+        final T value = node.value;
+        node.value = null;
+        size--;
+        removed++;
+        if (removed > 2 * size + 1000)
+            compact(geom, tolerance);
+        return value;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+        removed = 0;
+    }
+
+    /**
+     * rebuild the tree without removed entries
+     */
+    private void compact(Geometry geom, double tolerance) {
+        final ArrayList<Node<T>> live = new ArrayList<>(size);
+        if (root != null) {
+            final Stack<Node<T>> stack = new Stack<>();
+            stack.push(root);
+            while (stack.size() > 0) {
+                final Node<T> node = stack.pop();
+                if (node.value != null)
+                    live.add(node);
+                for (Node<T> child : node.children) {
+                    if (child != null)
+                        stack.push(child);
+                }
+            }
+        }
+        clear();
+        for (Node<T> node : live) {
+            put(geom, node.a, tolerance, node.value);
+        }
+    }
+
+    private Node<T> find(Geometry geom, Point3D point, double tolerance) {
+        final double tol = tolerance * 0.01;
+        Node<T> h = root;
+        while (h != null) {
+            if (Tools.distance(geom, point, h.a) > tolerance)
+                h = h.children[octant(h.a, point, tol)];
+            else
+                return h;
+        }
+        return null;
+    }
+
+    private static int octant(Point3D a, Point3D point, double tol) {
+        return (point.getX() >= a.getX() - tol ? 0 : 1) + (point.getY() >= a.getY() - tol ? 0 : 2) + (point.getZ() >= a.getZ() - tol ? 0 : 4);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * PolygonTriangulation.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tegula.tiling.parts;
+
+import java.util.Arrays;
+
+/**
+ * triangulation of a simple polygon by ear clipping
+ */
+public class PolygonTriangulation {
+    /**
+     * triangulates a simple polygon
+     *
+     * @param xy coordinates of the polygon, x0,y0,x1,y1,..., in either orientation
+     * @return indices of triangles, three per triangle, all with the same orientation as the polygon, or null, if the polygon isn't simple
+     */
+    public static int[] apply(double[] xy) {
+        final int n = xy.length / 2;
+        if (n < 3)
+            return null;
+        final double sign = Math.signum(signedArea(xy));
+        if (sign == 0)
+            return null;
+
+        final double epsilon = 1e-12 * Math.abs(signedArea(xy));
+
+        final int[] next = new int[n];
+        final int[] prev = new int[n];
+        for (int i = 0; i < n; i++) {
+            next[i] = (i + 1) % n;
+            prev[i] = (i + n - 1) % n;
+        }
+
+        final int[] triangles = new int[3 * (n - 2)];
+        int count = 0;
+        int remaining = n;
+        int v = 0;
+        int sinceLastEar = 0;
+
+        while (remaining > 3) {
+            final int a = prev[v], b = next[v];
+            final double cross = sign * cross(xy, a, v, b);
+            boolean clip = false;
+            if (cross > epsilon) {
+                clip = true;
+                for (int w = next[b]; w != a; w = next[w]) {
+                    if (inTriangle(xy, w, a, v, b, sign)) {
+                        clip = false;
+                        break;
+                    }
+                }
+                if (clip) {
+                    triangles[count++] = a;
+                    triangles[count++] = v;
+                    triangles[count++] = b;
+                }
+            } else if (Math.abs(cross) <= epsilon && sinceLastEar > remaining) { // no ear found, drop degenerate corner
+                clip = true;
+            }
+            if (clip) {
+                next[a] = b;
+                prev[b] = a;
+                remaining--;
+                sinceLastEar = 0;
+                v = a;
+            } else {
+                if (++sinceLastEar > 2 * remaining)
+                    return null; // not simple
+                v = b;
+            }
+        }
+        if (Math.abs(cross(xy, prev[v], v, next[v])) > epsilon) {
+            triangles[count++] = prev[v];
+            triangles[count++] = v;
+            triangles[count++] = next[v];
+        }
+
+        // for a polygon that is not simple, the triangles don't add up to the area of the polygon:
+        double area = 0;
+        for (int i = 0; i < count; i += 3) {
+            area += Math.abs(cross(xy, triangles[i], triangles[i + 1], triangles[i + 2]));
+        }
+        if (Math.abs(0.5 * area - Math.abs(signedArea(xy))) > 0.000001 * Math.abs(signedArea(xy)))
+            return null;
+        return Arrays.copyOf(triangles, count);
+    }
+
+    private static double signedArea(double[] xy) {
+        double area = 0;
+        final int n = xy.length / 2;
+        for (int i = 0; i < n; i++) {
+            final int j = (i + 1) % n;
+            area += xy[2 * i] * xy[2 * j + 1] - xy[2 * j] * xy[2 * i + 1];
+        }
+        return 0.5 * area;
+    }
+
+    private static double cross(double[] xy, int a, int b, int c) {
+        return (xy[2 * b] - xy[2 * a]) * (xy[2 * c + 1] - xy[2 * a + 1]) - (xy[2 * b + 1] - xy[2 * a + 1]) * (xy[2 * c] - xy[2 * a]);
+    }
+
+    /**
+     * is point p inside or on the boundary of the triangle a,b,c? Points that coincide with a corner are ignored
+     */
+    private static boolean inTriangle(double[] xy, int p, int a, int b, int c, double sign) {
+        if (same(xy, p, a) || same(xy, p, b) || same(xy, p, c))
+            return false;
+        return sign * cross(xy, a, b, p) >= 0 && sign * cross(xy, b, c, p) >= 0 && sign * cross(xy, c, a, p) >= 0;
+    }
+
+    private static boolean same(double[] xy, int a, int b) {
+        return xy[2 * a] == xy[2 * b] && xy[2 * a + 1] == xy[2 * b + 1];
+    }
+}
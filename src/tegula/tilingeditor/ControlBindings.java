@@ -205,12 +205,8 @@ public class ControlBindings {
             if (!undoManager.isPerformingUndoOrRedo())
                 undoManager.doAndAdd(new UndoableChangeProperty<>("width",
                         tilingStyle.bandWidthProperty(), tilingStyle.getBandWidth(), n,
-                        (v) -> {
-                            tilingPane.update();
-                            controller.getBandWidthSpinner().getValueFactory().setValue(v.intValue());
-                        }));
-            tilingStyle.setBandWidth(n);
-            tilingPane.update();
+                        (v) -> controller.getBandWidthSpinner().getValueFactory().setValue(v.intValue())));
+            tilingStyle.setBandWidth(n); // the tiling pane listens and updates the bands
         });
 
         controller.getShowFacesToggleButton().setSelected(tilingStyle.isShowFaces());
@@ -219,10 +215,7 @@ public class ControlBindings {
                 undoManager.doAndAdd(new UndoableChangeProperty<>("show faces",
                         tilingStyle.showFacesProperty(), !controller.getShowFacesToggleButton().isSelected(),
                         controller.getShowFacesToggleButton().isSelected(),
-                        (v) -> {
-                            tilingPane.update();
-                            controller.getShowFacesToggleButton().setSelected(v);
-                        }));
+                        (v) -> controller.getShowFacesToggleButton().setSelected(v)));
         });
 
         controller.getBackFacesToggleButton().setSelected(tilingStyle.isShowBackFaces());
@@ -232,10 +225,7 @@ public class ControlBindings {
                 undoManager.doAndAdd(new UndoableChangeProperty<>("show back faces",
                         tilingStyle.showBackFacesProperty(), !controller.getBackFacesToggleButton().isSelected(),
                         controller.getBackFacesToggleButton().isSelected(),
-                        (v) -> {
-                            tilingPane.update();
-                            controller.getBackFacesToggleButton().setSelected(v);
-                        }));
+                        (v) -> controller.getBackFacesToggleButton().setSelected(v)));
         });
         tilingStyle.showBackFacesProperty().addListener((c, o, n) -> controller.getBackFacesToggleButton().setSelected(n));
         controller.getBackFacesToggleButton().disableProperty().bind(tilingPane.geometryProperty().isEqualTo(Geometry.Euclidean));
@@ -256,10 +246,7 @@ public class ControlBindings {
                 undoManager.doAndAdd(new UndoableChangeProperty<>("show edges",
                         tilingStyle.showEdgesProperty(), !controller.getShowEdgesToggleButton().isSelected(),
                         controller.getShowEdgesToggleButton().isSelected(),
-                        (v) -> {
-                            tilingPane.update();
-                            controller.getShowEdgesToggleButton().setSelected(v);
-                        }));
+                        (v) -> controller.getShowEdgesToggleButton().setSelected(v)));
         });
 
         controller.getShowBackEdgesToggleButton().setSelected(tilingStyle.isShowBackEdges());
@@ -268,10 +255,7 @@ public class ControlBindings {
                 undoManager.doAndAdd(new UndoableChangeProperty<>("show back edges",
                         tilingStyle.showBackEdgesProperty(), !controller.getShowBackEdgesToggleButton().isSelected(),
                         controller.getShowBackEdgesToggleButton().isSelected(),
-                        (v) -> {
-                            tilingPane.update();
-                            controller.getShowBackEdgesToggleButton().setSelected(v);
-                        }));
+                        (v) -> controller.getShowBackEdgesToggleButton().setSelected(v)));
         });
         controller.getShowBackEdgesToggleButton().disableProperty().bind(tilingPane.geometryProperty().isEqualTo(Geometry.Euclidean));
 
@@ -281,10 +265,7 @@ public class ControlBindings {
 				undoManager.doAndAdd(new UndoableChangeProperty<>("show nodes",
 						tilingStyle.showVerticesProperty(), !controller.getShowNodesToggleButton().isSelected(),
 						controller.getShowNodesToggleButton().isSelected(),
-						(v) -> {
-							tilingPane.update();
-							controller.getShowNodesToggleButton().setSelected(v);
-						}));
+						(v) -> controller.getShowNodesToggleButton().setSelected(v)));
 		});
 
 
@@ -298,10 +279,7 @@ public class ControlBindings {
 				undoManager.doAndAdd(new UndoableChangeProperty<>("show back nodes",
 						tilingStyle.showBackVerticesProperty(), !controller.getShowBackNodesToggleButton().isSelected(),
 						controller.getShowBackNodesToggleButton().isSelected(),
-						(v) -> {
-							tilingPane.update();
-							controller.getShowBackNodesToggleButton().setSelected(v);
-                        }));
+						(v) -> controller.getShowBackNodesToggleButton().setSelected(v)));
         });
         controller.getShowBackNodesToggleButton().disableProperty().bind(tilingPane.geometryProperty().isEqualTo(Geometry.Euclidean));
 
@@ -50,11 +50,15 @@ public class SelectionSupport {
         tileSelection.setItems(allNumbers(1, dSymbol.countOrbits(0, 1)));
     }
 
+    /**
+     * installs a single mouse click handler on the group. The clicked tile, edge or vertex is determined from the picked node,
+     * so copies don't need their own handlers
+     */
     public static void setupListeners(Group group, AnotherMultipleSelectionModel<Integer> vertexSelection,
                                       AnotherMultipleSelectionModel<Integer> edgeSelection, AnotherMultipleSelectionModel<Integer> tileSelection) {
 
         final EventHandler<? super MouseEvent> mouseClickHandler = (e) -> {
-            final Pair<Character, Integer> pair = getTypeAndId((Node) e.getSource());
+            final Pair<Character, Integer> pair = getTypeAndId(group, e.getPickResult().getIntersectedNode());
             if (pair != null) {
                 if (e.getClickCount() == 2) {
                     if (!e.isShiftDown()) {
@@ -88,12 +92,24 @@ public class SelectionSupport {
             }
         };
 
-        visitAllNodes(group, (node) -> {
+        group.setOnMouseClicked(mouseClickHandler);
+    }
+
+    /**
+     * determines the type and id of the tile, edge or vertex that the picked node belongs to
+     *
+     * @param group the group that contains all copies
+     * @param node  the picked node
+     * @return type and id, or null
+     */
+    private static Pair<Character, Integer> getTypeAndId(Group group, Node node) {
+        while (node != null && node != group) {
             final Pair<Character, Integer> pair = getTypeAndId(node);
-            if (pair != null) {
-                node.setOnMouseClicked(mouseClickHandler);
-            }
-        });
+            if (pair != null)
+                return pair;
+            node = node.getParent();
+        }
+        return null;
     }
 
     public static void highlightSelection(Group group, AnotherMultipleSelectionModel<Integer> vertexSelection,
@@ -119,7 +135,7 @@ public class SelectionSupport {
                                 drawMode = DrawMode.LINE;
                             } else {
                                 scaleFactor = 1.0;
-                                material = new PhongMaterial(tilingStyle.getBandColor());
+                                material = tilingStyle.getMaterialPalette().getBandMaterial(tilingStyle);
                                 drawMode = DrawMode.FILL;
                             }
                             break;
@@ -130,7 +146,7 @@ public class SelectionSupport {
                                 drawMode = DrawMode.LINE;
                             } else {
                                 scaleFactor = 1.0;
-                                material = new PhongMaterial(tilingStyle.getBandColor());
+                                material = tilingStyle.getMaterialPalette().getBandMaterial(tilingStyle);
                                 drawMode = DrawMode.FILL;
                             }
                             break;
@@ -141,7 +157,7 @@ public class SelectionSupport {
                                 drawMode = DrawMode.LINE;
                             } else {
                                 scaleFactor = 1.0;
-                                material = new PhongMaterial(tilingStyle.getTileColor(id));
+                                material = tilingStyle.getMaterialPalette().getTileMaterial(tilingStyle, id);
                                 drawMode = DrawMode.FILL;
                             }
                             break;
@@ -34,6 +34,7 @@ import jloda.util.FileUtils;
 import tegula.core.dsymbols.*;
 import tegula.fdomaineditor.FDomainEditor;
 import tegula.main.TilingStyle;
+import tegula.tiling.CopyBudget;
 import tegula.tiling.TilingBase;
 import tegula.tilingpane.TilingPane;
 import tegula.util.IFileBased;
@@ -62,6 +63,7 @@ public class TilingEditorTab extends Tab implements IFileBased, Closeable, Print
     private final BooleanProperty diskTiling = new SimpleBooleanProperty();
     private final StringProperty groupName = new SimpleStringProperty();
     private final StringProperty infoLine = new SimpleStringProperty("");
+    private String tilingInfo = "";
 
     private final BooleanProperty canDualizeTiling = new SimpleBooleanProperty(false);
     private final BooleanProperty canContractEdge = new SimpleBooleanProperty(false);
@@ -133,13 +135,13 @@ public class TilingEditorTab extends Tab implements IFileBased, Closeable, Print
             orientableTiling.set(dSymbol.computeOrientation() == 2);
             diskTiling.set(DSymbolAlgorithms.allTilesAreDisks(dSymbol));
             groupName.setValue(OrbifoldGroupName.getGroupName(dSymbol));
-            infoLine.setValue(String.format("Tiling %d - n:%d t:%d e:%d v:%d g:%s %s", dSymbol.getNr1(), dSymbol.size(), dSymbol.countOrbits(0, 1),
+            tilingInfo = String.format("Tiling %d - n:%d t:%d e:%d v:%d g:%s %s", dSymbol.getNr1(), dSymbol.size(), dSymbol.countOrbits(0, 1),
                     getTiling().getDSymbol().countOrbits(0, 2), dSymbol.countOrbits(1, 2),
                     getGroupName(),
                     // DSymbolAlgorithms.computeSignature(getTiling().getDSymbol())+
                     (isMaximalTiling() ? " max" : "") + (isOrientableTiling() ? " orient." : "") + (isDiskTiling() ? "" : " non-disks"))
-                    + (DSymbolAlgorithms.isNormal(getTiling().getDSymbol()) ? " normal" : "")
-                    + String.format(" (objects: %,d)", computeSize(tilingPane.getWorld())));
+                    + (DSymbolAlgorithms.isNormal(getTiling().getDSymbol()) ? " normal" : "");
+            updateInfoLine();
 
             canDualizeTiling.set(!Isomorphic.isomorphic(dSymbol, DSymbolAlgorithms.dualize(dSymbol)));
             SelectionSupport.setupSelection(dSymbol, vertexSelection, edgeSelection, tileSelection);
@@ -148,6 +150,7 @@ public class TilingEditorTab extends Tab implements IFileBased, Closeable, Print
         });
 
         tilingPane.lastWorldUpdateProperty().addListener((e) -> {
+            updateInfoLine();
             TileColorControls.setup(this);
             GroupEditingControls.setup(this);
             controller.getBorderPane().setTop(controller.getBorderPane().getTop());
@@ -157,6 +160,9 @@ public class TilingEditorTab extends Tab implements IFileBased, Closeable, Print
             highlightSelections(null);
         });
 
+        // recoloring only changes shared materials, so there is no need to visit the nodes of the world:
+        tilingPane.lastStyleUpdateProperty().addListener((e) -> TileColorControls.setup(this));
+
         vertexSelection.getSelectedItems().addListener((InvalidationListener) (e) -> {
             highlightSelections('v');
             singleVertexSelected.set(vertexSelection.getSelectedItems().size() == 1);
@@ -187,6 +193,16 @@ public class TilingEditorTab extends Tab implements IFileBased, Closeable, Print
         fDomainEditor = new FDomainEditor(this);
     }
 
+    /**
+     * update the info line, showing the number of copies and, if the copy budget is adaptive, the current measurements
+     */
+    private void updateInfoLine() {
+        final TilingBase tiling = getTiling();
+        infoLine.setValue(tilingInfo + String.format(" (copies: %,d", tiling.getNumberOfCopies())
+                + (tiling.getMaxCopies() > 0 ? String.format(" of max %,d", tiling.getMaxCopies()) : "")
+                + (tilingStyle.isAdaptiveCopyBudget() ? ", " + CopyBudget.getInstance().getInfo() : "") + ")");
+    }
+
     public static int computeSize(Node node) {
         int count = 0;
         final Stack<Node> stack = new Stack<>();
@@ -19,7 +19,12 @@
 
 package tegula.tilingpane;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.WeakChangeListener;
 import javafx.beans.property.*;
 import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
@@ -28,28 +33,31 @@ import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Circle;
-import javafx.scene.shape.MeshView;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Scale;
 import javafx.scene.transform.Transform;
 import javafx.scene.transform.Translate;
-import jloda.util.Pair;
+import jloda.fx.util.ProgramExecutorService;
+import jloda.util.Basic;
+import jloda.util.ProgramProperties;
 import tegula.core.dsymbols.DSymbol;
 import tegula.core.dsymbols.FDomain;
 import tegula.core.dsymbols.Geometry;
 import tegula.main.CameraSettings;
 import tegula.main.TilingStyle;
+import tegula.tiling.BakedCopies;
+import tegula.tiling.CopyBudget;
 import tegula.tiling.EuclideanTiling;
 import tegula.tiling.HyperbolicTiling;
 import tegula.tiling.TilingBase;
 import tegula.tiling.TilingCreator;
-import tegula.tilingeditor.SelectionSupport;
 import tegula.util.Updateable;
 
-import java.util.function.Consumer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * a single tiling pane
@@ -67,6 +75,8 @@ public class TilingPane extends StackPane implements Updateable {
     private final Scale worldScale = new Scale(1, 1);
 
     private final Group tiles = new Group();
+    private final BakedCopies bakedCopies = new BakedCopies();
+    private boolean baked = false;
     private final Group world = new Group();
     private final Group universe = new Group(world);
 
@@ -83,8 +93,27 @@ public class TilingPane extends StackPane implements Updateable {
 
     private final LongProperty lastDSymbolUpdate = new SimpleLongProperty();
 
+    private final LongProperty lastStyleUpdate = new SimpleLongProperty();
+
     private final MouseHandler mouseHandler;
 
+    private final BooleanProperty computeInBackground = new SimpleBooleanProperty(false);
+    private final BooleanProperty computing = new SimpleBooleanProperty(false);
+    private final AtomicLong computation = new AtomicLong();
+    private final Object requestLock = new Object();
+    private Runnable nextRequest; // latest request for a background computation, guarded by requestLock
+    private boolean requestRunnerActive = false; // guarded by requestLock
+    private AnimationTimer publisher;
+    private final ArrayList<Node> unpublished = new ArrayList<>();
+
+    private final InvalidationListener bakeCopiesListener = c -> update();
+
+    // frames are measured while the view is changing, e.g. while panning or rotating, to determine the render time per copy:
+    private boolean viewChanged = false;
+    private long previousFrame = 0;
+    private final Runnable frameListener = this::measureFrame;
+    private final ChangeListener<Object> partsListener = (c, o, n) -> updateParts();
+
     /**
      * constructor
      */
@@ -160,11 +189,40 @@ public class TilingPane extends StackPane implements Updateable {
             }
         });
 
+        setComputeInBackground(allowMouseInteraction && ProgramProperties.get("ComputeTilingInBackground", true));
+
         if (allowMouseInteraction)
             mouseHandler = new MouseHandler(this);
         else
             mouseHandler = null;
 
+        sceneProperty().addListener((c, o, n) -> {
+            if (o != null)
+                o.removePostLayoutPulseListener(frameListener);
+            if (n != null)
+                n.addPostLayoutPulseListener(frameListener);
+        });
+        final InvalidationListener viewListener = c -> viewChanged = true;
+        worldTranslate.xProperty().addListener(viewListener);
+        worldTranslate.yProperty().addListener(viewListener);
+        worldScale.xProperty().addListener(viewListener);
+        worldScale.yProperty().addListener(viewListener);
+        worldRotate.addListener(viewListener);
+
+        // the style may be shared, so only keep a weak reference to this pane:
+        tilingStyle.bakeCopiesProperty().addListener(new WeakInvalidationListener(bakeCopiesListener));
+
+        if (allowMouseInteraction) { // changing the shown parts or the band width doesn't require recomputing the copies
+            final WeakChangeListener<Object> weakPartsListener = new WeakChangeListener<>(partsListener);
+            tilingStyle.showFacesProperty().addListener(weakPartsListener);
+            tilingStyle.showBackFacesProperty().addListener(weakPartsListener);
+            tilingStyle.showEdgesProperty().addListener(weakPartsListener);
+            tilingStyle.showBackEdgesProperty().addListener(weakPartsListener);
+            tilingStyle.showVerticesProperty().addListener(weakPartsListener);
+            tilingStyle.showBackVerticesProperty().addListener(weakPartsListener);
+            tilingStyle.bandWidthProperty().addListener(weakPartsListener);
+        }
+
         hyperbolicModel.addListener((c, o, n) -> {
             if (getGeometry() == Geometry.Hyperbolic)
                 CameraSettings.setupHyperbolicCamera(getCamera(), n, true);
@@ -178,6 +236,8 @@ public class TilingPane extends StackPane implements Updateable {
      *
 	 */
     public void computTiling(DSymbol dSymbol) {
+        if (getTiling() != null)
+            getTiling().setCanceled(true);
         geometry.set(dSymbol.computeGeometry());
         tiling.set(TilingCreator.create(dSymbol, tilingStyle, this));
         incrementLastDSymbolUpdate();
@@ -202,8 +262,13 @@ public class TilingPane extends StackPane implements Updateable {
             ((EuclideanTiling) getTiling()).setWidth(getWidth() / worldScale.getX());
             ((EuclideanTiling) getTiling()).setHeight(getHeight() / worldScale.getY());
         }
+        if (getTiling() instanceof HyperbolicTiling) {
+            ((HyperbolicTiling) getTiling()).setViewRadius(0.5 * Math.min(getWidth(), getHeight()));
+            ((HyperbolicTiling) getTiling()).adjustHyperbolicLimit();
+        }
+
+        tilingStyle.getMaterialPalette().update(tilingStyle);
 
-        getWorld().getChildren().clear();
         final Group additionalStuff = new Group();
 
         if (disk != null)
@@ -277,17 +342,231 @@ public class TilingPane extends StackPane implements Updateable {
                 break;
             }
         }
-        tiles.getChildren().setAll(getTiling().update().getChildren());
 
-        getWorld().getChildren().addAll(tiles, additionalStuff);
+        if (isComputeInBackground())
+            computeInBackground(additionalStuff);
+        else {
+            computation.incrementAndGet();
+            stopPublishing();
+            publish(getTiling().update().getChildren(), additionalStuff, false);
+        }
+    }
+
+    /**
+     * computes the tiling in a background thread and then publishes the copies in frame-sized batches.
+     * A computation that is still running is canceled. Requests are coalesced per pane, so at most one pool thread
+     * works on this pane and only the latest request is run once the current computation has finished
+     */
+    private void computeInBackground(Group additionalStuff) {
+        final TilingBase tiling = getTiling();
+        final long id = computation.incrementAndGet();
+        tiling.setCanceled(true);
+        stopPublishing();
+        computing.set(true);
+
+        final Runnable request = () -> {
+            if (id != computation.get())
+                return;
+            tiling.setCanceled(false);
+            try {
+                final Group result = tiling.update();
+                if (!tiling.isCanceled()) {
+                    Platform.runLater(() -> {
+                        if (id == computation.get())
+                            publish(result.getChildren(), additionalStuff, true);
+                    });
+                }
+            } catch (Exception ex) {
+                Basic.caught(ex);
+                Platform.runLater(() -> {
+                    if (id == computation.get())
+                        computing.set(false);
+                });
+            }
+        };
+
+        synchronized (requestLock) {
+            nextRequest = request; // replaces any request that has not yet started
+            if (!requestRunnerActive) {
+                requestRunnerActive = true;
+                ProgramExecutorService.getInstance().submit(this::runRequests);
+            }
+        }
+    }
+
+    /**
+     * runs the latest request until none is left
+     */
+    private void runRequests() {
+        while (true) {
+            final Runnable request;
+            synchronized (requestLock) {
+                request = nextRequest;
+                nextRequest = null;
+                if (request == null) {
+                    requestRunnerActive = false;
+                    return;
+                }
+            }
+            request.run();
+        }
+    }
+
+    /**
+     * publishes the computed copies. If progressive, then the copies are added in batches, one per frame,
+     * and the batch size is adapted to keep the frame time close to the target
+     */
+    private void publish(List<Node> copies, Group additionalStuff, boolean progressive) {
+        final ArrayList<Node> nodes = new ArrayList<>(copies);
+        copies.clear();
+
+        getWorld().getChildren().clear();
+        tiles.getChildren().clear();
+        tiles.getTransforms().setAll(getTiling().getTilesTransform());
+
+        // in baked mode, the copies are empty groups that are kept out of the scene and only carry the transforms for the baked meshes
+        baked = getTiling().isBakedCopies() && bakedCopies.setup(getTiling().getFundPrototype());
+        if (baked) {
+            tiles.getChildren().setAll(nodes);
+            bakedCopies.update(tiles);
+            getWorld().getChildren().addAll(bakedCopies.getGroup(), additionalStuff);
+        } else {
+            getWorld().getChildren().addAll(tiles, additionalStuff);
+            if (progressive) {
+                unpublished.addAll(nodes);
+                final long targetFrameTime = 1000000000L / Math.max(1, tilingStyle.getTargetFrameRate());
+                publisher = new AnimationTimer() {
+                    private int batchSize = 100;
+                    private long previous = 0;
+
+                    @Override
+                    public void handle(long now) {
+                        if (previous > 0) {
+                            batchSize = (now - previous > targetFrameTime ? Math.max(10, batchSize / 2) : Math.min(100000, 3 * batchSize / 2));
+                        }
+                        previous = now;
+
+                        final List<Node> batch = unpublished.subList(0, Math.min(unpublished.size(), batchSize));
+                        tiles.getChildren().addAll(batch);
+                        batch.clear();
+                        if (unpublished.size() == 0)
+                            finishPublishing();
+                    }
+                };
+                publisher.start();
+                return;
+            }
+            tiles.getChildren().setAll(nodes);
+        }
+        computing.set(false);
+        incrementLastWorldUpdate();
+    }
+
+    /**
+     * immediately adds all copies that have not yet been published
+     */
+    private void finishPublishing() {
+        if (publisher != null) {
+            publisher.stop();
+            publisher = null;
+            tiles.getChildren().addAll(unpublished);
+            unpublished.clear();
+            computing.set(false);
+            incrementLastWorldUpdate();
+        }
+    }
+
+    /**
+     * stops publishing, copies not yet published are discarded
+     */
+    private void stopPublishing() {
+        if (publisher != null) {
+            publisher.stop();
+            publisher = null;
+            unpublished.clear();
+        }
+    }
+
+    /**
+     * is the tiling ready to be modified on the FX thread? If copies are still being published, finishes publishing
+     *
+     * @return false, if a computation is running in the background
+     */
+    private boolean isReady() {
+        finishPublishing();
+        return !isComputing();
+    }
+
+    /**
+     * update the parts shown after faces, edges or vertices have been turned on or off, or the band width has changed.
+     * The parts of the existing copies are replaced, the copies themselves are not recomputed
+     */
+    public void updateParts() {
+        if (getTiling() == null)
+            return;
+        if (!isReady() || !getTiling().updateParts(tiles)) { // make sure that a running computation picks up all changes
+            update();
+            return;
+        }
+        setupBakedCopies();
         incrementLastWorldUpdate();
     }
 
+    /**
+     * called once per pulse. If the view was changed in this and in the previous pulse, then the time between the two
+     * pulses is the time needed to show one frame of all copies and is recorded in the copy budget.
+     * Pulses after an idle period, or while copies are being published, are not measured
+     */
+    private void measureFrame() {
+        final long now = System.nanoTime();
+        if (viewChanged && publisher == null && !isComputing()) {
+            if (previousFrame > 0)
+                CopyBudget.getInstance().recordFrame(baked ? bakedCopies.getNumberOfCopies() : tiles.getChildren().size(), now - previousFrame,
+                        1000000000L / Math.max(1, tilingStyle.getTargetFrameRate()));
+            previousFrame = now;
+        } else
+            previousFrame = 0;
+        viewChanged = false;
+    }
+
+    /**
+     * update the baked meshes after the copies have been changed or moved
+     */
+    private void updateBakedCopies() {
+        if (baked)
+            bakedCopies.update(tiles);
+    }
+
+    /**
+     * setup the baked meshes again after the materials of the prototype have been changed
+     */
+    private void setupBakedCopies() {
+        if (baked) {
+            if (bakedCopies.setup(getTiling().getFundPrototype()))
+                bakedCopies.update(tiles);
+            else
+                update();
+        }
+    }
+
+    /**
+     * is the tiling currently rendered as baked meshes, rather than as one node per copy?
+     * Baked meshes do not support selection and picking of tiles, edges or vertices
+     *
+     * @return true, if baked
+     */
+    public boolean isBaked() {
+        return baked;
+    }
+
     /**
      * translate a euclidean or hyperbolic tiling
      *
 	 */
     public void translateTiling(double dx, double dy) {
+        if (!isReady())
+            return;
+        viewChanged = true;
         if (getTiling() instanceof EuclideanTiling) {
             final EuclideanTiling tiling = (EuclideanTiling) getTiling();
             tiling.translateTiling(dx, dy, tiles);
@@ -295,19 +574,22 @@ public class TilingPane extends StackPane implements Updateable {
             final HyperbolicTiling tiling = (HyperbolicTiling) getTiling();
             tiling.translateTiling(dx, dy, tiles);
         }
+        updateBakedCopies();
     }
 
     public void decreaseTiling() {
-        if (getTiling() instanceof HyperbolicTiling) {
+        if (isReady() && getTiling() instanceof HyperbolicTiling) {
             final HyperbolicTiling tiling = (HyperbolicTiling) getTiling();
             tiling.decreaseTiling(tiles);
+            updateBakedCopies();
         }
     }
 
     public void increaseTiling() {
-        if (getTiling() instanceof HyperbolicTiling) {
+        if (isReady() && getTiling() instanceof HyperbolicTiling) {
             final HyperbolicTiling tiling = (HyperbolicTiling) getTiling();
             tiling.increaseTiling(tiles);
+            updateBakedCopies();
         }
     }
 
@@ -356,6 +638,17 @@ public class TilingPane extends StackPane implements Updateable {
         lastWorldUpdate.set(lastWorldUpdate.get() + 1);
     }
 
+    /**
+     * incremented when only the materials have changed, so the nodes of the world are unchanged
+     */
+    public LongProperty lastStyleUpdateProperty() {
+        return lastStyleUpdate;
+    }
+
+    public void incrementLastStyleUpdate() {
+        lastStyleUpdate.set(lastStyleUpdate.get() + 1);
+    }
+
     public LongProperty lastDSymbolUpdateProperty() {
         return lastDSymbolUpdate;
     }
@@ -396,48 +689,59 @@ public class TilingPane extends StackPane implements Updateable {
         return hyperbolicModel;
     }
 
-    public MouseHandler getMouseHandler() {
-        return mouseHandler;
+    public boolean isComputeInBackground() {
+        return computeInBackground.get();
     }
 
-    public void updateTileColors() {
-        final Consumer<Node> update = (node) -> {
-            final Pair<Character, Integer> pair = SelectionSupport.getTypeAndId(node);
-            if (pair != null && pair.getFirst() == 't') {
-                ((MeshView) node).setMaterial(new PhongMaterial(tilingStyle.getTileColor(pair.getSecond())));
-            }
-        };
-
-        visitAllNodes(tiles, update);
+    public BooleanProperty computeInBackgroundProperty() {
+        return computeInBackground;
+    }
 
-        for (Node node : getTiling().recycler()) {
-            visitAllNodes(node, update);
-        }
+    public void setComputeInBackground(boolean computeInBackground) {
+        this.computeInBackground.set(computeInBackground);
+    }
 
-        if (getTiling().getFundPrototype() != null) {
-            visitAllNodes(getTiling().getFundPrototype(), update);
-        }
-        incrementLastWorldUpdate();
+    /**
+     * is a computation of the tiling running in the background, or are copies still being published?
+     *
+     * @return true, if computing
+     */
+    public boolean isComputing() {
+        return computing.get();
     }
 
-    public void updateBandColors() {
-        final Consumer<Node> update = (node) -> {
-            final Pair<Character, Integer> pair = SelectionSupport.getTypeAndId(node);
-            if (pair != null && (pair.getFirst() == 'e' || pair.getFirst() == 'v')) {
-                ((MeshView) node).setMaterial(new PhongMaterial(getTilingStyle().getBandColor()));
-            }
-        };
+    public ReadOnlyBooleanProperty computingProperty() {
+        return computing;
+    }
 
-        visitAllNodes(tiles, update);
+    public MouseHandler getMouseHandler() {
+        return mouseHandler;
+    }
 
-        for (Node node : getTiling().recycler()) {
-            visitAllNodes(node, update);
+    /**
+     * recolor tiles. All copies share the materials of the palette, so only one material per tile is changed
+     */
+    public void updateTileColors() {
+        tilingStyle.getMaterialPalette().updateTileColors(tilingStyle);
+        if (!isReady()) { // make sure that the running computation picks up all changes
+            update();
+            return;
         }
+        setupBakedCopies();
+        incrementLastStyleUpdate();
+    }
 
-        if (getTiling().getFundPrototype() != null) {
-            visitAllNodes(getTiling().getFundPrototype(), update);
+    /**
+     * recolor bands and caps, changes the one material shared by all of them
+     */
+    public void updateBandColors() {
+        tilingStyle.getMaterialPalette().updateBandColor(tilingStyle);
+        if (!isReady()) {
+            update();
+            return;
         }
-        incrementLastWorldUpdate();
+        setupBakedCopies();
+        incrementLastStyleUpdate();
     }
 
     public FDomain getFDomain() {
@@ -450,14 +754,6 @@ public class TilingPane extends StackPane implements Updateable {
 
     }
 
-    private static void visitAllNodes(Node node, Consumer<Node> consumer) {
-        consumer.accept(node);
-        if (node instanceof Parent) {
-            for (Node child : ((Parent) node).getChildrenUnmodifiable())
-                visitAllNodes(child, consumer);
-        }
-    }
-
     public Camera getCamera() {
         return subScene.getCamera();
     }